@@ -60,7 +60,7 @@ describe('DashboardComponent', () => {
     tick();
 
     expect(component.books).toEqual(mockBooks);
-    expect(component.totalPages).toBe(1);
+    expect(component.hasMoreBooks).toBeFalse();
     expect(bookServiceSpy.getBooks).toHaveBeenCalledWith(0, '', 'title', 'asc', [BookStatus.AVAILABLE]);
   }));
 
@@ -174,12 +174,12 @@ describe('DashboardComponent', () => {
     expect(component.hasMoreBooks).toBeFalse();
   }));
 
-  it('should load more books on scroll', fakeAsync(() => {
+  it('should load more books on scroll and stop after the last page', fakeAsync(() => {
     const mockBooks: BookDto[] = [
       { id: 1, title: 'Book 1', author: 'Author 1', isbn: '1234567890', status: BookStatus.AVAILABLE, coverUrl: 'url1' },
       { id: 2, title: 'Book 2', author: 'Author 2', isbn: '0987654321', status: BookStatus.AVAILABLE, coverUrl: 'url2' }
     ];
-    bookServiceSpy.getBooks.and.returnValue(of({ content: mockBooks, totalElements: 4, totalPages: 2, last: false, size: 2, number: 1 }));
+    bookServiceSpy.getBooks.and.returnValue(of({ content: mockBooks, totalElements: -1, totalPages: -1, last: true, size: 2, number: 1 }));
     component.books = [...mockBooks];
     component.currentPage = 1;
     component.hasMoreBooks = true;
@@ -192,4 +192,22 @@ describe('DashboardComponent', () => {
     expect(component.currentPage).toBe(2);
     expect(component.hasMoreBooks).toBeFalse();
   }));
+
+  it('should keep loading on scroll while the page is not the last', fakeAsync(() => {
+    const mockBooks: BookDto[] = [
+      { id: 3, title: 'Book 3', author: 'Author 3', isbn: '1111111111', status: BookStatus.AVAILABLE, coverUrl: 'url3' }
+    ];
+    bookServiceSpy.getBooks.and.returnValue(of({ content: mockBooks, totalElements: -1, totalPages: -1, last: false, size: 1, number: 0 }));
+    component.books = [];
+    component.currentPage = 0;
+    component.hasMoreBooks = true;
+
+    component.onScroll(new Event('scroll'));
+    tick();
+
+    expect(bookServiceSpy.getBooks).toHaveBeenCalledWith(0, '', 'title', 'asc', [BookStatus.AVAILABLE]);
+    expect(component.books.length).toBe(1);
+    expect(component.currentPage).toBe(1);
+    expect(component.hasMoreBooks).toBeTrue();
+  }));
 });
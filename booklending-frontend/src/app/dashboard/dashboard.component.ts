@@ -42,7 +42,6 @@ export class DashboardComponent implements OnInit, OnDestroy {
   currentPage = 0;
   isLoading = false;
   hasMoreBooks = true;
-  totalPages: number = 0;
 
   constructor(
     private authService: AuthService,
@@ -92,8 +91,7 @@ export class DashboardComponent implements OnInit, OnDestroy {
       .subscribe({
         next: (response) => {  // Correctly type response
           this.books = [...this.books, ...response.content];  // Append new books to existing list
-          this.totalPages = response.totalPages;  // Update totalPages from response
-          this.hasMoreBooks = this.currentPage < this.totalPages - 1;  // Determine if more books are available
+          this.hasMoreBooks = !response.last;  // Determine if more books are available
           this.currentPage++;  // Increment current page for next request
           this.isLoading = false;  // Stop loading indicator
         },
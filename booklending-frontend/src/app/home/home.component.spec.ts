@@ -64,7 +64,6 @@ describe('HomeComponent', () => {
 
     expect(bookServiceSpy.getBooks).toHaveBeenCalledWith(0, '', 'title', 'asc', undefined);
     expect(component.books.length).toBe(1);
-    expect(component.totalPages).toBe(1);
     expect(component.hasMoreBooks).toBeFalse();
   }));
 
@@ -23,7 +23,6 @@ export class HomeComponent implements OnInit {
   currentPage: number = 0;
   isLoading: boolean = false;
   hasMoreBooks: boolean = true;
-  totalPages: number = 0;
 
   constructor(private authService: AuthService, private bookService: BookService, private notificationService: NotificationService) {
   }
@@ -52,8 +51,7 @@ export class HomeComponent implements OnInit {
     this.bookService.getBooks(this.currentPage, this.searchQuery, 'title', 'asc', undefined).subscribe({
       next: (response: PagedResponse<BookDto>) => {
         this.books = [...this.books, ...response.content];
-        this.totalPages = response.totalPages;
-        this.hasMoreBooks = this.currentPage < this.totalPages - 1;
+        this.hasMoreBooks = !response.last;
         this.currentPage++;
         this.isLoading = false;
       },
@@ -10,6 +10,7 @@ export interface BookDto {
   isbn: string;
   status: BookStatus;
   coverUrl: string;
+  version?: number;
 }
 
 export enum BookStatus {
@@ -27,6 +28,7 @@ export interface PagedResponse<T> {
   last: boolean;
   size: number;
   number: number;
+  nextCursor?: string;
 }
 
 
@@ -65,7 +67,8 @@ export class BookService {
       .set('size', this.maxPageSize.toString())
       .set('searchQuery', searchQuery)
       .set('sortBy', sortBy)
-      .set('order', order);
+      .set('order', order)
+      .set('countMode', 'none');  // infinite scroll only needs 'last', so skip the count query
 
     // Add each status to the params
     statuses.forEach(status => {
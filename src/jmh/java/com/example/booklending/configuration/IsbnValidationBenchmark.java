@@ -0,0 +1,22 @@
+package com.example.booklending.configuration;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IsbnValidationBenchmark {
+
+    @Param({"0547928227", "9780547928227", "978-0547928227"})
+    public String isbn;
+
+    @Benchmark
+    public boolean isValidISBN() {
+        return DataLoader.isValidISBN(isbn);
+    }
+}
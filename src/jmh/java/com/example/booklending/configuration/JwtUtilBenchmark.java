@@ -0,0 +1,38 @@
+package com.example.booklending.configuration;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtUtilBenchmark {
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secretKey", "benchmarkSecretKey");
+        ReflectionTestUtils.setField(jwtUtil, "expirationTime", 3600000L);
+        token = jwtUtil.generateToken("librarian", Optional.of("LIBRARIAN"));
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken("librarian", Optional.of("LIBRARIAN"));
+    }
+
+    // Runs on every authenticated request
+    @Benchmark
+    public String extractUsername() {
+        return jwtUtil.extractUsername(token);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.booklending.mapper;
+
+import com.example.booklending.dto.BookDto;
+import com.example.booklending.dto.UserDto;
+import com.example.booklending.model.Book;
+import com.example.booklending.model.BookStatus;
+import com.example.booklending.model.Role;
+import com.example.booklending.model.User;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-object mapping cost: the reflective ModelMapper the services used to call against the hand-written mappers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+    private final ModelMapper modelMapper = new ModelMapper();
+    private final BookMapper bookMapper = new BookMapper();
+    private final UserMapper userMapper = new UserMapper();
+
+    private final Book book = new Book(1L, "The Hobbit", "J. R. R. Tolkien", "9780547928227", BookStatus.AVAILABLE, "http://example.com/hobbit.jpg");
+    private final User user = new User(1L, "librarian", "secret123", "librarian@example.com", new Role(2, "LIBRARIAN"));
+
+    @Benchmark
+    public BookDto bookToDto_modelMapper() {
+        return modelMapper.map(book, BookDto.class);
+    }
+
+    @Benchmark
+    public BookDto bookToDto_bookMapper() {
+        return bookMapper.toDto(book);
+    }
+
+    @Benchmark
+    public UserDto userToDto_modelMapper() {
+        return modelMapper.map(user, UserDto.class);
+    }
+
+    @Benchmark
+    public UserDto userToDto_userMapper() {
+        return userMapper.toDto(user);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.booklending.repository;
+
+import com.example.booklending.BookLendingApplication;
+import com.example.booklending.model.*;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserting a batch of books, as the data loader does, and of actions, as the lending audit trail does, in one
+ * transaction against a real database (Testcontainers, needs Docker). With {@code batchSize=1} every row is
+ * its own round trip; with 50 the pooled sequence hands out IDs without a query per row and the inserts go
+ * out as JDBC batches.
+ * <p>
+ * The batched run is expected to be several times faster, as it saves a round trip per row. That is an
+ * expectation, not a result: no timings from this benchmark have been recorded yet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BatchInsertBenchmark {
+
+    private static final int ROWS = 500;
+
+    @Param({"1", "50"})
+    public int batchSize;
+
+    private PostgreSQLContainer<?> container;
+    private ConfigurableApplicationContext context;
+    private BookRepository bookRepository;
+    private ActionRepository actionRepository;
+    private TransactionTemplate transactionTemplate;
+    private Book book;
+    private User user;
+    private long nextIsbn;
+
+    @Setup
+    public void setUp() {
+        container = new PostgreSQLContainer<>("postgres:latest");
+        container.start();
+
+        context = new SpringApplicationBuilder(BookLendingApplication.class)
+                .properties(
+                        "spring.main.web-application-type=none",
+                        "spring.datasource.url=" + container.getJdbcUrl(),
+                        "spring.datasource.username=" + container.getUsername(),
+                        "spring.datasource.password=" + container.getPassword(),
+                        "spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize,
+                        "data.populate.enabled=false",
+                        "reservations.expiry.enabled=false",
+                        "logging.level.root=WARN")
+                .run();
+        bookRepository = context.getBean(BookRepository.class);
+        actionRepository = context.getBean(ActionRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        book = bookRepository.save(new Book(null, "The Hobbit", "J. R. R. Tolkien", "9780547928227", BookStatus.AVAILABLE, null));
+        user = context.getBean(UserRepository.class).save(User.builder()
+                .username("reader")
+                .password("secret123")
+                .email("reader@example.com")
+                .role(new Role(2, "USER"))
+                .build());
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteInserted() {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("DELETE FROM actions");
+        jdbcTemplate.update("DELETE FROM books WHERE id <> ?", book.getId());
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        container.stop();
+    }
+
+    @Benchmark
+    public List<Book> insertBooks() {
+        List<Book> books = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            String isbn = String.format("%013d", nextIsbn++);
+            books.add(new Book(null, "Title " + isbn, "Author " + isbn, isbn, BookStatus.AVAILABLE, null));
+        }
+        return transactionTemplate.execute(status -> bookRepository.saveAll(books));
+    }
+
+    @Benchmark
+    public List<Action> insertActions() {
+        List<Action> actions = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Action action = new Action();
+            action.setBook(book);
+            action.setUser(user);
+            action.setAction(ActionType.RESERVE_BOOK);
+            action.setActionDate(LocalDateTime.now());
+            action.setDueDate(LocalDateTime.now().plusHours(24));
+            actions.add(action);
+        }
+        return transactionTemplate.execute(status -> actionRepository.saveAll(actions));
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.booklending.repository;
+
+import com.example.booklending.BookLendingApplication;
+import com.example.booklending.dto.BookDto;
+import com.example.booklending.model.Book;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One 200-row page of GET /api/books against a real database (Testcontainers, needs Docker):
+ * managed entities mapped with ModelMapper, as before, against the BookDto constructor projection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BookPageBenchmark {
+
+    private static final int CATALOG_SIZE = 10_000;
+
+    private final ModelMapper modelMapper = new ModelMapper();
+    private final Specification<Book> spec = Specification.where(null);
+    private final Pageable pageable = PageRequest.of(10, 200, Sort.by("title"));
+
+    private PostgreSQLContainer<?> container;
+    private ConfigurableApplicationContext context;
+    private BookRepository bookRepository;
+
+    @Setup
+    public void setUp() {
+        container = new PostgreSQLContainer<>("postgres:latest");
+        container.start();
+
+        context = new SpringApplicationBuilder(BookLendingApplication.class)
+                .properties(
+                        "spring.main.web-application-type=none",
+                        "spring.datasource.url=" + container.getJdbcUrl(),
+                        "spring.datasource.username=" + container.getUsername(),
+                        "spring.datasource.password=" + container.getPassword(),
+                        "data.populate.enabled=false",
+                        "logging.level.root=WARN")
+                .run();
+        bookRepository = context.getBean(BookRepository.class);
+
+        context.getBean(JdbcTemplate.class).update("""
+                INSERT INTO books (title, author, isbn, status, cover_url)
+                SELECT 'Title ' || md5(i::text), 'Author ' || md5((i * 7)::text), lpad(i::text, 13, '0'), 'AVAILABLE',
+                       'http://example.com/' || i || '.jpg'
+                FROM generate_series(1, ?) AS i
+                """, CATALOG_SIZE);
+        context.getBean(JdbcTemplate.class).execute("ANALYZE books");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        container.stop();
+    }
+
+    @Benchmark
+    public Page<BookDto> entitiesWithModelMapper() {
+        return bookRepository.findAll(spec, pageable)
+                .map(book -> modelMapper.map(book, BookDto.class));
+    }
+
+    @Benchmark
+    public Page<BookDto> dtoProjection() {
+        return bookRepository.findPage(spec, pageable);
+    }
+}
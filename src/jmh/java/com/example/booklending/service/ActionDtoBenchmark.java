@@ -0,0 +1,38 @@
+package com.example.booklending.service;
+
+import com.example.booklending.dto.ActionDto;
+import com.example.booklending.model.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActionDtoBenchmark {
+
+    private final ActionService actionService = new ActionService(null, null, null, null, null);
+    private Action action;
+
+    @Setup
+    public void setUp() {
+        Book book = new Book(1L, "The Hobbit", "J. R. R. Tolkien", "9780547928227", BookStatus.RESERVED, null);
+        User user = new User(1L, "reader", "secret123", "reader@example.com", new Role(3, "USER"));
+
+        action = new Action();
+        action.setId(1L);
+        action.setBook(book);
+        action.setUser(user);
+        action.setAction(ActionType.RESERVE_BOOK);
+        action.setDueDate(LocalDateTime.now().plusDays(14));
+    }
+
+    @Benchmark
+    public ActionDto convertToDto() {
+        return actionService.convertToDto(action);
+    }
+}
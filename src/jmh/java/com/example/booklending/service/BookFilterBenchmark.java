@@ -0,0 +1,30 @@
+package com.example.booklending.service;
+
+import com.example.booklending.model.Book;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the status filter and composing the listing Specification, as done for every GET /api/books.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookFilterBenchmark {
+
+    @Param({"", "tolkien"})
+    public String searchQuery;
+
+    @Param({"", "AVAILABLE,RESERVED"})
+    public String statuses;
+
+    @Benchmark
+    public Specification<Book> bookFilter() {
+        return BookService.bookFilter(searchQuery, BookService.parseStatuses(statuses));
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.booklending.service;
+
+import com.example.booklending.BookLendingApplication;
+import com.example.booklending.dto.BookImportResultDto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Seeding an empty catalog from a books.json-shaped stream of the given size against a real database
+ * (Testcontainers, needs Docker). The input is generated while it is read, so the benchmark itself needs
+ * no memory for the large sizes either.
+ * <p>
+ * Batched upserts are expected to seed far faster than a lookup and a save per book, with memory flat in the
+ * input size. No timings from this benchmark have been recorded yet, so neither is a measured result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class BookImportBenchmark {
+
+    @Param({"888", "100000", "1000000"})
+    public int books;
+
+    private PostgreSQLContainer<?> container;
+    private ConfigurableApplicationContext context;
+    private BookImportService bookImportService;
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup
+    public void setUp() {
+        container = new PostgreSQLContainer<>("postgres:latest");
+        container.start();
+
+        context = new SpringApplicationBuilder(BookLendingApplication.class)
+                .properties(
+                        "spring.main.web-application-type=none",
+                        "spring.datasource.url=" + container.getJdbcUrl(),
+                        "spring.datasource.username=" + container.getUsername(),
+                        "spring.datasource.password=" + container.getPassword(),
+                        "data.populate.enabled=false",
+                        "reservations.expiry.enabled=false",
+                        "logging.level.root=WARN")
+                .run();
+        bookImportService = context.getBean(BookImportService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyCatalog() {
+        jdbcTemplate.execute("TRUNCATE books CASCADE");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        container.stop();
+    }
+
+    @Benchmark
+    public BookImportResultDto importJsonArray() throws IOException {
+        try (InputStream in = new GeneratedCatalog(books)) {
+            return bookImportService.importJsonArray(in, Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * A JSON array of {@code size} books, produced one book at a time.
+     */
+    private static class GeneratedCatalog extends InputStream {
+
+        private final int size;
+        private int next;
+        private byte[] chunk = "[".getBytes(StandardCharsets.UTF_8);
+        private int position;
+
+        GeneratedCatalog(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public int read() {
+            if (position == chunk.length && !nextChunk()) {
+                return -1;
+            }
+            return chunk[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (position == chunk.length && !nextChunk()) {
+                return -1;
+            }
+            int count = Math.min(length, chunk.length - position);
+            System.arraycopy(chunk, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        private boolean nextChunk() {
+            if (next > size) {
+                return false;
+            }
+            String json = next == size
+                    ? "]"
+                    : (next == 0 ? "" : ",") + String.format(
+                    "{\"title\":\"Title %1$d\",\"author\":\"Author %1$d\",\"isbn\":\"%1$013d\",\"status\":\"AVAILABLE\",\"coverUrl\":\"http://example.com/%1$d.jpg\"}",
+                    next);
+            next++;
+            chunk = json.getBytes(StandardCharsets.UTF_8);
+            position = 0;
+            return true;
+        }
+    }
+}
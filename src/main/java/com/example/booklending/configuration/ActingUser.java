@@ -0,0 +1,53 @@
+package com.example.booklending.configuration;
+
+import com.example.booklending.model.Role;
+import com.example.booklending.model.User;
+import lombok.Getter;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+
+/**
+ * Authenticated principal that also knows the user's ID and role, so services can act on behalf of the
+ * user without looking them up again. Built from the database at login, or straight from the token claims
+ * in stateless mode.
+ */
+@Getter
+public class ActingUser extends org.springframework.security.core.userdetails.User {
+
+    private final Long id;
+    private final Integer roleId;
+    private final String roleName;
+
+    public ActingUser(Long id, String username, String password, Integer roleId, String roleName) {
+        super(username, password == null ? "" : password, List.of(new RoleIdGrantedAuthority(roleName)));
+        this.id = id;
+        this.roleId = roleId;
+        this.roleName = roleName;
+    }
+
+    /**
+     * The user the current request is authenticated as, as a detached {@link User} carrying only the ID,
+     * username and role. Enough to link actions and check roles without a query. The user name a request
+     * names is only checked against it, never looked up, so nobody can act as someone else.
+     *
+     * @param username the user the request says it acts as
+     * @throws AccessDeniedException if the request is not authenticated, or is authenticated as another user
+     */
+    public static User authenticated(String username) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof ActingUser actingUser)) {
+            throw new AccessDeniedException("Not authenticated");
+        }
+        if (!actingUser.getUsername().equals(username)) {
+            throw new AccessDeniedException("Authenticated as " + actingUser.getUsername() + ", cannot act as " + username);
+        }
+        return User.builder()
+                .id(actingUser.getId())
+                .username(actingUser.getUsername())
+                .role(new Role(actingUser.getRoleId(), actingUser.getRoleName()))
+                .build();
+    }
+}
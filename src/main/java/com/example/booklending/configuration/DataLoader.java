@@ -2,10 +2,10 @@ package com.example.booklending.configuration;
 
 import com.example.booklending.model.Book;
 import com.example.booklending.model.BookStatus;
-import com.example.booklending.repository.BookRepository;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.example.booklending.service.BookImportService;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.extern.slf4j.Slf4j;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -17,16 +17,20 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.io.File;
-import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Configuration
@@ -42,18 +46,29 @@ public class DataLoader {
     private int limit;
 
     @Autowired
-    BookRepository bookRepository;
+    BookImportService bookImportService;
 
     ObjectMapper mapper = new ObjectMapper();
 
-    ArrayList<Book> books = new ArrayList<>();
+    // Pages in a row that add no new book before fetching gives up, e.g. when the API has run out of results
+    private static final int MAX_EMPTY_PAGES = 50;
 
-    private static final String API_URL = "https://www.googleapis.com/books/v1/volumes";
+    @Value("${data.populate.api-url:https://www.googleapis.com/books/v1/volumes}")
+    private String apiUrl;
+
+    @Value("${data.populate.concurrency:4}")
+    private int concurrency;
+
+    @Value("${data.populate.request-timeout:PT10S}")
+    private Duration requestTimeout;
+
+    @Value("${data.populate.output-file:books.json}")
+    private String outputFile;
 
     Random rand = new Random();
 
     @Bean
-    public CommandLineRunner conditionalPopulateData(BookRepository bookRepository) {
+    public CommandLineRunner conditionalPopulateData() {
 
         return args -> {
             if (isDataPopulationEnabled) {
@@ -61,24 +76,8 @@ public class DataLoader {
                     log.info("Populate books data from local resources /books.json.");
 
                     try (InputStream is = DataLoader.class.getResourceAsStream("/books.json")) {
-                        // Deserialize JSON data into a list of Book objects
-                        List<Book> books = mapper.readValue(is, new TypeReference<>() {
-                        });
-
-                        books.stream()
-                                .limit(limit) // Limit the stream to 'limit' number of books
-                                .forEach(book -> {
-                                    Optional<Book> existingBook = bookRepository.findByIsbn(book.getIsbn());
-                                    if (existingBook.isEmpty()) {
-                                        try {
-                                            bookRepository.save(book);
-                                        } catch (Exception e) {
-                                            log.info("Error occurred.");
-                                        }
-                                    }
-                                });
-
-
+                        // Streamed in batches, so the file is never held in memory as a whole
+                        bookImportService.importJsonArray(is, limit);
                     } catch (Exception e) {
                         log.error("Failed to load and save books from JSON: ", e);
                     }
@@ -106,6 +105,11 @@ public class DataLoader {
     }
 
 
+    /**
+     * Fetches pages of books from the books API, keeping up to {@code data.populate.concurrency} requests in
+     * flight, and saves the books not yet in the catalog until {@code totalBooks} have been added. Every page is
+     * also appended to {@code data.populate.output-file} as it arrives, so no page is kept once it is saved.
+     */
     public void fetchAndSaveTopBooks(int totalBooks) throws Exception {
 
 
@@ -124,91 +128,98 @@ public class DataLoader {
                 "estonian"
         };
 
-        String topic;
-
-        HttpClient client = HttpClient.newHttpClient();
+        HttpClient client = HttpClient.newBuilder().connectTimeout(requestTimeout).build();
+        Deque<CompletableFuture<HttpResponse<String>>> inFlight = new ArrayDeque<>();
+        Set<String> seenIsbns = new HashSet<>();
         int startIndex = 0;
         int fetchedBooks = 0;
+        int emptyPages = 0;
         int MAX_RESULTS = 40;
 
-        while (fetchedBooks < totalBooks) {
+        try (JsonGenerator output = mapper.getFactory().createGenerator(new File(outputFile), JsonEncoding.UTF8)) {
+            output.useDefaultPrettyPrinter();
+            output.writeStartArray();
+            while (fetchedBooks < totalBooks && emptyPages < MAX_EMPTY_PAGES) {
 
-            topic = topics[rand.nextInt(topics.length)];
+                // Keep the pipeline full: the oldest response is processed while the newer ones are still on their way
+                while (inFlight.size() < Math.max(1, concurrency)) {
+                    String topic = topics[rand.nextInt(topics.length)];
 
-            // Build the request URL with pagination
-            String requestUrl = String.format("%s?q=%s&orderBy=relevance&startIndex=%d&maxResults=%d",
-                    API_URL, topic, startIndex, MAX_RESULTS);
+                    // Build the request URL with pagination
+                    String requestUrl = String.format("%s?q=%s&orderBy=relevance&startIndex=%d&maxResults=%d",
+                            apiUrl, topic, startIndex, MAX_RESULTS);
 
-            // Create the request
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(requestUrl))
-                    .GET()
-                    .build();
+                    HttpRequest request = HttpRequest.newBuilder()
+                            .uri(URI.create(requestUrl))
+                            .timeout(requestTimeout)
+                            .GET()
+                            .build();
 
-            // Send the request and get the response
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                    inFlight.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+                    startIndex += MAX_RESULTS;
+                }
 
-            // Parse the JSON response
-            JSONObject jsonResponse = new JSONObject(response.body());
-            JSONArray items;
-            try {
-                items = jsonResponse.getJSONArray("items");
-            } catch (JSONException e) {
-                startIndex = 0;
-                continue;
-            }
+                HttpResponse<String> response = inFlight.poll().join();
 
-            for (int i = 0; i < items.length(); i++) {
-                JSONObject volumeInfo = items.getJSONObject(i).getJSONObject("volumeInfo");
-                String title;
+                // Parse the JSON response
+                JSONObject jsonResponse = new JSONObject(response.body());
+                JSONArray items;
                 try {
-                    title = volumeInfo.getString("title");
-                } catch (Exception e) {
-                    break;
+                    items = jsonResponse.getJSONArray("items");
+                } catch (JSONException e) {
+                    startIndex = 0;
+                    emptyPages++;
+                    continue;
                 }
 
-                String authors = volumeInfo.has("authors") ? volumeInfo.getJSONArray("authors").join(", ") : "Unknown";
-                String isbn = volumeInfo.has("industryIdentifiers")
-                        ? volumeInfo.getJSONArray("industryIdentifiers").getJSONObject(0).getString("identifier")
-                        : "Unknown";
-                String coverUrl = volumeInfo.has("imageLinks")
-                        ? volumeInfo.getJSONObject("imageLinks").getString("thumbnail")
-                        : "No cover";
-
-                Book book = new Book();
-                book.setTitle(title);
-                book.setAuthor(authors);
-                book.setIsbn(isbn);
-                book.setCoverUrl(coverUrl);
-                book.setStatus(BookStatus.AVAILABLE); // Set default status or modify as needed
-
-
-                /// Save the book if it does not already exist
-                if (isValidISBN(book.getIsbn())) {
-                    Optional<Book> existingBook = bookRepository.findByIsbn(book.getIsbn());
-                    if (existingBook.isEmpty()) {
-                        if (isValidISBN(book.getIsbn())) {
-                            if (books.stream().filter(b -> b.getIsbn().equals(book.getIsbn())).count() == 0) {
-                                if (book.getTitle().length() < 255 && book.getAuthor().length() < 255) {
-                                    books.add(book);
-                                    bookRepository.save(book);
-                                    fetchedBooks++;
-                                }
-                            }
-                        }
+                List<Book> pageBooks = new ArrayList<>();
+                for (int i = 0; i < items.length() && fetchedBooks + pageBooks.size() < totalBooks; i++) {
+                    JSONObject volumeInfo = items.getJSONObject(i).getJSONObject("volumeInfo");
+                    String title;
+                    try {
+                        title = volumeInfo.getString("title");
+                    } catch (Exception e) {
+                        break;
+                    }
+
+                    String authors = volumeInfo.has("authors") ? volumeInfo.getJSONArray("authors").join(", ") : "Unknown";
+                    String isbn = volumeInfo.has("industryIdentifiers")
+                            ? volumeInfo.getJSONArray("industryIdentifiers").getJSONObject(0).getString("identifier")
+                            : "Unknown";
+                    String coverUrl = volumeInfo.has("imageLinks")
+                            ? volumeInfo.getJSONObject("imageLinks").getString("thumbnail")
+                            : "No cover";
+
+                    Book book = new Book();
+                    book.setTitle(title);
+                    book.setAuthor(authors);
+                    book.setIsbn(isbn);
+                    book.setCoverUrl(coverUrl);
+                    book.setStatus(BookStatus.AVAILABLE); // Set default status or modify as needed
+
+                    // Books already in the catalog are skipped by the import itself
+                    if (isValidISBN(book.getIsbn()) && seenIsbns.add(book.getIsbn())
+                            && book.getTitle().length() < 255 && book.getAuthor().length() < 255) {
+                        pageBooks.add(book);
                     }
                 }
+
+                // One statement per page
+                long inserted = bookImportService.importBooks(pageBooks).getInserted();
+                fetchedBooks += (int) inserted;
+                emptyPages = inserted == 0 ? emptyPages + 1 : 0;
+                for (Book book : pageBooks) {
+                    output.writeObject(book);
+                }
             }
-            startIndex += MAX_RESULTS;
+            output.writeEndArray();
+            log.info("Books have been serialized to JSON successfully.");
+        } finally {
+            inFlight.forEach(pending -> pending.cancel(true));
         }
 
-        this.mapper.enable(SerializationFeature.INDENT_OUTPUT);
-
-        try {
-            mapper.writeValue(new File("books.json"), books);
-            log.info("Books have been serialized to JSON successfully.");
-        } catch (IOException e) {
-            log.error("Error occurred while saving file.", e);
+        if (fetchedBooks < totalBooks) {
+            log.warn("Stopped after {} of {} books: the last {} pages added nothing new.", fetchedBooks, totalBooks, MAX_EMPTY_PAGES);
         }
     }
 
@@ -256,7 +267,7 @@ public class DataLoader {
             int digit = isbn.charAt(i) - '0';
             sum += (i % 2 == 0) ? digit : digit * 3;
         }
-        int checkDigit = 10 - (sum % 10);
+        int checkDigit = (10 - sum % 10) % 10;
         return checkDigit == (isbn.charAt(12) - '0');
     }
 }
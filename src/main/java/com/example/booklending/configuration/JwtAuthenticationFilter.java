@@ -1,9 +1,13 @@
 package com.example.booklending.configuration;
 
+import com.example.booklending.service.TokenRevocationService;
+import com.example.booklending.service.UserVersionRegistry;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -13,16 +17,30 @@ import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Optional;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final UserDetailsService userDetailsService;
+    private final VerifiedTokenCache tokenCache;
+    private final UserVersionRegistry userVersionRegistry;
+    private final TokenRevocationService tokenRevocationService;
 
-    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService) {
+    // Build the principal from the token claims instead of loading the user on every new token
+    @Value("${jwt.stateless:false}")
+    private boolean stateless;
+
+    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService, VerifiedTokenCache tokenCache,
+                                   UserVersionRegistry userVersionRegistry, TokenRevocationService tokenRevocationService) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
+        this.tokenCache = tokenCache;
+        this.userVersionRegistry = userVersionRegistry;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     @Override
@@ -30,18 +48,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
 
         String authorizationHeader = request.getHeader("Authorization");
-        String username = null;
-        String token = null;
 
-        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            token = authorizationHeader.substring(7);
-            username = jwtUtil.extractUsername(token);
-        }
+        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            String token = authorizationHeader.substring(7);
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            // A repeat token skips parsing, signature verification and the user lookup
+            VerifiedTokenCache.VerifiedToken verified = tokenCache.get(token);
+            if (verified == null) {
+                verified = verify(token);
+            }
 
-            if (jwtUtil.validateToken(token, userDetails.getUsername())) {
+            if (verified != null && isCurrent(verified) && !isRevoked(verified)) {
+                UserDetails userDetails = verified.userDetails();
                 UsernamePasswordAuthenticationToken authenticationToken =
                         new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                 authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -51,4 +70,39 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         chain.doFilter(request, response);
     }
+
+    private VerifiedTokenCache.VerifiedToken verify(String token) {
+        Claims claims = jwtUtil.extractClaims(token);
+        if (claims == null || claims.getSubject() == null) {
+            return null;
+        }
+
+        // Tokens issued without an iat claim count as issued before any revocation of all the user's tokens
+        Instant issuedAt = claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : Instant.EPOCH;
+
+        if (stateless) {
+            Optional<ActingUser> actingUser = jwtUtil.extractActingUser(claims);
+            Optional<Integer> userVersion = jwtUtil.extractUserVersion(claims);
+            if (actingUser.isPresent() && userVersion.isPresent()) {
+                return tokenCache.put(token, actingUser.get(), issuedAt, claims.getExpiration().toInstant(), userVersion.get());
+            }
+            // Tokens issued without the claims fall back to loading the user
+        }
+
+        UserDetails userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+        if (!userDetails.getUsername().equals(claims.getSubject()) || claims.getExpiration().before(new Date())) {
+            return null;
+        }
+        return tokenCache.put(token, userDetails, issuedAt, claims.getExpiration().toInstant(), null);
+    }
+
+    // Checked on every request, cached or not, so a role change or delete takes effect immediately
+    private boolean isCurrent(VerifiedTokenCache.VerifiedToken verified) {
+        return verified.userVersion() == null
+                || userVersionRegistry.isCurrent(((ActingUser) verified.userDetails()).getId(), verified.userVersion());
+    }
+
+    private boolean isRevoked(VerifiedTokenCache.VerifiedToken verified) {
+        return tokenRevocationService.isRevoked(verified.tokenDigest(), verified.userDetails().getUsername(), verified.issuedAt());
+    }
 }
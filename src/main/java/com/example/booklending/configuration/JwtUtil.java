@@ -1,10 +1,15 @@
 package com.example.booklending.configuration;
 
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -13,6 +18,10 @@ import java.util.Optional;
 @Component
 public class JwtUtil {
 
+    private static final String USER_ID_CLAIM = "userId";
+    private static final String ROLE_ID_CLAIM = "roleId";
+    private static final String USER_VERSION_CLAIM = "userVersion";
+
     @Value("${jwt.key}")
     private final String secretKey = System.getenv("APP_SECRET_KEY");
 
@@ -47,8 +56,47 @@ public class JwtUtil {
     }
 
 
+    /**
+     * Token for stateless mode: besides the username and role it carries the user ID, role ID and the
+     * user's token version, so the principal can be rebuilt from the claims alone.
+     */
+    public String generateToken(ActingUser user, int userVersion) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("roleName", user.getRoleName());
+        claims.put(USER_ID_CLAIM, user.getId());
+        claims.put(ROLE_ID_CLAIM, user.getRoleId());
+        claims.put(USER_VERSION_CLAIM, userVersion);
+
+        return Jwts.builder()
+                .setClaims(claims)
+                .setSubject(user.getUsername())
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + expirationTime))
+                .signWith(SignatureAlgorithm.HS512, secretKey)
+                .compact();
+    }
+
+    /**
+     * @return the principal carried by the claims, or empty for tokens issued without a user ID
+     */
+    public Optional<ActingUser> extractActingUser(Claims claims) {
+        if (!(claims.get(USER_ID_CLAIM) instanceof Number userId) || !(claims.get(ROLE_ID_CLAIM) instanceof Number roleId)) {
+            return Optional.empty();
+        }
+        return Optional.of(new ActingUser(userId.longValue(), claims.getSubject(), null, roleId.intValue(), claims.get("roleName", String.class)));
+    }
+
+    public Optional<Integer> extractUserVersion(Claims claims) {
+        return claims.get(USER_VERSION_CLAIM) instanceof Number version ? Optional.of(version.intValue()) : Optional.empty();
+    }
+
+    // Verifies the signature and expiry; throws a JwtException if either check fails
+    public Claims extractClaims(String token) {
+        return Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token).getBody();
+    }
+
     public String extractUsername(String token) {
-        return Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token).getBody().getSubject();
+        return extractClaims(token).getSubject();
     }
 
     public boolean validateToken(String token, String username) {
@@ -56,6 +104,18 @@ public class JwtUtil {
     }
 
     private boolean isTokenExpired(String token) {
-        return Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token).getBody().getExpiration().before(new Date());
+        return extractClaims(token).getExpiration().before(new Date());
+    }
+
+    /**
+     * SHA-256 of the token, Base64 encoded; used wherever a token is stored or looked up, so the token itself is not kept.
+     */
+    public static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 }
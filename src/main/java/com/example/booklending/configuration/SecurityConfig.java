@@ -3,6 +3,7 @@ package com.example.booklending.configuration;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -32,6 +33,9 @@ public class SecurityConfig {
                 .authorizeHttpRequests(authorizeRequests ->
                         authorizeRequests
                                 .requestMatchers("/swagger-ui.html", "/v3/api-docs/**", "/swagger-ui/**").permitAll()
+                                .requestMatchers("/api/auth/revoke/**").hasAuthority(Constants.ADMIN_ROLE)
+                                .requestMatchers("/api/reports/**").hasAuthority(Constants.ADMIN_ROLE)
+                                .requestMatchers(HttpMethod.POST, "/api/books/import").hasAuthority(Constants.ADMIN_ROLE)
                                 .requestMatchers("/api/auth/**").permitAll()  // Allow unauthenticated access to the /api/auth endpoints
                                 .anyRequest().authenticated()
                 )
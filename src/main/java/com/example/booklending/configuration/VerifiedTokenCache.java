@@ -0,0 +1,74 @@
+package com.example.booklending.configuration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Tokens that already passed signature, expiry and user checks, keyed by the SHA-256 digest of the token.
+ * An entry lives until the token expires, but no longer than {@code jwt.cache.max-ttl}, which bounds how
+ * long a changed role or deleted user keeps its cached authorities.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    /**
+     * @param tokenDigest the token's digest, see {@link JwtUtil#digest}
+     * @param issuedAt    when the token was issued, checked against revocations of all the user's tokens
+     * @param userVersion the user's token version claimed by a stateless token, or null if the user was loaded from the database
+     */
+    public record VerifiedToken(UserDetails userDetails, String tokenDigest, Instant issuedAt, Instant expiresAt, Integer userVersion) {
+    }
+
+    private final Cache<String, VerifiedToken> cache;
+
+    public VerifiedTokenCache(@Value("${jwt.cache.max-size:10000}") long maxSize,
+                              @Value("${jwt.cache.max-ttl:PT5M}") Duration maxTtl,
+                              MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+                        Duration untilExpiry = Duration.between(Instant.now(), value.expiresAt());
+                        return Math.max(0, Math.min(untilExpiry.toNanos(), maxTtl.toNanos()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt.verified-tokens");
+    }
+
+    /**
+     * @return the verified token, or null if it is not cached or has expired
+     */
+    public VerifiedToken get(String token) {
+        VerifiedToken verified = cache.getIfPresent(JwtUtil.digest(token));
+        return verified != null && verified.expiresAt().isAfter(Instant.now()) ? verified : null;
+    }
+
+    public VerifiedToken put(String token, UserDetails userDetails, Instant issuedAt, Instant expiresAt, Integer userVersion) {
+        String tokenDigest = JwtUtil.digest(token);
+        VerifiedToken verified = new VerifiedToken(userDetails, tokenDigest, issuedAt, expiresAt, userVersion);
+        cache.put(tokenDigest, verified);
+        return verified;
+    }
+}
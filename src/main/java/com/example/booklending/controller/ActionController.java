@@ -1,7 +1,11 @@
 package com.example.booklending.controller;
 
 import com.example.booklending.dto.ActionDto;
+import com.example.booklending.dto.BulkActionRequestDto;
+import com.example.booklending.dto.BulkActionResultDto;
+import com.example.booklending.exception.ConflictException;
 import com.example.booklending.service.ActionService;
+import com.example.booklending.service.BulkActionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -10,14 +14,20 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.function.Supplier;
+
 @RestController
 @RequestMapping("/api/actions")
 @Tag(name = "Actions", description = "Endpoints for managing actions such as reservation, cancellation, and status updates")
@@ -25,9 +35,12 @@ public class ActionController {
 
     private final ActionService actionService;
 
+    private final BulkActionService bulkActionService;
+
     @Autowired
-    public ActionController(ActionService actionService) {
+    public ActionController(ActionService actionService, BulkActionService bulkActionService) {
         this.actionService = actionService;
+        this.bulkActionService = bulkActionService;
     }
 
     @Operation(summary = "Reserve a book", description = "Allows a user to reserve a book.")
@@ -35,7 +48,9 @@ public class ActionController {
             @ApiResponse(responseCode = "201", description = "Book reserved successfully",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = ActionDto.class))),
             @ApiResponse(responseCode = "400", description = "Invalid input or book unavailable"),
-            @ApiResponse(responseCode = "404", description = "Book or user not found"),
+            @ApiResponse(responseCode = "403", description = "Authenticated as another user than userName"),
+            @ApiResponse(responseCode = "404", description = "Book not found"),
+            @ApiResponse(responseCode = "409", description = "Book is not available, e.g. another user reserved it first"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @PostMapping("/reserve")
@@ -45,6 +60,12 @@ public class ActionController {
         try {
             ActionDto action = actionService.reserveBook(userName, bookId);
             return new ResponseEntity<>(action, HttpStatus.CREATED);
+        } catch (AccessDeniedException e) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        } catch (ConflictException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        } catch (EntityNotFoundException e) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         } catch (RuntimeException e) {
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
@@ -56,7 +77,9 @@ public class ActionController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Reservation canceled successfully",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = ActionDto.class))),
+            @ApiResponse(responseCode = "403", description = "Authenticated as another user than userName"),
             @ApiResponse(responseCode = "404", description = "Reservation not found"),
+            @ApiResponse(responseCode = "409", description = "Book is not in the status this action starts from"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @PostMapping("/cancel_reservation")
@@ -66,8 +89,12 @@ public class ActionController {
         try {
             ActionDto action = actionService.cancelReservation(userName, bookId);
             return new ResponseEntity<>(action, HttpStatus.OK);
+        } catch (AccessDeniedException e) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         } catch (EntityNotFoundException e) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        } catch (ConflictException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -78,6 +105,7 @@ public class ActionController {
             @ApiResponse(responseCode = "200", description = "Book marked as lent out successfully",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = ActionDto.class))),
             @ApiResponse(responseCode = "404", description = "Reservation not found"),
+            @ApiResponse(responseCode = "409", description = "Book is not in the status this action starts from"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @PostMapping("/lent_out")
@@ -88,6 +116,8 @@ public class ActionController {
             return new ResponseEntity<>(action, HttpStatus.OK);
         } catch (EntityNotFoundException e) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        } catch (ConflictException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -97,7 +127,9 @@ public class ActionController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Book marked as received successfully",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = ActionDto.class))),
+            @ApiResponse(responseCode = "403", description = "Authenticated as another user than userName"),
             @ApiResponse(responseCode = "404", description = "Reservation not found"),
+            @ApiResponse(responseCode = "409", description = "Book is not in the status this action starts from"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @PostMapping("/received")
@@ -107,8 +139,12 @@ public class ActionController {
         try {
             ActionDto action = actionService.markAsReceived(userName, bookId);
             return new ResponseEntity<>(action, HttpStatus.OK);
+        } catch (AccessDeniedException e) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         } catch (EntityNotFoundException e) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        } catch (ConflictException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -118,7 +154,9 @@ public class ActionController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Book marked as returned successfully",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = ActionDto.class))),
+            @ApiResponse(responseCode = "403", description = "Authenticated as another user than userName"),
             @ApiResponse(responseCode = "404", description = "Book not found or not borrowed by user"),
+            @ApiResponse(responseCode = "409", description = "Book is not in the status this action starts from"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @PostMapping("/returned")
@@ -128,10 +166,95 @@ public class ActionController {
         try {
             ActionDto action = actionService.markAsReturned(userName, bookId);
             return new ResponseEntity<>(action, HttpStatus.OK);
+        } catch (AccessDeniedException e) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         } catch (EntityNotFoundException e) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        } catch (ConflictException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
+
+    @Operation(summary = "Reserve books in bulk", description = "Reserves every listed book for the user, reporting the result per book.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Results per book; in best-effort mode some books may have failed",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = BulkActionResultDto.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input, too many books, or user is not a borrower"),
+            @ApiResponse(responseCode = "403", description = "Authenticated as another user than userName"),
+            @ApiResponse(responseCode = "409", description = "All-or-nothing request rolled back; the results say which books failed",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = BulkActionResultDto.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping("/bulk/reserve")
+    public ResponseEntity<BulkActionResultDto> reserveBooks(
+            @Parameter(description = "User name making the reservations", required = true) @RequestParam String userName,
+            @Parameter(description = "Books to reserve and how to handle failures", required = true) @Valid @RequestBody BulkActionRequestDto request) {
+        return bulk(() -> bulkActionService.reserveBooks(userName, request.getBookIds(), request.getMode()));
+    }
+
+    @Operation(summary = "Mark books as lent out in bulk", description = "Marks every listed reserved book as lent out, reporting the result per book.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Results per book; in best-effort mode some books may have failed",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = BulkActionResultDto.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input or too many books"),
+            @ApiResponse(responseCode = "409", description = "All-or-nothing request rolled back; the results say which books failed",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = BulkActionResultDto.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping("/bulk/lent_out")
+    public ResponseEntity<BulkActionResultDto> markBooksAsLentOut(
+            @Parameter(description = "Books being lent out and how to handle failures", required = true) @Valid @RequestBody BulkActionRequestDto request) {
+        return bulk(() -> bulkActionService.markAsLentOut(request.getBookIds(), request.getMode()));
+    }
+
+    @Operation(summary = "Mark books as received in bulk", description = "Marks every listed book lent out to the user as received, reporting the result per book.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Results per book; in best-effort mode some books may have failed",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = BulkActionResultDto.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input or too many books"),
+            @ApiResponse(responseCode = "403", description = "Authenticated as another user than userName"),
+            @ApiResponse(responseCode = "409", description = "All-or-nothing request rolled back; the results say which books failed",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = BulkActionResultDto.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping("/bulk/received")
+    public ResponseEntity<BulkActionResultDto> markBooksAsReceived(
+            @Parameter(description = "User name receiving the books", required = true) @RequestParam String userName,
+            @Parameter(description = "Books being received and how to handle failures", required = true) @Valid @RequestBody BulkActionRequestDto request) {
+        return bulk(() -> bulkActionService.markAsReceived(userName, request.getBookIds(), request.getMode()));
+    }
+
+    @Operation(summary = "Mark books as returned in bulk", description = "Marks every listed book as returned, e.g. the contents of a returns drop-box, reporting the result per book.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Results per book; in best-effort mode some books may have failed",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = BulkActionResultDto.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input or too many books"),
+            @ApiResponse(responseCode = "403", description = "Authenticated as another user than userName"),
+            @ApiResponse(responseCode = "409", description = "All-or-nothing request rolled back; the results say which books failed",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = BulkActionResultDto.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping("/bulk/returned")
+    public ResponseEntity<BulkActionResultDto> markBooksAsReturned(
+            @Parameter(description = "User name returning the books", required = true) @RequestParam String userName,
+            @Parameter(description = "Books being returned and how to handle failures", required = true) @Valid @RequestBody BulkActionRequestDto request) {
+        return bulk(() -> bulkActionService.markAsReturned(userName, request.getBookIds(), request.getMode()));
+    }
+
+    private ResponseEntity<BulkActionResultDto> bulk(Supplier<BulkActionResultDto> action) {
+        try {
+            BulkActionResultDto result = action.get();
+            return new ResponseEntity<>(result, result.isCommitted() ? HttpStatus.OK : HttpStatus.CONFLICT);
+        } catch (AccessDeniedException e) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        } catch (EntityNotFoundException e) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        } catch (DataAccessException e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (RuntimeException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
 }
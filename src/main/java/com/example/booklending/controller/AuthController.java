@@ -3,16 +3,18 @@ package com.example.booklending.controller;
 import com.example.booklending.model.AuthRequest;
 import com.example.booklending.service.AuthService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -44,4 +46,39 @@ public class AuthController {
         // Delegate the authentication and token generation to the service
         return authService.authenticateAndGenerateToken(authRequest.getUsername(), authRequest.getPassword());
     }
+
+    @Operation(summary = "Logout",
+            description = "Revoke the bearer token sent in the Authorization header for the rest of its lifetime.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Token revoked", content = @Content),
+            @ApiResponse(responseCode = "401", description = "Missing, invalid or expired token", content = @Content)
+    })
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(
+            @Parameter(description = "Bearer token to revoke", required = true)
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorizationHeader) {
+        if (authorizationHeader == null || !authorizationHeader.startsWith("Bearer ")) {
+            return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+        }
+        try {
+            authService.logout(authorizationHeader.substring(7));
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        } catch (JwtException | IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+        }
+    }
+
+    @Operation(summary = "Revoke all tokens of a user",
+            description = "Revoke every token issued to the user so far; the user has to log in again. Admin only.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Tokens revoked", content = @Content),
+            @ApiResponse(responseCode = "403", description = "Not an admin", content = @Content)
+    })
+    @PostMapping("/revoke/{username}")
+    public ResponseEntity<Void> revokeAllTokens(
+            @Parameter(description = "Username whose tokens to revoke", required = true)
+            @PathVariable String username) {
+        authService.revokeAllTokens(username);
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
 }
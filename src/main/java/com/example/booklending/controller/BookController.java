@@ -1,9 +1,16 @@
 package com.example.booklending.controller;
 
 import com.example.booklending.dto.BookDto;
+import com.example.booklending.dto.BookImportLineDto;
 import com.example.booklending.exception.ConflictException;
+import com.example.booklending.model.BookImportFormat;
+import com.example.booklending.model.BookStatus;
 import com.example.booklending.model.PagedResponse;
+import com.example.booklending.model.User;
+import com.example.booklending.service.BookExportService;
+import com.example.booklending.service.BookImportService;
 import com.example.booklending.service.BookService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -12,24 +19,53 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/books")
 @Tag(name = "Books", description = "Endpoints for managing books")
 public class BookController {
 
+    static final String NDJSON_VALUE = "application/x-ndjson";
+    static final String CSV_VALUE = "text/csv";
+
+    private static final String CSV_HEADER = "id,title,author,isbn,status,cover_url";
+    private static final String EXPORT_FAILED = "Export failed, the books above are incomplete";
+
     private final BookService bookService;
+    private final BookImportService bookImportService;
+    private final BookExportService bookExportService;
+
+    // One object per line, whatever the application-wide mapper is set to
+    private final ObjectMapper lineMapper = new ObjectMapper();
 
     @Autowired
-    public BookController(BookService bookService) {
+    public BookController(BookService bookService, BookImportService bookImportService, BookExportService bookExportService) {
         this.bookService = bookService;
+        this.bookImportService = bookImportService;
+        this.bookExportService = bookExportService;
     }
 
     @Operation(summary = "Create a new book", description = "Creates a new book with the provided details.")
@@ -37,6 +73,7 @@ public class BookController {
             @ApiResponse(responseCode = "201", description = "Book created successfully",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = BookDto.class))),
             @ApiResponse(responseCode = "400", description = "Invalid input"),
+            @ApiResponse(responseCode = "403", description = "Authenticated as another user than userName"),
             @ApiResponse(responseCode = "409", description = "Conflict - Book already exists",
                     content = @Content(mediaType = "application/json")),
             @ApiResponse(responseCode = "500", description = "Internal server error")
@@ -55,6 +92,8 @@ public class BookController {
                             .created(URI.create("/api/books/" + book.getId()))
                             .body(book))
                     .orElseGet(() -> new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        } catch (AccessDeniedException e) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         } catch (ConflictException e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
         } catch (Exception e) {
@@ -62,6 +101,90 @@ public class BookController {
         }
     }
 
+    @Operation(summary = "Import books", description = "Adds the books of an NDJSON or CSV upload in batches, skipping ISBNs already in "
+            + "the catalog, and streams back one NDJSON result per book as its batch is written. A CSV upload starts "
+            + "with a header naming the title, author, isbn and optionally status and cover_url columns.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Results streamed",
+                    content = @Content(mediaType = NDJSON_VALUE, schema = @Schema(implementation = BookImportLineDto.class))),
+            @ApiResponse(responseCode = "400", description = "CSV header lacks a required column"),
+            @ApiResponse(responseCode = "403", description = "Authenticated as another user than userName"),
+            @ApiResponse(responseCode = "415", description = "Upload is neither NDJSON nor CSV")
+    })
+    @PostMapping(value = "/import", consumes = {NDJSON_VALUE, CSV_VALUE}, produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> importBooks(
+            HttpServletRequest request,
+            @Parameter(description = "Username of the person importing the books", required = true)
+            @RequestParam String userName) {
+        User importer;
+        try {
+            importer = bookImportService.findImporter(userName);
+        } catch (AccessDeniedException e) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        BookImportFormat format = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(MediaType.parseMediaType(CSV_VALUE))
+                ? BookImportFormat.CSV
+                : BookImportFormat.NDJSON;
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            try {
+                bookImportService.importLines(request.getInputStream(), format, importer,
+                        line -> writeLine(writer, toJson(line)));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.flush();
+        };
+        return ResponseEntity.status(HttpStatus.OK)
+                .contentType(MediaType.parseMediaType(NDJSON_VALUE))
+                .body(body);
+    }
+
+    @Operation(summary = "Export books", description = "Streams every book, or those in the given statuses, in ID order as NDJSON or CSV. "
+            + "The status is sent before the first book, so if reading the books fails part way the response stays a 200 "
+            + "and ends with an error line instead: {\"error\": ...} in NDJSON, or a record whose first field is error in CSV.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Books streamed"),
+            @ApiResponse(responseCode = "400", description = "Unknown format or status")
+    })
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportBooks(
+            @Parameter(description = "Output format", schema = @Schema(defaultValue = "NDJSON"))
+            @RequestParam(defaultValue = "NDJSON") BookImportFormat format,
+            @Parameter(description = "Only export books in these statuses, comma separated")
+            @RequestParam(defaultValue = "") String statuses) {
+        List<BookStatus> statusList;
+        try {
+            statusList = Arrays.stream(statuses.split(","))
+                    .map(String::trim)
+                    .filter(status -> !status.isEmpty())
+                    .map(BookStatus::valueOf)
+                    .toList();
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        boolean csv = format == BookImportFormat.CSV;
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            try {
+                if (csv) {
+                    writer.write(CSV_HEADER);
+                    writer.write('\n');
+                }
+                bookExportService.streamBooks(statusList, book -> writeLine(writer, csv ? toCsv(book) : toJson(book)));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (DataAccessException e) {
+                log.error("Book export failed part way.", e);
+                writeLine(writer, csv ? "error," + Csv.field(EXPORT_FAILED) : toJson(Map.of("error", EXPORT_FAILED)));
+            }
+            writer.flush();
+        };
+        return ResponseEntity.status(HttpStatus.OK)
+                .contentType(MediaType.parseMediaType(csv ? CSV_VALUE : NDJSON_VALUE))
+                .body(body);
+    }
+
     @Operation(summary = "Get book by ID", description = "Fetches a book based on the provided ID.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Book found",
@@ -112,15 +235,23 @@ public class BookController {
             @Parameter(description = "Order of sorting: asc or desc", schema = @Schema(defaultValue = "asc"))
             @RequestParam(defaultValue = "asc") String order,
             @Parameter(description = "Filter books by status")
-            @RequestParam(defaultValue = "") String statuses) {
-        return new ResponseEntity<>(bookService.getBooks(searchQuery, page, size, sortBy, order, statuses), HttpStatus.OK);
+            @RequestParam(defaultValue = "") String statuses,
+            @Parameter(description = "Cursor from a previous response's nextCursor; send it empty to start cursor pagination")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "How searchQuery is matched: substring, or fulltext for ranked full-text search", schema = @Schema(defaultValue = "substring"))
+            @RequestParam(defaultValue = "substring") String searchMode,
+            @Parameter(description = "How totals are computed: exact, estimate (from planner statistics) or none (only last is reported)", schema = @Schema(defaultValue = "exact"))
+            @RequestParam(defaultValue = "exact") String countMode) {
+        return new ResponseEntity<>(bookService.getBooks(searchQuery, page, size, sortBy, order, statuses, cursor, searchMode, countMode), HttpStatus.OK);
     }
 
-    @Operation(summary = "Update a book", description = "Updates the details of an existing book.")
+    @Operation(summary = "Update a book", description = "Updates the title, author, ISBN and cover of an existing book. Its status only changes through the lending actions. The body must carry the version of the book it is based on.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Book updated successfully",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = BookDto.class))),
+            @ApiResponse(responseCode = "400", description = "The version of the book is missing"),
             @ApiResponse(responseCode = "404", description = "Book not found"),
+            @ApiResponse(responseCode = "409", description = "The book was modified since that version"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @PutMapping("/{id}")
@@ -142,6 +273,7 @@ public class BookController {
     @Operation(summary = "Delete a book", description = "Deletes a book based on the provided ID.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "204", description = "Book deleted successfully"),
+            @ApiResponse(responseCode = "403", description = "Authenticated as another user than userName"),
             @ApiResponse(responseCode = "404", description = "Book not found"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
@@ -155,10 +287,39 @@ public class BookController {
         try {
             bookService.deleteBook(id, userName);
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        } catch (AccessDeniedException e) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         } catch (EntityNotFoundException e) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
+
+    private String toJson(Object value) {
+        try {
+            return lineMapper.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String toCsv(BookDto book) {
+        return String.join(",",
+                String.valueOf(book.getId()),
+                Csv.field(book.getTitle()),
+                Csv.field(book.getAuthor()),
+                Csv.field(book.getIsbn()),
+                book.getStatus().name(),
+                Csv.field(book.getCoverUrl()));
+    }
+
+    private static void writeLine(Writer writer, String line) {
+        try {
+            writer.write(line);
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -0,0 +1,21 @@
+package com.example.booklending.controller;
+
+import java.util.Objects;
+
+/**
+ * Writing CSV lines for the streamed reports and exports.
+ */
+final class Csv {
+
+    private Csv() {
+    }
+
+    // RFC 4180: quote fields containing separators, quotes or line breaks, doubling embedded quotes
+    static String field(String value) {
+        String field = Objects.toString(value, "");
+        if (field.contains(",") || field.contains("\"") || field.contains("\n") || field.contains("\r")) {
+            return '"' + field.replace("\"", "\"\"") + '"';
+        }
+        return field;
+    }
+}
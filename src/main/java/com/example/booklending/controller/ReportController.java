@@ -0,0 +1,114 @@
+package com.example.booklending.controller;
+
+import com.example.booklending.dto.OverdueLoanDto;
+import com.example.booklending.service.OverdueLoanService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+@RestController
+@RequestMapping("/api/reports")
+@Tag(name = "Reports", description = "Endpoints for lending reports")
+public class ReportController {
+
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    static final MediaType CSV = MediaType.parseMediaType("text/csv");
+
+    private static final String CSV_HEADER = "book_id,title,isbn,holder_id,holder_username,due_date,days_overdue";
+
+    private final OverdueLoanService overdueLoanService;
+
+    // One object per line with ISO dates, as in the CSV, whatever the application-wide mapper is set to
+    private final ObjectMapper lineMapper;
+
+    @Autowired
+    public ReportController(OverdueLoanService overdueLoanService, ObjectMapper objectMapper) {
+        this.overdueLoanService = overdueLoanService;
+        this.lineMapper = objectMapper.copy()
+                .disable(SerializationFeature.INDENT_OUTPUT)
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    @Operation(summary = "Overdue loans", description = "Streams every loan past its due date, oldest first, as NDJSON or CSV.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Report streamed"),
+            @ApiResponse(responseCode = "400", description = "Unknown format")
+    })
+    @GetMapping("/overdue")
+    public ResponseEntity<StreamingResponseBody> getOverdueLoans(
+            @Parameter(description = "Output format: ndjson or csv", schema = @Schema(defaultValue = "ndjson"))
+            @RequestParam(defaultValue = "ndjson") String format) {
+        if (!format.equalsIgnoreCase("csv") && !format.equalsIgnoreCase("ndjson")) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        boolean csv = format.equalsIgnoreCase("csv");
+        LocalDateTime now = LocalDateTime.now();
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            try {
+                if (csv) {
+                    writer.write(CSV_HEADER);
+                    writer.write('\n');
+                }
+                overdueLoanService.streamOverdue(now, loan -> writeLine(writer, csv ? toCsv(loan) : toJson(loan)));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.flush();
+        };
+        return ResponseEntity.status(HttpStatus.OK)
+                .contentType(csv ? CSV : NDJSON)
+                .body(body);
+    }
+
+    private String toJson(OverdueLoanDto loan) {
+        try {
+            return lineMapper.writeValueAsString(loan);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String toCsv(OverdueLoanDto loan) {
+        return String.join(",",
+                String.valueOf(loan.getBookId()),
+                Csv.field(loan.getTitle()),
+                Csv.field(loan.getIsbn()),
+                loan.getHolderId() == null ? "" : String.valueOf(loan.getHolderId()),
+                Csv.field(loan.getHolderUsername()),
+                DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(loan.getDueDate()),
+                String.valueOf(loan.getDaysOverdue()));
+    }
+
+    private static void writeLine(Writer writer, String line) {
+        try {
+            writer.write(line);
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -40,4 +40,11 @@ public class BookDto {
     @Schema(description = "URL of the cover image of the book", example = "https://example.com/cover.jpg")
     private String coverUrl;
 
+    @Schema(description = "Version of the book as it was read; send it back unchanged with an update, "
+            + "which is rejected with 409 if the book has changed since", example = "0")
+    private Long version;
+
+    public BookDto(Long id, String title, String author, String isbn, BookStatus status, String coverUrl) {
+        this(id, title, author, isbn, status, coverUrl, null);
+    }
 }
@@ -0,0 +1,31 @@
+package com.example.booklending.dto;
+
+import com.example.booklending.model.BookImportOutcome;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "What an import did with one line of the upload")
+public class BookImportLineDto {
+
+    @Schema(description = "Line of the upload the book starts on", example = "2")
+    private long line;
+
+    @Schema(description = "ISBN of the book, without hyphens", example = "9780547928227")
+    private String isbn;
+
+    @Schema(description = "INSERTED, DUPLICATE when the ISBN is already in the catalog, or INVALID", example = "INSERTED")
+    private BookImportOutcome outcome;
+
+    @Schema(description = "ID of the added book", example = "101")
+    private Long bookId;
+
+    @Schema(description = "Why the book was not added", example = "Book with this ISBN already exists.")
+    private String error;
+}
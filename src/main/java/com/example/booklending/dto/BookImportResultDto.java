@@ -0,0 +1,27 @@
+package com.example.booklending.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Counts of a catalog import")
+public class BookImportResultDto {
+
+    @Schema(description = "Books read from the input", example = "888")
+    private long read;
+
+    @Schema(description = "Books added to the catalog", example = "850")
+    private long inserted;
+
+    @Schema(description = "Books whose ISBN was already in the catalog, or repeated in the input", example = "30")
+    private long duplicates;
+
+    @Schema(description = "Books left out because a required field was missing or too long", example = "8")
+    private long invalid;
+}
@@ -0,0 +1,28 @@
+package com.example.booklending.dto;
+
+import com.example.booklending.model.BulkOutcome;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "What a bulk action did to one book")
+public class BulkActionItemDto {
+
+    @Schema(description = "ID of the book", example = "101")
+    private Long bookId;
+
+    @Schema(description = "DONE, NOT_FOUND, CONFLICT, or ROLLED_BACK when the book was fine but another one failed an all-or-nothing request", example = "DONE")
+    private BulkOutcome outcome;
+
+    @Schema(description = "ID of the recorded action, if the book was done", example = "1")
+    private Long actionId;
+
+    @Schema(description = "Why the book was not done", example = "Book is not available for reservation")
+    private String message;
+}
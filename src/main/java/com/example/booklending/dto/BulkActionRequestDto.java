@@ -0,0 +1,27 @@
+package com.example.booklending.dto;
+
+import com.example.booklending.model.BulkMode;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "The books one bulk action applies to")
+public class BulkActionRequestDto {
+
+    @NotEmpty(message = "Book IDs are required")
+    @Schema(description = "IDs of the books; duplicates are applied once", example = "[101, 102, 103]", requiredMode = Schema.RequiredMode.REQUIRED)
+    private List<Long> bookIds;
+
+    @Builder.Default
+    @Schema(description = "ALL_OR_NOTHING applies the action to every book or to none; BEST_EFFORT applies it to the books it can", example = "BEST_EFFORT", defaultValue = "BEST_EFFORT")
+    private BulkMode mode = BulkMode.BEST_EFFORT;
+}
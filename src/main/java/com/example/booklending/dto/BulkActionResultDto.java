@@ -0,0 +1,29 @@
+package com.example.booklending.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Per-book results of a bulk action, in the order the books were requested")
+public class BulkActionResultDto {
+
+    @Schema(description = "Whether the changes were committed; false when an all-or-nothing request was rolled back", example = "true")
+    private boolean committed;
+
+    @Schema(description = "Number of books done", example = "2")
+    private int succeeded;
+
+    @Schema(description = "Number of books not done", example = "1")
+    private int failed;
+
+    @Schema(description = "One result per distinct book ID")
+    private List<BulkActionItemDto> results;
+}
@@ -0,0 +1,38 @@
+package com.example.booklending.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "A loan that has passed its due date without the book being returned")
+public class OverdueLoanDto {
+
+    @Schema(description = "ID of the lent out book", example = "101")
+    private Long bookId;
+
+    @Schema(description = "Title of the book", example = "The Hobbit")
+    private String title;
+
+    @Schema(description = "ISBN of the book", example = "9780547928227")
+    private String isbn;
+
+    @Schema(description = "ID of the user holding the book", example = "202")
+    private Long holderId;
+
+    @Schema(description = "Username of the user holding the book", example = "jdoe")
+    private String holderUsername;
+
+    @Schema(description = "When the book was due back", example = "2024-09-27T15:30:00")
+    private LocalDateTime dueDate;
+
+    @Schema(description = "Whole days since the due date", example = "3")
+    private long daysOverdue;
+}
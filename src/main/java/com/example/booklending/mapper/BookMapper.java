@@ -0,0 +1,39 @@
+package com.example.booklending.mapper;
+
+import com.example.booklending.dto.BookDto;
+import com.example.booklending.model.Book;
+import org.springframework.stereotype.Component;
+
+/**
+ * Plain field-by-field mapping between {@link Book} and {@link BookDto}.
+ */
+@Component
+public class BookMapper {
+
+    public BookDto toDto(Book book) {
+        if (book == null) {
+            return null;
+        }
+        return new BookDto(
+                book.getId(),
+                book.getTitle(),
+                book.getAuthor(),
+                book.getIsbn(),
+                book.getStatus(),
+                book.getCoverUrl(),
+                book.getVersion());
+    }
+
+    public Book toEntity(BookDto bookDto) {
+        if (bookDto == null) {
+            return null;
+        }
+        return new Book(
+                bookDto.getId(),
+                bookDto.getTitle(),
+                bookDto.getAuthor(),
+                bookDto.getIsbn(),
+                bookDto.getStatus(),
+                bookDto.getCoverUrl());
+    }
+}
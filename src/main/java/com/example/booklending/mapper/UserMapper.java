@@ -0,0 +1,40 @@
+package com.example.booklending.mapper;
+
+import com.example.booklending.dto.UserDto;
+import com.example.booklending.model.Role;
+import com.example.booklending.model.User;
+import org.springframework.stereotype.Component;
+
+/**
+ * Plain field-by-field mapping between {@link User} and {@link UserDto}. The role travels as its ID only.
+ */
+@Component
+public class UserMapper {
+
+    public UserDto toDto(User user) {
+        if (user == null) {
+            return null;
+        }
+        return UserDto.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .password(user.getPassword())
+                .email(user.getEmail())
+                .roleId(user.getRole() != null ? user.getRole().getId() : null)
+                .build();
+    }
+
+    // The role is a reference by ID; its name is not known here
+    public User toEntity(UserDto userDto) {
+        if (userDto == null) {
+            return null;
+        }
+        return User.builder()
+                .id(userDto.getId())
+                .username(userDto.getUsername())
+                .password(userDto.getPassword())
+                .email(userDto.getEmail())
+                .role(userDto.getRoleId() != null ? Role.builder().id(userDto.getRoleId()).build() : null)
+                .build();
+    }
+}
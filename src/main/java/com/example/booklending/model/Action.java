@@ -16,7 +16,8 @@ import java.time.LocalDateTime;
 public class Action {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "actions_id_seq")
+    @SequenceGenerator(name = "actions_id_seq", sequenceName = "actions_id_seq", allocationSize = 50)
     @Column(name = "id", updatable = false, nullable = false)
     @ApiModelProperty(notes = "The unique ID of the action", example = "1", required = true, position = 1)
     private Long id;
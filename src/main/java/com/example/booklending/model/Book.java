@@ -18,7 +18,8 @@ import lombok.Setter;
 public class Book {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "books_id_seq")
+    @SequenceGenerator(name = "books_id_seq", sequenceName = "books_id_seq", allocationSize = 50)
     @Column(name = "id", updatable = false, nullable = false)
     @ApiModelProperty(notes = "The unique ID of the book", example = "1", required = true, position = 1)
     private Long id;
@@ -43,4 +44,14 @@ public class Book {
     @Column(name = "cover_url")
     @ApiModelProperty(notes = "The URL of the book's cover image", example = "http://example.com/cover.jpg", position = 6)
     private String coverUrl;
+
+    // Makes concurrent updates of the same book fail instead of silently overwriting each other
+    @Version
+    @Column(name = "version", nullable = false)
+    @ApiModelProperty(notes = "Optimistic locking version, incremented on every update", example = "0", position = 7)
+    private Long version;
+
+    public Book(Long id, String title, String author, String isbn, BookStatus status, String coverUrl) {
+        this(id, title, author, isbn, status, coverUrl, null);
+    }
 }
@@ -0,0 +1,46 @@
+package com.example.booklending.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "book_current_state")
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@ApiModel(description = "Where a book currently is in the lending cycle, kept in step with the actions so it need not be derived from them.")
+public class BookCurrentState {
+
+    @Id
+    @Column(name = "book_id", updatable = false, nullable = false)
+    @ApiModelProperty(notes = "The ID of the book", example = "1", required = true, position = 1)
+    private Long bookId;
+
+    @Column(name = "holder_id")
+    @ApiModelProperty(notes = "The ID of the user who reserved or borrowed the book, if anyone", example = "2", position = 2)
+    private Long holderId;
+
+    @Column(name = "reservation_action_id")
+    @ApiModelProperty(notes = "The ID of the reservation the current loan started with", example = "10", position = 3)
+    private Long reservationActionId;
+
+    @Column(name = "loan_action_id")
+    @ApiModelProperty(notes = "The ID of the lent out action of the current loan", example = "11", position = 4)
+    private Long loanActionId;
+
+    @Column(name = "due_date")
+    @ApiModelProperty(notes = "When the reservation expires or the loan is due", example = "2024-09-15T12:00:00", position = 5)
+    private LocalDateTime dueDate;
+
+    public static BookCurrentState available(Long bookId) {
+        return new BookCurrentState(bookId, null, null, null, null);
+    }
+}
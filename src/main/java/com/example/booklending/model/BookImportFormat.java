@@ -0,0 +1,6 @@
+package com.example.booklending.model;
+
+public enum BookImportFormat {
+    NDJSON,
+    CSV
+}
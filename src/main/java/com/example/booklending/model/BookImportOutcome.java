@@ -0,0 +1,7 @@
+package com.example.booklending.model;
+
+public enum BookImportOutcome {
+    INSERTED,
+    DUPLICATE,
+    INVALID
+}
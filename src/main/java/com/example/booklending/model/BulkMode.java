@@ -0,0 +1,6 @@
+package com.example.booklending.model;
+
+public enum BulkMode {
+    ALL_OR_NOTHING,
+    BEST_EFFORT
+}
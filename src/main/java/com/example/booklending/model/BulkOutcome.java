@@ -0,0 +1,8 @@
+package com.example.booklending.model;
+
+public enum BulkOutcome {
+    DONE,
+    NOT_FOUND,
+    CONFLICT,
+    ROLLED_BACK
+}
@@ -19,10 +19,10 @@ public class PagedResponse<T> {
     @ApiModelProperty(notes = "The list of items in the current page", position = 1)
     private List<T> content;
 
-    @ApiModelProperty(notes = "The total number of elements available across all pages", example = "100", position = 2)
+    @ApiModelProperty(notes = "The total number of elements available across all pages, or -1 when not computed", example = "100", position = 2)
     private long totalElements;
 
-    @ApiModelProperty(notes = "The total number of pages available", example = "10", position = 3)
+    @ApiModelProperty(notes = "The total number of pages available, or -1 when not computed", example = "10", position = 3)
     private int totalPages;
 
     @ApiModelProperty(notes = "Indicates whether this is the last page", example = "false", position = 4)
@@ -33,4 +33,7 @@ public class PagedResponse<T> {
 
     @ApiModelProperty(notes = "The current page number", example = "1", position = 6)
     private int number;
+
+    @ApiModelProperty(notes = "Opaque cursor to fetch the next page with, when using cursor pagination", example = "dGl0bGUKQVNDCjQyCkR1bmU", position = 7)
+    private String nextCursor;
 }
@@ -0,0 +1,39 @@
+package com.example.booklending.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "revoked_tokens")
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@ApiModel(description = "A revoked token, or a cut-off time before which all tokens of a user are revoked.")
+public class RevokedToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", updatable = false, nullable = false)
+    @ApiModelProperty(notes = "The unique ID of the revocation", example = "1", required = true, position = 1)
+    private Long id;
+
+    @Column(name = "token_key", nullable = false, unique = true)
+    @ApiModelProperty(notes = "token:<digest> for a single token, user:<username> for all tokens of a user", example = "user:johndoe", required = true, position = 2)
+    private String tokenKey;
+
+    @Column(name = "revoked_at", nullable = false)
+    @ApiModelProperty(notes = "When the revocation was made", example = "2024-09-01T12:00:00", required = true, position = 3)
+    private LocalDateTime revokedAt;
+
+    @Column(name = "expires_at", nullable = false)
+    @ApiModelProperty(notes = "When every token the revocation covers has expired, so it can be dropped", example = "2024-09-02T12:00:00", required = true, position = 4)
+    private LocalDateTime expiresAt;
+}
@@ -16,7 +16,8 @@ import lombok.*;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_id_seq")
+    @SequenceGenerator(name = "users_id_seq", sequenceName = "users_id_seq", allocationSize = 50)
     @Column(name = "id", updatable = false, nullable = false)
     @ApiModelProperty(notes = "The unique ID of the user", example = "1", required = true, position = 1)
     private Long id;
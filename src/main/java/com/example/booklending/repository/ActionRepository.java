@@ -5,8 +5,19 @@ import com.example.booklending.model.ActionType;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface ActionRepository extends JpaRepository<Action, Long> {
     List<Action> findByUserIdAndAction(Long userId, ActionType action);
     List<Action> findByBookIdAndAction(Long bookId, ActionType action);
+
+    /**
+     * The latest action of a type on a book; read from the top of idx_actions_book_action_date.
+     */
+    Optional<Action> findTopByBookIdAndActionOrderByActionDateDesc(Long bookId, ActionType action);
+
+    /**
+     * The latest action of a type by a user; read from the top of idx_actions_user_action_date.
+     */
+    Optional<Action> findTopByUserIdAndActionOrderByActionDateDesc(Long userId, ActionType action);
 }
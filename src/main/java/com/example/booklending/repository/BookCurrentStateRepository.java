@@ -0,0 +1,7 @@
+package com.example.booklending.repository;
+
+import com.example.booklending.model.BookCurrentState;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface BookCurrentStateRepository extends JpaRepository<BookCurrentState, Long> {
+}
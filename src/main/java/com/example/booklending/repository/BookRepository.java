@@ -1,17 +1,25 @@
 package com.example.booklending.repository;
 
+import com.example.booklending.dto.BookDto;
 import com.example.booklending.model.Book;
+import com.example.booklending.model.BookStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long>, JpaSpecificationExecutor<Book> {
+public interface BookRepository extends JpaRepository<Book, Long>, JpaSpecificationExecutor<Book>, BookRepositoryCustom {
 
 
     /**
@@ -22,6 +30,82 @@ public interface BookRepository extends JpaRepository<Book, Long>, JpaSpecificat
      */
     Optional<Book> findByIsbn(String isbn);
 
+    /**
+     * Find a book by its ID, read directly into a DTO.
+     *
+     * @param id the ID of the book
+     * @return an Optional containing the book if found, or empty if not found
+     */
+    @Query("SELECT new com.example.booklending.dto.BookDto(b.id, b.title, b.author, b.isbn, b.status, b.coverUrl, b.version) FROM Book b WHERE b.id = :id")
+    Optional<BookDto> findDtoById(@Param("id") Long id);
+
+    /**
+     * Find a book by its ISBN, read directly into a DTO.
+     *
+     * @param isbn the ISBN of the book
+     * @return an Optional containing the book if found, or empty if not found
+     */
+    @Query("SELECT new com.example.booklending.dto.BookDto(b.id, b.title, b.author, b.isbn, b.status, b.coverUrl, b.version) FROM Book b WHERE b.isbn = :isbn")
+    Optional<BookDto> findDtoByIsbn(@Param("isbn") String isbn);
+
+    /**
+     * Find books by their IDs, read directly into DTOs. The order of the result is unspecified.
+     *
+     * @param ids the IDs of the books
+     * @return the books that exist
+     */
+    @Query("SELECT new com.example.booklending.dto.BookDto(b.id, b.title, b.author, b.isbn, b.status, b.coverUrl, b.version) FROM Book b WHERE b.id IN :ids")
+    List<BookDto> findDtosByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Move a book from one status to another in a single conditional update, so that of several concurrent
+     * transitions from the same status only one succeeds. Increments the version, so that concurrent
+     * optimistic writes of the book fail. Clears the persistence context, since loaded books may no longer
+     * reflect the database.
+     *
+     * @param id   the ID of the book
+     * @param from the status the book must currently have
+     * @param to   the new status
+     * @return 1 if the book was updated, 0 if it does not exist or does not have status {@code from}
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Book b SET b.status = :to, b.version = b.version + 1 WHERE b.id = :id AND b.status = :from")
+    int compareAndSetStatus(@Param("id") Long id, @Param("from") BookStatus from, @Param("to") BookStatus to);
+
 
     List<Book> findAll(Specification<Book> spec, Sort sort);
+
+    /**
+     * Full-text search over the weighted title/author search vector, best matches first.
+     *
+     * @param query    the search terms, in web search syntax (quoted phrases, "or", "-" to exclude)
+     * @param statuses the statuses to include
+     * @param pageable the page to fetch; must be unsorted since results are ordered by rank
+     * @return a page of matching books ordered by rank
+     */
+    @Query(value = """
+            SELECT b.* FROM books b
+            WHERE b.search_vector @@ websearch_to_tsquery('english', :query)
+              AND b.status IN (:statuses)
+            ORDER BY ts_rank(b.search_vector, websearch_to_tsquery('english', :query)) DESC, b.id
+            """,
+            countQuery = """
+                    SELECT count(*) FROM books b
+                    WHERE b.search_vector @@ websearch_to_tsquery('english', :query)
+                      AND b.status IN (:statuses)
+                    """,
+            nativeQuery = true)
+    Page<Book> searchFullText(@Param("query") String query, @Param("statuses") Collection<String> statuses, Pageable pageable);
+
+    /**
+     * Find at most {@code limit} books matching the specification, without running a count query.
+     *
+     * @param spec  the filter to apply
+     * @param sort  the sort order
+     * @param limit the maximum number of books to return
+     * @return the first {@code limit} matching books
+     */
+    default List<Book> findAll(Specification<Book> spec, Sort sort, int limit) {
+        return findBy(spec, query -> query.sortBy(sort).limit(limit).all());
+    }
 }
@@ -0,0 +1,45 @@
+package com.example.booklending.repository;
+
+import com.example.booklending.dto.BookDto;
+import com.example.booklending.model.Book;
+import com.example.booklending.model.BookStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+
+/**
+ * Book queries that Spring Data cannot derive: specification pages read straight into {@link BookDto},
+ * paging without a count query, and planner-based counts.
+ */
+public interface BookRepositoryCustom {
+
+    /**
+     * Find a page of books as DTOs, selecting only the mapped columns instead of managed entities.
+     *
+     * @param spec     the filter to apply
+     * @param pageable the page and sort order to fetch
+     * @return the requested page of books, with the total number of matches
+     */
+    Page<BookDto> findPage(Specification<Book> spec, Pageable pageable);
+
+    /**
+     * Find a page of books as DTOs without counting all matches; fetches one extra row to tell whether there is a next page.
+     *
+     * @param spec     the filter to apply
+     * @param pageable the page and sort order to fetch
+     * @return the requested slice of books
+     */
+    Slice<BookDto> findSlice(Specification<Book> spec, Pageable pageable);
+
+    /**
+     * Estimate how many books match a search, using the query planner's row estimate instead of counting.
+     *
+     * @param likePattern a lower-case LIKE pattern matched against title, ISBN and author, or null for no text filter
+     * @param statuses    the statuses to include, or empty for all statuses
+     * @return the planner's estimate of matching rows
+     */
+    long estimateCount(String likePattern, Collection<BookStatus> statuses);
+}
@@ -0,0 +1,117 @@
+package com.example.booklending.repository;
+
+import com.example.booklending.dto.BookDto;
+import com.example.booklending.model.Book;
+import com.example.booklending.model.BookStatus;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BookRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Page<BookDto> findPage(Specification<Book> spec, Pageable pageable) {
+        List<BookDto> books = selectDtos(spec, pageable, pageable.getPageSize());
+        return PageableExecutionUtils.getPage(books, pageable, () -> count(spec));
+    }
+
+    @Override
+    public Slice<BookDto> findSlice(Specification<Book> spec, Pageable pageable) {
+        List<BookDto> books = selectDtos(spec, pageable, pageable.getPageSize() + 1);
+
+        boolean hasNext = books.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? books.subList(0, pageable.getPageSize()) : books, pageable, hasNext);
+    }
+
+    // Constructor expressions return plain objects: nothing is added to the persistence context or dirty-checked
+    private List<BookDto> selectDtos(Specification<Book> spec, Pageable pageable, int maxResults) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BookDto> query = criteriaBuilder.createQuery(BookDto.class);
+        Root<Book> root = query.from(Book.class);
+
+        query.select(criteriaBuilder.construct(BookDto.class,
+                root.get("id"), root.get("title"), root.get("author"),
+                root.get("isbn"), root.get("status"), root.get("coverUrl"), root.get("version")));
+        Predicate predicate = spec.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, criteriaBuilder));
+
+        return entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(maxResults)
+                .getResultList();
+    }
+
+    private long count(Specification<Book> spec) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<Book> root = query.from(Book.class);
+
+        query.select(criteriaBuilder.count(root));
+        Predicate predicate = spec.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    @Override
+    public long estimateCount(String likePattern, Collection<BookStatus> statuses) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> parameters = new ArrayList<>();
+
+        if (likePattern != null) {
+            conditions.add("(lower(b.title) LIKE ? ESCAPE '\\' OR lower(b.isbn) LIKE ? ESCAPE '\\' OR lower(b.author) LIKE ? ESCAPE '\\')");
+            parameters.add(likePattern);
+            parameters.add(likePattern);
+            parameters.add(likePattern);
+        }
+        if (!statuses.isEmpty()) {
+            // Enum names are safe to inline
+            conditions.add(statuses.stream()
+                    .map(status -> "'" + status.name() + "'")
+                    .collect(Collectors.joining(", ", "b.status IN (", ")")));
+        }
+
+        String sql = "EXPLAIN (FORMAT JSON) SELECT 1 FROM books b"
+                + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions));
+        String plan = jdbcTemplate.queryForObject(sql, String.class, parameters.toArray());
+
+        try {
+            return MAPPER.readTree(plan).path(0).path("Plan").path("Plan Rows").asLong();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable query plan", e);
+        }
+    }
+}
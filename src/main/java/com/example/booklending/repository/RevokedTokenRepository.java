@@ -0,0 +1,31 @@
+package com.example.booklending.repository;
+
+import com.example.booklending.model.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, Long> {
+
+    /**
+     * Records a revocation, or moves an existing revocation of the same key to the new times, in one statement so
+     * that concurrent revocations of a key cannot both insert it.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO revoked_tokens (token_key, revoked_at, expires_at) VALUES (:tokenKey, :revokedAt, :expiresAt)
+            ON CONFLICT (token_key) DO UPDATE SET revoked_at = EXCLUDED.revoked_at, expires_at = EXCLUDED.expires_at
+            """,
+            nativeQuery = true)
+    void upsert(@Param("tokenKey") String tokenKey, @Param("revokedAt") LocalDateTime revokedAt, @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RevokedToken r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -1,15 +1,29 @@
 package com.example.booklending.repository;
 
 import com.example.booklending.model.User;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
 
+/**
+ * Lookups by username and ID are cached (see {@code spring.cache} in application.yml), since they run on
+ * nearly every request. The cached users are detached and shared, so they must not be modified; whoever
+ * changes or deletes a user evicts both entries. Missing users are not cached.
+ */
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
+    String USERS_BY_USERNAME_CACHE = "usersByUsername";
+    String USERS_BY_ID_CACHE = "usersById";
+
+    @Cacheable(cacheNames = USERS_BY_USERNAME_CACHE, key = "#p0", unless = "#result == null")
     Optional<User> findByUsername(String username);
 
+    @Override
+    @Cacheable(cacheNames = USERS_BY_ID_CACHE, key = "#p0", unless = "#result == null")
+    Optional<User> findById(Long id);
+
     Optional<User> findByEmail(String email);
 }
@@ -1,8 +1,11 @@
 package com.example.booklending.service;
 
+import com.example.booklending.configuration.ActingUser;
 import com.example.booklending.dto.ActionDto;
+import com.example.booklending.exception.ConflictException;
 import com.example.booklending.model.*;
 import com.example.booklending.repository.ActionRepository;
+import com.example.booklending.repository.BookCurrentStateRepository;
 import com.example.booklending.repository.BookRepository;
 import com.example.booklending.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
@@ -10,7 +13,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.Comparator;
 import java.util.Optional;
 
 import static com.example.booklending.configuration.Constants.ADMIN_ROLE;
@@ -22,27 +24,28 @@ public class ActionService {
     private final ActionRepository actionRepository;
     private final BookRepository bookRepository;
     private final UserRepository userRepository;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookCurrentStateRepository bookCurrentStateRepository;
 
-    public ActionService(ActionRepository actionRepository, BookRepository bookRepository, UserRepository userRepository) {
+    public ActionService(ActionRepository actionRepository, BookRepository bookRepository, UserRepository userRepository,
+                         BookSearchIndex bookSearchIndex, BookCurrentStateRepository bookCurrentStateRepository) {
         this.actionRepository = actionRepository;
         this.bookRepository = bookRepository;
         this.userRepository = userRepository;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookCurrentStateRepository = bookCurrentStateRepository;
     }
 
     @Transactional
     public ActionDto reserveBook(String userName, Long bookId) {
-        User user = userRepository.findByUsername(userName).orElseThrow(() -> new RuntimeException("User not found"));
-        Book book = bookRepository.findById(bookId).orElseThrow(() -> new RuntimeException("Book not found"));
+        User user = ActingUser.authenticated(userName);
         Action reserveAction = new Action();
 
         if (user.getRole().getId() != 2) {
             throw new RuntimeException("User is not a borrower");
         }
-        if (!book.getStatus().equals(BookStatus.AVAILABLE)) {
-            throw new RuntimeException("Book is not available for reservation");
-        }
 
-        book.setStatus(BookStatus.RESERVED);
+        Book book = transition(bookId, BookStatus.AVAILABLE, BookStatus.RESERVED, "Book is not available for reservation");
 
         reserveAction.setBook(book);
         reserveAction.setUser(user);
@@ -51,29 +54,32 @@ public class ActionService {
         reserveAction.setDueDate(LocalDateTime.now().plusHours(24)); // reservation up to 24 hours
 
         Action savedAction = actionRepository.save(reserveAction);
-        bookRepository.save(book);
+        bookSearchIndex.put(book);
+
+        BookCurrentState state = currentState(bookId);
+        state.setHolderId(user.getId());
+        state.setReservationActionId(savedAction.getId());
+        state.setLoanActionId(null);
+        state.setDueDate(savedAction.getDueDate());
+        bookCurrentStateRepository.save(state);
 
         return convertToDto(savedAction);
     }
 
     @Transactional
     public ActionDto cancelReservation(String userName, Long bookId) {
-        Book book = bookRepository.findById(bookId).orElseThrow(() -> new EntityNotFoundException("Book not found"));
-        User user = userRepository.findByUsername(userName).orElseThrow(() -> new EntityNotFoundException("User not found"));
+        User user = ActingUser.authenticated(userName);
         Action cancelReservationAction = new Action();
 
-        if (!book.getStatus().equals(BookStatus.RESERVED)) {
-            throw new RuntimeException("Book is not available for reservation");
-        }
-
-        book.setStatus(BookStatus.AVAILABLE);
+        Book book = transition(bookId, BookStatus.RESERVED, BookStatus.AVAILABLE, "Book is not reserved");
 
         cancelReservationAction.setAction(ActionType.CANCEL_BOOK_RESERVATION);
         cancelReservationAction.setUser(user);
         cancelReservationAction.setBook(book);
 
         Action updatedAction = actionRepository.save(cancelReservationAction);
-        bookRepository.save(book);
+        bookSearchIndex.put(book);
+        bookCurrentStateRepository.save(BookCurrentState.available(bookId));
 
         return convertToDto(updatedAction);
     }
@@ -81,59 +87,51 @@ public class ActionService {
 
     @Transactional
     public ActionDto markAsLentOut(Long bookId) {
-        Book book = bookRepository.findById(bookId).orElseThrow(() -> new EntityNotFoundException("Book not found"));
         Action lentOutAction = new Action();
 
-        // find last reservation
-        Optional<Action> reservation = actionRepository.findByBookIdAndAction(bookId, ActionType.RESERVE_BOOK)
-                .stream()
-                .max(Comparator.comparing(Action::getActionDate));
-
-        if (reservation.isEmpty()) {
-            throw new EntityNotFoundException("Reservation not found");
-        }
+        Book book = transition(bookId, BookStatus.RESERVED, BookStatus.LENT_OUT, "Book is not reserved");
 
-        book.setStatus(BookStatus.LENT_OUT);
-        bookRepository.save(book);
+        // the current reservation; failing here rolls back the status change
+        BookCurrentState state = currentStateOrHistory(bookId)
+                .filter(current -> current.getReservationActionId() != null && current.getHolderId() != null)
+                .orElseThrow(() -> new EntityNotFoundException("Reservation not found"));
+        bookSearchIndex.put(book);
 
         lentOutAction.setBook(book);
-        lentOutAction.setUser(reservation.get().getUser());
+        lentOutAction.setUser(userRepository.getReferenceById(state.getHolderId()));
         lentOutAction.setAction(ActionType.LENT_OUT_BOOK);
         lentOutAction.setActionDate(LocalDateTime.now());
         lentOutAction.setDueDate(LocalDateTime.now().plusWeeks(4)); // 4-week borrowing period
 
         Action savedAction = actionRepository.save(lentOutAction);
 
+        state.setLoanActionId(savedAction.getId());
+        state.setDueDate(savedAction.getDueDate());
+        bookCurrentStateRepository.save(state);
+
         return convertToDto(savedAction);
     }
 
     @Transactional
     public ActionDto markAsReceived(String userName, Long bookId) {
-        Book book = bookRepository.findById(bookId).orElseThrow(() -> new EntityNotFoundException("Book not found"));
-        User user = userRepository.findByUsername(userName).orElseThrow(() -> new EntityNotFoundException("User not found"));
-
-        Action lentOutAction = actionRepository.findByBookIdAndAction(bookId, ActionType.LENT_OUT_BOOK)
-                .stream()
-                .filter(action -> action.getUser().getUsername().equals(userName))
-                .findFirst()
-                .orElseThrow(() -> new EntityNotFoundException("Book is not lent out!"));
+        User user = ActingUser.authenticated(userName);
 
-        if (!book.getStatus().equals(BookStatus.LENT_OUT)) {
-            throw new EntityNotFoundException("Book is not lent out!");
-        }
+        Book book = transition(bookId, BookStatus.LENT_OUT, BookStatus.BORROWED, "Book is not lent out!");
 
+        // the book must be lent out to this user; failing here rolls back the status change
+        BookCurrentState state = currentStateOrHistory(bookId)
+                .filter(current -> current.getLoanActionId() != null && user.getId().equals(current.getHolderId()))
+                .orElseThrow(() -> new EntityNotFoundException("Book is not lent out!"));
 
         Action receivedAction = new Action();
         receivedAction.setBook(book);
         receivedAction.setUser(user);
         receivedAction.setAction(ActionType.RECEIVE_BOOK);
         receivedAction.setActionDate(LocalDateTime.now());
-        receivedAction.setDueDate(lentOutAction.getDueDate()); // 4-week borrowing period TODO: change!
-
-        book.setStatus(BookStatus.BORROWED);
+        receivedAction.setDueDate(state.getDueDate()); // the due date set when the book was lent out
 
         Action savedAction = actionRepository.save(receivedAction);
-        bookRepository.save(book);
+        bookSearchIndex.put(book);
 
         return convertToDto(savedAction);
     }
@@ -141,15 +139,12 @@ public class ActionService {
     @Transactional
     public ActionDto markAsReturned(String userName, Long bookId) {
 
-        Book book = bookRepository.findById(bookId).orElseThrow(() -> new EntityNotFoundException("Book not found"));
-        User user = userRepository.findByUsername(userName).orElseThrow(() -> new EntityNotFoundException("User not found"));
+        User user = ActingUser.authenticated(userName);
         Action savedAction = null;
 
         if (user.getRole().getName().equals(USER_ROLE)) {
 
-            if (!book.getStatus().equals(BookStatus.BORROWED)) {
-                throw new EntityNotFoundException("Book currently is not borrowed by user!");
-            }
+            Book book = transition(bookId, BookStatus.BORROWED, BookStatus.RETURNED, "Book currently is not borrowed by user!");
 
             Action returnAction = new Action();
             returnAction.setBook(book);
@@ -157,27 +152,23 @@ public class ActionService {
             returnAction.setAction(ActionType.RETURN_BOOK);
             returnAction.setActionDate(LocalDateTime.now());
 
-            book.setStatus(BookStatus.RETURNED);
-
             savedAction = actionRepository.save(returnAction);
-            bookRepository.save(book);
+            bookSearchIndex.put(book);
         }
 
         if (user.getRole().getName().equals(ADMIN_ROLE)) {
 
-            if (!book.getStatus().equals(BookStatus.RETURNED)) {
-                throw new EntityNotFoundException("Book currently is not returned by user!");
-            }
+            Book book = transition(bookId, BookStatus.RETURNED, BookStatus.AVAILABLE, "Book currently is not returned by user!");
+            bookCurrentStateRepository.save(BookCurrentState.available(bookId));
 
             Action returnAction = new Action();
             returnAction.setBook(book);
             returnAction.setUser(user);
             returnAction.setAction(ActionType.RETURN_BOOK);
             returnAction.setActionDate(LocalDateTime.now());
-            book.setStatus(BookStatus.AVAILABLE);
 
             savedAction = actionRepository.save(returnAction);
-            bookRepository.save(book);
+            bookSearchIndex.put(book);
         }
 
         if (savedAction != null) {
@@ -187,7 +178,49 @@ public class ActionService {
         }
     }
 
-    private ActionDto convertToDto(Action action) {
+    /**
+     * Moves the book from one status to another with a single conditional UPDATE, so that of concurrent
+     * requests for the same transition exactly one wins, without holding a row lock across the request.
+     *
+     * @return the book in its new status
+     * @throws EntityNotFoundException if the book does not exist
+     * @throws ConflictException       if the book does not have status {@code from}, e.g. because another request changed it first
+     */
+    private Book transition(Long bookId, BookStatus from, BookStatus to, String conflictMessage) {
+        if (bookRepository.compareAndSetStatus(bookId, from, to) == 0) {
+            if (!bookRepository.existsById(bookId)) {
+                throw new EntityNotFoundException("Book not found");
+            }
+            throw new ConflictException(conflictMessage);
+        }
+        return bookRepository.findById(bookId).orElseThrow(() -> new EntityNotFoundException("Book not found"));
+    }
+
+    private BookCurrentState currentState(Long bookId) {
+        return bookCurrentStateRepository.findById(bookId).orElseGet(() -> BookCurrentState.available(bookId));
+    }
+
+    /**
+     * The book's current state, or for a book without a state row, e.g. one inserted outside the application,
+     * the state rebuilt from its latest reservation and loan.
+     */
+    private Optional<BookCurrentState> currentStateOrHistory(Long bookId) {
+        Optional<BookCurrentState> state = bookCurrentStateRepository.findById(bookId);
+        if (state.isPresent()) {
+            return state;
+        }
+        Optional<Action> reservation = actionRepository.findTopByBookIdAndActionOrderByActionDateDesc(bookId, ActionType.RESERVE_BOOK);
+        Optional<Action> loan = actionRepository.findTopByBookIdAndActionOrderByActionDateDesc(bookId, ActionType.LENT_OUT_BOOK)
+                .filter(lentOut -> reservation.isEmpty() || !lentOut.getActionDate().isBefore(reservation.get().getActionDate()));
+        return reservation.map(reserved -> new BookCurrentState(
+                bookId,
+                loan.orElse(reserved).getUser().getId(),
+                reserved.getId(),
+                loan.map(Action::getId).orElse(null),
+                loan.orElse(reserved).getDueDate()));
+    }
+
+    ActionDto convertToDto(Action action) {
         return new ActionDto(
                 action.getId(),
                 action.getBook().getId(),
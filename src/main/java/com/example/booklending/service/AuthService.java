@@ -1,7 +1,9 @@
 package com.example.booklending.service;
 
+import com.example.booklending.configuration.ActingUser;
 import com.example.booklending.configuration.JwtUtil;
 import com.example.booklending.configuration.RoleIdGrantedAuthority;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,6 +24,8 @@ public class AuthService {
 
     private final AuthenticationManager authenticationManager;
     private final JwtUtil jwtUtil;
+    private final UserVersionRegistry userVersionRegistry;
+    private final TokenRevocationService tokenRevocationService;
 
     public String authenticateAndGenerateToken(String username, String password) {
         logger.info("Attempting to authenticate user: {}", username);
@@ -41,8 +45,10 @@ public class AuthService {
                     .map(GrantedAuthority::getAuthority) // Extract roleId
                     .findFirst();  // Return the first matching roleId
 
-            // Generate and return JWT token
-            String token = jwtUtil.generateToken(username, roleName);
+            // Generate and return JWT token; with the user's ID and version when known, for stateless authentication
+            String token = authentication.getPrincipal() instanceof ActingUser actingUser
+                    ? jwtUtil.generateToken(actingUser, userVersionRegistry.currentVersion(actingUser.getId()))
+                    : jwtUtil.generateToken(username, roleName);
             logger.info("Generated JWT token for user: {}", username);
 
             return token;
@@ -51,4 +57,20 @@ public class AuthService {
             throw e;
         }
     }
+
+    /**
+     * Revokes the given token for the rest of its lifetime.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is invalid or already expired
+     */
+    public void logout(String token) {
+        Claims claims = jwtUtil.extractClaims(token);
+        tokenRevocationService.revokeToken(JwtUtil.digest(token), claims.getExpiration().toInstant());
+        logger.info("User logged out: {}", claims.getSubject());
+    }
+
+    public void revokeAllTokens(String username) {
+        tokenRevocationService.revokeAllForUser(username);
+        logger.info("Revoked all tokens of user: {}", username);
+    }
 }
@@ -0,0 +1,110 @@
+package com.example.booklending.service;
+
+import com.example.booklending.model.Book;
+import com.example.booklending.model.BookStatus;
+import jakarta.persistence.criteria.Expression;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Set;
+
+/**
+ * Position of the last row of a keyset page: the sort key of that row plus its ID as a tie-breaker.
+ * Serialized as an opaque URL-safe string that clients hand back to fetch the next page.
+ */
+@Getter
+@RequiredArgsConstructor
+class BookCursor {
+
+    // Only non-nullable columns backed by a (column, id) index can be used as a seek key
+    static final Set<String> SORT_FIELDS = Set.of("id", "title", "author", "isbn", "status");
+
+    private static final String SEPARATOR = "\n";
+
+    private final String sortBy;
+    private final Sort.Direction direction;
+    private final Long id;
+    private final String value;
+
+    static BookCursor after(Book book, String sortBy, Sort.Direction direction) {
+        String value = switch (sortBy) {
+            case "title" -> book.getTitle();
+            case "author" -> book.getAuthor();
+            case "isbn" -> book.getIsbn();
+            case "status" -> book.getStatus().name();
+            default -> String.valueOf(book.getId());
+        };
+        return new BookCursor(sortBy, direction, book.getId(), value);
+    }
+
+    /**
+     * Decodes a cursor and checks that it was issued for the same sorting as the current request.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed or was issued for a different sorting
+     */
+    static BookCursor decode(String cursor, String sortBy, Sort.Direction direction) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARATOR, 4);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor.");
+        }
+        if (parts.length != 4 || !parts[0].equals(sortBy) || !parts[1].equals(direction.name())) {
+            throw new IllegalArgumentException("Cursor does not match the requested sorting.");
+        }
+        try {
+            return new BookCursor(sortBy, direction, Long.parseLong(parts[2]), parts[3]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor.");
+        }
+    }
+
+    String encode() {
+        String raw = String.join(SEPARATOR, sortBy, direction.name(), String.valueOf(id), value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    boolean isSortedById() {
+        return "id".equals(sortBy);
+    }
+
+    /**
+     * Rows sharing the cursor's sort key that come after it in ID order: {@code key = ? AND id > ?}.
+     */
+    @SuppressWarnings("unchecked")
+    Specification<Book> sameKeyAfterId() {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.and(
+                criteriaBuilder.equal(root.get(sortBy), keyValue()),
+                direction.isAscending()
+                        ? criteriaBuilder.greaterThan(root.get("id"), id)
+                        : criteriaBuilder.lessThan(root.get("id"), id)
+        );
+    }
+
+    /**
+     * Rows whose sort key comes strictly after the cursor's: {@code key > ?}.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    Specification<Book> keyAfter() {
+        return (root, query, criteriaBuilder) -> {
+            Expression key = root.get(sortBy);
+            Comparable keyValue = keyValue();
+            return direction.isAscending()
+                    ? criteriaBuilder.greaterThan(key, keyValue)
+                    : criteriaBuilder.lessThan(key, keyValue);
+        };
+    }
+
+    @SuppressWarnings("rawtypes")
+    private Comparable keyValue() {
+        return switch (sortBy) {
+            case "status" -> BookStatus.valueOf(value);
+            case "id" -> id;
+            default -> value;
+        };
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.booklending.service;
+
+import com.example.booklending.dto.BookDto;
+import com.example.booklending.model.BookStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads the whole catalog for an export. The books are read through a server-side cursor,
+ * {@code books.export.fetch-size} rows at a time, and handed on one by one, so an export takes the same memory
+ * whether the catalog has ten thousand books or ten million. Unlike paging through the listing there is no
+ * offset to skip and no count to compute.
+ */
+@Service
+public class BookExportService {
+
+    private static final String ALL_BOOKS = "SELECT id, title, author, isbn, status, cover_url, version FROM books ORDER BY id";
+
+    private static final String BOOKS_WITH_STATUS =
+            "SELECT id, title, author, isbn, status, cover_url, version FROM books WHERE status = ANY(?) ORDER BY id";
+
+    private final JdbcTemplate cursorTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public BookExportService(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${books.export.fetch-size:1000}") int fetchSize) {
+        this.cursorTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.cursorTemplate.setFetchSize(fetchSize);
+        // PostgreSQL only reads through a cursor, rather than loading the whole result, inside a transaction
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Hands every book to {@code sink} in ID order.
+     *
+     * @param statuses the statuses to export, or empty for all books
+     */
+    public void streamBooks(List<BookStatus> statuses, Consumer<BookDto> sink) {
+        Object[] args = statuses.isEmpty()
+                ? new Object[0]
+                : new Object[]{statuses.stream().map(BookStatus::name).toArray(String[]::new)};
+        readOnlyTransaction.executeWithoutResult(status -> cursorTemplate.query(
+                statuses.isEmpty() ? ALL_BOOKS : BOOKS_WITH_STATUS,
+                rs -> {
+                    sink.accept(BookDto.builder()
+                            .id(rs.getLong("id"))
+                            .title(rs.getString("title"))
+                            .author(rs.getString("author"))
+                            .isbn(rs.getString("isbn"))
+                            .status(BookStatus.valueOf(rs.getString("status")))
+                            .coverUrl(rs.getString("cover_url"))
+                            .version(rs.getLong("version"))
+                            .build());
+                },
+                args));
+    }
+}
@@ -0,0 +1,414 @@
+package com.example.booklending.service;
+
+import com.example.booklending.configuration.ActingUser;
+import com.example.booklending.configuration.DataLoader;
+import com.example.booklending.dto.BookImportLineDto;
+import com.example.booklending.dto.BookImportResultDto;
+import com.example.booklending.model.Book;
+import com.example.booklending.model.BookImportFormat;
+import com.example.booklending.model.BookImportOutcome;
+import com.example.booklending.model.BookStatus;
+import com.example.booklending.model.User;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Adds books to the catalog straight from a stream: books are parsed one at a time and written in batches of
+ * {@code data.populate.batch-size}, each a single {@code INSERT ... ON CONFLICT (isbn) DO NOTHING}, so memory
+ * use does not grow with the input and a book costs no round trip of its own. Books whose ISBN is already in
+ * the catalog are skipped, which makes an import safe to repeat.
+ * <p>
+ * Every batch commits on its own; an import that fails part way keeps the batches written before.
+ * <p>
+ * Uploads through {@link #importLines} are held to the rules of a single book creation: ISBNs have to be valid
+ * ISBN-10 or ISBN-13, every added book gets its {@code ADD_BOOK} action, written by the same statement as the
+ * batch, and the outcome of every line is reported once its batch is written.
+ */
+@Slf4j
+@Service
+public class BookImportService {
+
+    // One statement whatever the batch size: the columns travel as arrays
+    private static final String INSERT_BATCH = """
+            INSERT INTO books (title, author, isbn, status, cover_url)
+            SELECT * FROM unnest(?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[])
+            ON CONFLICT (isbn) DO NOTHING
+            """;
+
+    private static final String IMPORT_BATCH = """
+            WITH inserted AS (
+              INSERT INTO books (title, author, isbn, status, cover_url)
+              SELECT * FROM unnest(?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[])
+              ON CONFLICT (isbn) DO NOTHING
+              RETURNING id, isbn
+            ), audit AS (
+              INSERT INTO actions (book_id, user_id, action, action_date)
+              SELECT id, ?, 'ADD_BOOK', ? FROM inserted
+            )
+            SELECT id, isbn FROM inserted
+            """;
+
+    private static final String BOOK_EXISTS = "Book with this ISBN already exists.";
+
+    // Column sizes of the books table
+    private static final int MAX_TEXT_LENGTH = 255;
+    private static final int MAX_ISBN_LENGTH = 13;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BookSearchIndex bookSearchIndex;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+
+    public BookImportService(JdbcTemplate jdbcTemplate,
+                             BookSearchIndex bookSearchIndex,
+                             @Value("${data.populate.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bookSearchIndex = bookSearchIndex;
+        this.objectMapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Imports a JSON array of books, e.g. {@code books.json}.
+     *
+     * @param limit how many books to read at most
+     * @throws IOException if the input cannot be read or is not a JSON array of books
+     */
+    public BookImportResultDto importJsonArray(InputStream in, long limit) throws IOException {
+        Batch batch = new Batch();
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of books.");
+            }
+            while (batch.read < limit && parser.nextToken() == JsonToken.START_OBJECT) {
+                batch.add(objectMapper.readValue(parser, Book.class));
+            }
+        }
+        BookImportResultDto result = batch.finish();
+        log.info("Imported {} of {} books ({} duplicates, {} invalid)",
+                result.getInserted(), result.getRead(), result.getDuplicates(), result.getInvalid());
+        return result;
+    }
+
+    /**
+     * Imports books that are already in memory, e.g. one page fetched from the books API.
+     */
+    public BookImportResultDto importBooks(Collection<Book> books) {
+        Batch batch = new Batch();
+        books.forEach(batch::add);
+        return batch.finish();
+    }
+
+    /**
+     * The user an upload is recorded as added by: the authenticated user. Checked before the upload is read, so
+     * a request naming someone else is rejected up front.
+     *
+     * @throws AccessDeniedException if the request is not authenticated as {@code userName}
+     */
+    public User findImporter(String userName) {
+        return ActingUser.authenticated(userName);
+    }
+
+    /**
+     * Imports an upload of books, one JSON object per line or CSV with a header row naming the {@code title},
+     * {@code author}, {@code isbn} and optionally {@code status} and {@code cover_url} columns. Blank lines are
+     * skipped.
+     *
+     * @param importer the user the {@code ADD_BOOK} actions are recorded for
+     * @param results  receives the outcome of every line, in input order, after each batch is written
+     * @throws IllegalArgumentException if the CSV header lacks a required column
+     * @throws IOException              if the upload cannot be read
+     */
+    public BookImportResultDto importLines(InputStream in, BookImportFormat format, User importer,
+                                           Consumer<BookImportLineDto> results) throws IOException {
+        Batch batch = new Batch(importer.getId(), results);
+        InputStreamReader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+        if (format == BookImportFormat.CSV) {
+            readCsv(new CsvRecordReader(reader), batch);
+        } else {
+            readNdjson(new BufferedReader(reader), batch);
+        }
+        BookImportResultDto result = batch.finish();
+        log.info("Imported {} of {} uploaded books for {} ({} duplicates, {} invalid)",
+                result.getInserted(), result.getRead(), importer.getUsername(), result.getDuplicates(), result.getInvalid());
+        return result;
+    }
+
+    private void readNdjson(BufferedReader reader, Batch batch) throws IOException {
+        long lineNumber = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            Book book;
+            try {
+                book = objectMapper.readValue(line, Book.class);
+            } catch (JsonProcessingException e) {
+                batch.reject(lineNumber, null, "Line is not a JSON object of a book");
+                continue;
+            }
+            batch.add(lineNumber, book);
+        }
+    }
+
+    private void readCsv(CsvRecordReader reader, Batch batch) throws IOException {
+        List<String> header = reader.read();
+        if (header == null) {
+            return;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.putIfAbsent(header.get(i).trim().replace("_", "").toLowerCase(Locale.ROOT), i);
+        }
+        Integer title = columns.get("title");
+        Integer author = columns.get("author");
+        Integer isbn = columns.get("isbn");
+        if (title == null || author == null || isbn == null) {
+            throw new IllegalArgumentException("CSV header has to name the title, author and isbn columns.");
+        }
+        Integer status = columns.get("status");
+        Integer coverUrl = columns.get("coverurl");
+
+        for (List<String> record = reader.read(); record != null; record = reader.read()) {
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                continue;
+            }
+            Book book = new Book();
+            book.setTitle(field(record, title));
+            book.setAuthor(field(record, author));
+            book.setIsbn(field(record, isbn));
+            book.setCoverUrl(field(record, coverUrl));
+            String statusName = field(record, status);
+            if (statusName != null) {
+                try {
+                    book.setStatus(BookStatus.valueOf(statusName.trim().toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException e) {
+                    batch.reject(reader.recordLine(), book.getIsbn(), "Unknown status: " + statusName);
+                    continue;
+                }
+            }
+            batch.add(reader.recordLine(), book);
+        }
+    }
+
+    // The value of a column, or null if the record has no such column or leaves it empty
+    private static String field(List<String> record, Integer column) {
+        if (column == null || column >= record.size() || record.get(column).isEmpty()) {
+            return null;
+        }
+        return record.get(column);
+    }
+
+    /**
+     * Collects books column by column until there are enough for one statement.
+     */
+    private class Batch {
+
+        private final List<String> titles = new ArrayList<>(batchSize);
+        private final List<String> authors = new ArrayList<>(batchSize);
+        private final List<String> isbns = new ArrayList<>(batchSize);
+        private final List<String> statuses = new ArrayList<>(batchSize);
+        private final List<String> coverUrls = new ArrayList<>(batchSize);
+
+        // Set for uploads only: who the ADD_BOOK actions are recorded for and where the line outcomes go
+        private final Long importerId;
+        private final Consumer<BookImportLineDto> results;
+
+        // Outcome of every line since the last flush, in input order; those still to be inserted have none yet
+        private final List<BookImportLineDto> lines = new ArrayList<>();
+        private final Set<String> batchIsbns = new HashSet<>();
+
+        private long read;
+        private long inserted;
+        private long invalid;
+
+        Batch() {
+            this(null, null);
+        }
+
+        Batch(Long importerId, Consumer<BookImportLineDto> results) {
+            this.importerId = importerId;
+            this.results = results;
+        }
+
+        void add(Book book) {
+            read++;
+            if (problem(book, false) != null) {
+                invalid++;
+                return;
+            }
+            append(book);
+        }
+
+        void add(long line, Book book) {
+            if (book == null) {
+                reject(line, null, "Line is not a JSON object of a book");
+                return;
+            }
+            if (book.getIsbn() != null) {
+                book.setIsbn(book.getIsbn().replace("-", "").replace(" ", ""));
+            }
+            String problem = problem(book, true);
+            if (problem != null) {
+                reject(line, book.getIsbn(), problem);
+                return;
+            }
+            read++;
+            BookImportLineDto result = new BookImportLineDto(line, book.getIsbn(), null, null, null);
+            lines.add(result);
+            if (batchIsbns.add(book.getIsbn())) {
+                append(book);
+            } else {
+                // Repeated within this batch: the first line adds the book
+                result.setOutcome(BookImportOutcome.DUPLICATE);
+                result.setError(BOOK_EXISTS);
+            }
+            if (lines.size() == batchSize) {
+                flush();
+            }
+        }
+
+        void reject(long line, String isbn, String error) {
+            read++;
+            invalid++;
+            lines.add(new BookImportLineDto(line, isbn, BookImportOutcome.INVALID, null, error));
+            if (lines.size() == batchSize) {
+                flush();
+            }
+        }
+
+        private void append(Book book) {
+            titles.add(book.getTitle());
+            authors.add(book.getAuthor());
+            isbns.add(book.getIsbn());
+            statuses.add(book.getStatus() == null ? BookStatus.AVAILABLE.name() : book.getStatus().name());
+            coverUrls.add(book.getCoverUrl());
+            if (isbns.size() == batchSize) {
+                flush();
+            }
+        }
+
+        BookImportResultDto finish() {
+            flush();
+            return new BookImportResultDto(read, inserted, read - invalid - inserted, invalid);
+        }
+
+        private void flush() {
+            if (results != null) {
+                report(isbns.isEmpty() ? Map.of() : insertWithActions());
+            } else if (!isbns.isEmpty()) {
+                inserted += jdbcTemplate.update(INSERT_BATCH,
+                        titles.toArray(String[]::new),
+                        authors.toArray(String[]::new),
+                        isbns.toArray(String[]::new),
+                        statuses.toArray(String[]::new),
+                        coverUrls.toArray(String[]::new));
+            }
+            titles.clear();
+            authors.clear();
+            isbns.clear();
+            statuses.clear();
+            coverUrls.clear();
+            lines.clear();
+            batchIsbns.clear();
+        }
+
+        // Inserts the batch and its ADD_BOOK actions in one statement and returns the IDs of the added books by ISBN
+        private Map<String, Long> insertWithActions() {
+            Map<String, Long> ids = new HashMap<>();
+            jdbcTemplate.query(IMPORT_BATCH, rs -> {
+                        ids.put(rs.getString("isbn"), rs.getLong("id"));
+                    },
+                    titles.toArray(String[]::new),
+                    authors.toArray(String[]::new),
+                    isbns.toArray(String[]::new),
+                    statuses.toArray(String[]::new),
+                    coverUrls.toArray(String[]::new),
+                    importerId,
+                    Timestamp.valueOf(LocalDateTime.now()));
+            inserted += ids.size();
+            if (bookSearchIndex.isEnabled()) {
+                for (int i = 0; i < isbns.size(); i++) {
+                    Long id = ids.get(isbns.get(i));
+                    if (id != null) {
+                        bookSearchIndex.put(new Book(id, titles.get(i), authors.get(i), isbns.get(i),
+                                BookStatus.valueOf(statuses.get(i)), coverUrls.get(i)));
+                    }
+                }
+            }
+            return ids;
+        }
+
+        private void report(Map<String, Long> ids) {
+            for (BookImportLineDto line : lines) {
+                if (line.getOutcome() == null) {
+                    Long id = ids.get(line.getIsbn());
+                    line.setOutcome(id == null ? BookImportOutcome.DUPLICATE : BookImportOutcome.INSERTED);
+                    line.setBookId(id);
+                    line.setError(id == null ? BOOK_EXISTS : null);
+                }
+                results.accept(line);
+            }
+        }
+    }
+
+    /**
+     * Why a book cannot be added, or null if it can.
+     *
+     * @param checkIsbn whether the ISBN also has to be a valid ISBN-10 or ISBN-13
+     */
+    private static String problem(Book book, boolean checkIsbn) {
+        if (!hasText(book.getTitle())) {
+            return "Title is required";
+        }
+        if (book.getTitle().length() > MAX_TEXT_LENGTH) {
+            return "Title must not exceed " + MAX_TEXT_LENGTH + " characters";
+        }
+        if (!hasText(book.getAuthor())) {
+            return "Author is required";
+        }
+        if (book.getAuthor().length() > MAX_TEXT_LENGTH) {
+            return "Author must not exceed " + MAX_TEXT_LENGTH + " characters";
+        }
+        if (!hasText(book.getIsbn())) {
+            return "ISBN is required";
+        }
+        if (book.getIsbn().length() > MAX_ISBN_LENGTH || (checkIsbn && !DataLoader.isValidISBN(book.getIsbn()))) {
+            return "ISBN is not a valid ISBN-10 or ISBN-13";
+        }
+        if (book.getCoverUrl() != null && book.getCoverUrl().length() > MAX_TEXT_LENGTH) {
+            return "Cover URL must not exceed " + MAX_TEXT_LENGTH + " characters";
+        }
+        return null;
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+}
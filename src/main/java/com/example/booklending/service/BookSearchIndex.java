@@ -0,0 +1,515 @@
+package com.example.booklending.service;
+
+import com.example.booklending.model.Book;
+import com.example.booklending.model.BookStatus;
+import com.example.booklending.repository.BookRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * In-process search backend for the catalog, enabled with {@code search.backend=memory}.
+ * <p>
+ * Keeps two inverted indexes over title, author and ISBN: a trigram index that narrows down candidates for
+ * substring matching (the same semantics as the database search), and a word index used to rank matches
+ * BM25-style when sorting by {@code relevance}. Only the IDs of the requested page are returned, so callers
+ * fetch just that page of rows from the database.
+ * <p>
+ * Published snapshots are never modified, so searches read the current one without any lock. A write publishes
+ * a new snapshot instead: the change goes into a small overlay on top of the index, copied on every write, and
+ * once the overlay holds {@value #MAX_CHANGES} books it is folded into a new index that shares every posting
+ * list the changes did not touch. A rebuild loads a fresh index on the side and swaps it in the same way,
+ * replaying any writes that happened while it was loading. A search keeps only the best {@code offset + limit}
+ * matches in a bounded heap instead of sorting every match.
+ */
+@Slf4j
+@Component
+public class BookSearchIndex {
+
+    static final String RELEVANCE = "relevance";
+
+    private static final int GRAM_LENGTH = 3;
+    private static final int LOAD_BATCH_SIZE = 1000;
+    private static final int MAX_CHANGES = 1024;
+    private static final int TITLE_WEIGHT = 2;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final BookRepository bookRepository;
+    private final boolean enabled;
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+    // Serializes writers, which read the current snapshot and publish the next one; searches never take it
+    private final Object writeLock = new Object();
+
+    // Writes applied while a rebuild is loading, replayed onto the new snapshot; null when no rebuild runs
+    private List<UnaryOperator<Snapshot>> pendingWrites;
+
+    public BookSearchIndex(BookRepository bookRepository, @Value("${search.backend:database}") String backend) {
+        this.bookRepository = bookRepository;
+        this.enabled = "memory".equalsIgnoreCase(backend);
+    }
+
+    /**
+     * @return true if the in-memory backend is enabled, i.e. writes have to be passed on to it
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return true if the in-memory backend is enabled and its first build has completed
+     */
+    public boolean isAvailable() {
+        return enabled && current.get() != null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${search.memory.rebuild-interval:PT10M}", initialDelayString = "${search.memory.rebuild-interval:PT10M}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (writeLock) {
+            if (pendingWrites != null) {
+                log.debug("Search index rebuild already in progress.");
+                return;
+            }
+            pendingWrites = new ArrayList<>();
+        }
+
+        try {
+            long started = System.nanoTime();
+            Index fresh = load();
+            synchronized (writeLock) {
+                Snapshot snapshot = new Snapshot(fresh);
+                for (UnaryOperator<Snapshot> write : pendingWrites) {
+                    snapshot = write.apply(snapshot);
+                }
+                current.set(snapshot);
+            }
+            log.info("Search index rebuilt with {} books in {} ms.", fresh.entries.size(), (System.nanoTime() - started) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Failed to rebuild search index, keeping the previous one.", e);
+        } finally {
+            synchronized (writeLock) {
+                pendingWrites = null;
+            }
+        }
+    }
+
+    /**
+     * Adds or replaces a book in the index once the surrounding transaction commits.
+     */
+    public void put(Book book) {
+        if (!enabled) {
+            return;
+        }
+        Entry entry = new Entry(book);
+        afterCommit(() -> write(snapshot -> snapshot.with(entry.id, entry)));
+    }
+
+    /**
+     * Removes a book from the index once the surrounding transaction commits.
+     */
+    public void remove(Long id) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> write(snapshot -> snapshot.with(id, null)));
+    }
+
+    /**
+     * Finds the books matching the query and statuses, and returns the IDs of the requested page in order.
+     *
+     * @param searchQuery substring to look for in title, ISBN or author; null or blank matches every book
+     * @param statuses    statuses to keep; empty keeps every status
+     * @param sortBy      book property to sort by, or {@code relevance} to rank by BM25 score
+     * @param direction   sort direction
+     * @param offset      number of matches to skip
+     * @param limit       maximum number of IDs to return
+     */
+    public SearchResult search(String searchQuery, Collection<BookStatus> statuses, String sortBy, Sort.Direction direction, long offset, int limit) {
+        boolean relevance = RELEVANCE.equals(sortBy);
+        Comparator<Ranked> order = relevance
+                ? byScore(direction)
+                : Comparator.comparing(Ranked::entry, comparator(sortBy, direction));
+        String query = searchQuery == null || searchQuery.isBlank() ? null : normalize(searchQuery.trim());
+        long wanted = offset + limit;
+
+        // Heap of the best matches so far with the worst one on top, so it can be dropped when a better one comes
+        PriorityQueue<Ranked> best = new PriorityQueue<>(order.reversed());
+        long total = 0;
+        Snapshot snapshot = current.get();
+        if (snapshot == null) {
+            throw new IllegalStateException("Search index is not built yet.");
+        }
+        for (Entry entry : snapshot.candidates(query)) {
+            if ((query != null && !entry.contains(query)) || (!statuses.isEmpty() && !statuses.contains(entry.status))) {
+                continue;
+            }
+            total++;
+            if (wanted == 0) {
+                continue;
+            }
+            Ranked ranked = new Ranked(entry, relevance && query != null ? snapshot.score(entry, query) : 0);
+            if (best.size() < wanted) {
+                best.add(ranked);
+            } else if (order.compare(ranked, best.peek()) < 0) {
+                best.poll();
+                best.add(ranked);
+            }
+        }
+
+        List<Ranked> matches = new ArrayList<>(best);
+        matches.sort(order);
+        List<Long> ids = matches.stream()
+                .skip(offset)
+                .map(ranked -> ranked.entry().id)
+                .collect(Collectors.toList());
+        return new SearchResult(total, ids);
+    }
+
+    private Index load() {
+        Index index = new Index();
+        long lastId = 0;
+        List<Book> batch;
+        do {
+            long after = lastId;
+            batch = bookRepository.findAll((root, query, criteriaBuilder) -> criteriaBuilder.greaterThan(root.<Long>get("id"), after),
+                    Sort.by("id"), LOAD_BATCH_SIZE);
+            batch.forEach(book -> index.add(new Entry(book)));
+            if (!batch.isEmpty()) {
+                lastId = batch.get(batch.size() - 1).getId();
+            }
+        } while (batch.size() == LOAD_BATCH_SIZE);
+        return index;
+    }
+
+    private void write(UnaryOperator<Snapshot> write) {
+        synchronized (writeLock) {
+            Snapshot snapshot = current.get();
+            if (snapshot != null) {
+                current.set(write.apply(snapshot));
+            }
+            if (pendingWrites != null) {
+                pendingWrites.add(write);
+            }
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static Comparator<Ranked> byScore(Sort.Direction direction) {
+        Comparator<Ranked> byScore = Comparator.comparingDouble(Ranked::score);
+        return (direction.isAscending() ? byScore : byScore.reversed()).thenComparing(ranked -> ranked.entry().id);
+    }
+
+    private static Comparator<Entry> comparator(String sortBy, Sort.Direction direction) {
+        Comparator<Entry> byId = Comparator.comparing(entry -> entry.id);
+        Comparator<Entry> byField = switch (sortBy) {
+            case "id" -> byId;
+            case "title" -> Comparator.comparing(entry -> entry.title, String.CASE_INSENSITIVE_ORDER);
+            case "author" -> Comparator.comparing(entry -> entry.author, String.CASE_INSENSITIVE_ORDER);
+            case "isbn" -> Comparator.comparing(entry -> entry.isbn);
+            case "status" -> Comparator.comparing(entry -> entry.status.name());
+            case "coverUrl" -> Comparator.comparing(entry -> entry.coverUrl, Comparator.nullsLast(Comparator.<String>naturalOrder()));
+            default -> throw new IllegalArgumentException("Unsupported sort property: " + sortBy);
+        };
+        Comparator<Entry> sorted = byField.thenComparing(byId);
+        return direction.isAscending() ? sorted : sorted.reversed();
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    private static List<String> tokens(String text) {
+        return Arrays.stream(text.split("[^\\p{L}\\p{N}]+"))
+                .filter(token -> !token.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class SearchResult {
+        private final long totalElements;
+        private final List<Long> ids;
+    }
+
+    private record Ranked(Entry entry, double score) {
+    }
+
+    /**
+     * Immutable view of one book as seen by the index.
+     */
+    private static final class Entry {
+        final Long id;
+        final String title;
+        final String author;
+        final String isbn;
+        final String coverUrl;
+        final BookStatus status;
+        final String normalizedTitle;
+        final String normalizedAuthor;
+        final String normalizedIsbn;
+        final Map<String, Integer> termFrequencies = new HashMap<>();
+        final Set<String> grams = new HashSet<>();
+        final int length;
+
+        Entry(Book book) {
+            id = book.getId();
+            title = Objects.toString(book.getTitle(), "");
+            author = Objects.toString(book.getAuthor(), "");
+            isbn = Objects.toString(book.getIsbn(), "");
+            coverUrl = book.getCoverUrl();
+            status = book.getStatus();
+            normalizedTitle = normalize(title);
+            normalizedAuthor = normalize(author);
+            normalizedIsbn = normalize(isbn);
+
+            tokens(normalizedTitle).forEach(token -> termFrequencies.merge(token, TITLE_WEIGHT, Integer::sum));
+            tokens(normalizedAuthor).forEach(token -> termFrequencies.merge(token, 1, Integer::sum));
+            tokens(normalizedIsbn).forEach(token -> termFrequencies.merge(token, 1, Integer::sum));
+            length = termFrequencies.values().stream().mapToInt(Integer::intValue).sum();
+
+            grams.addAll(grams(normalizedTitle));
+            grams.addAll(grams(normalizedAuthor));
+            grams.addAll(grams(normalizedIsbn));
+        }
+
+        boolean contains(String query) {
+            return normalizedTitle.contains(query) || normalizedIsbn.contains(query) || normalizedAuthor.contains(query);
+        }
+    }
+
+    /**
+     * Inverted index over a set of books. Only modified while it is being built, by a load or by folding changes
+     * into a copy of the previous one, and never after it has been published in a {@link Snapshot}.
+     */
+    private static final class Index {
+        final Map<Long, Entry> entries;
+        final Map<String, Map<Long, Integer>> terms;
+        final Map<String, Set<Long>> grams;
+        long totalLength;
+
+        Index() {
+            this(new HashMap<>(), new HashMap<>(), new HashMap<>(), 0);
+        }
+
+        private Index(Map<Long, Entry> entries, Map<String, Map<Long, Integer>> terms, Map<String, Set<Long>> grams, long totalLength) {
+            this.entries = entries;
+            this.terms = terms;
+            this.grams = grams;
+            this.totalLength = totalLength;
+        }
+
+        /**
+         * A new index with the changes applied, a null entry meaning the book was removed. Only the posting lists
+         * the changes touch are copied; the others are shared with this index.
+         */
+        Index folded(Map<Long, Entry> changes) {
+            Index next = new Index(new HashMap<>(entries), new HashMap<>(terms), new HashMap<>(grams), totalLength);
+            Set<String> copiedTerms = new HashSet<>();
+            Set<String> copiedGrams = new HashSet<>();
+            changes.forEach((id, entry) -> {
+                for (Entry touched : Arrays.asList(next.entries.get(id), entry)) {
+                    if (touched == null) {
+                        continue;
+                    }
+                    touched.termFrequencies.keySet().stream().filter(copiedTerms::add)
+                            .forEach(term -> next.terms.computeIfPresent(term, (key, postings) -> new HashMap<>(postings)));
+                    touched.grams.stream().filter(copiedGrams::add)
+                            .forEach(gram -> next.grams.computeIfPresent(gram, (key, postings) -> new HashSet<>(postings)));
+                }
+                next.remove(id);
+                if (entry != null) {
+                    next.add(entry);
+                }
+            });
+            return next;
+        }
+
+        void add(Entry entry) {
+            remove(entry.id);
+            entries.put(entry.id, entry);
+            entry.termFrequencies.forEach((term, frequency) ->
+                    terms.computeIfAbsent(term, key -> new HashMap<>()).put(entry.id, frequency));
+            entry.grams.forEach(gram -> grams.computeIfAbsent(gram, key -> new HashSet<>()).add(entry.id));
+            totalLength += entry.length;
+        }
+
+        void remove(Long id) {
+            Entry entry = entries.remove(id);
+            if (entry == null) {
+                return;
+            }
+            entry.termFrequencies.keySet().forEach(term -> {
+                Map<Long, Integer> postings = terms.get(term);
+                if (postings != null) {
+                    postings.remove(id);
+                    if (postings.isEmpty()) {
+                        terms.remove(term);
+                    }
+                }
+            });
+            entry.grams.forEach(gram -> {
+                Set<Long> postings = grams.get(gram);
+                if (postings != null) {
+                    postings.remove(id);
+                    if (postings.isEmpty()) {
+                        grams.remove(gram);
+                    }
+                }
+            });
+            totalLength -= entry.length;
+        }
+
+        /**
+         * Books that contain every trigram of the query. Queries shorter than a trigram fall back to all books.
+         */
+        Collection<Entry> candidates(String query) {
+            if (query == null || query.length() < GRAM_LENGTH) {
+                return entries.values();
+            }
+            List<Set<Long>> postings = new ArrayList<>();
+            for (String gram : grams(query)) {
+                Set<Long> ids = grams.get(gram);
+                if (ids == null) {
+                    return List.of();
+                }
+                postings.add(ids);
+            }
+            postings.sort(Comparator.comparingInt(Set::size));
+            List<Set<Long>> others = postings.subList(1, postings.size());
+            return postings.get(0).stream()
+                    .filter(id -> others.stream().allMatch(ids -> ids.contains(id)))
+                    .map(entries::get)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * One immutable generation of the index: an {@link Index} plus the books changed since it was built, which
+     * override its entries. Writes derive a new snapshot with {@link #with}; none is ever modified.
+     */
+    private static final class Snapshot {
+        final Index index;
+        // Changed books by ID, a null entry meaning the book was removed
+        final Map<Long, Entry> changes;
+        // How the changes shift the number of books containing each term
+        final Map<String, Integer> frequencyChanges;
+        final int documents;
+        final long totalLength;
+
+        Snapshot(Index index) {
+            this(index, Map.of(), Map.of(), index.entries.size(), index.totalLength);
+        }
+
+        private Snapshot(Index index, Map<Long, Entry> changes, Map<String, Integer> frequencyChanges, int documents, long totalLength) {
+            this.index = index;
+            this.changes = changes;
+            this.frequencyChanges = frequencyChanges;
+            this.documents = documents;
+            this.totalLength = totalLength;
+        }
+
+        /**
+         * A snapshot with the book added or replaced, or removed if {@code entry} is null. Once enough changes
+         * have piled up, they are folded into a new index.
+         */
+        Snapshot with(Long id, Entry entry) {
+            Entry previous = changes.containsKey(id) ? changes.get(id) : index.entries.get(id);
+            Map<Long, Entry> nextChanges = new HashMap<>(changes);
+            nextChanges.put(id, entry);
+            if (nextChanges.size() >= MAX_CHANGES) {
+                return new Snapshot(index.folded(nextChanges));
+            }
+            Map<String, Integer> nextFrequencyChanges = new HashMap<>(frequencyChanges);
+            int nextDocuments = documents;
+            long nextTotalLength = totalLength;
+            if (previous != null) {
+                previous.termFrequencies.keySet().forEach(term -> nextFrequencyChanges.merge(term, -1, Integer::sum));
+                nextDocuments--;
+                nextTotalLength -= previous.length;
+            }
+            if (entry != null) {
+                entry.termFrequencies.keySet().forEach(term -> nextFrequencyChanges.merge(term, 1, Integer::sum));
+                nextDocuments++;
+                nextTotalLength += entry.length;
+            }
+            return new Snapshot(index, nextChanges, nextFrequencyChanges, nextDocuments, nextTotalLength);
+        }
+
+        /**
+         * The index's candidates for the query that have not changed since, plus every changed book; the caller
+         * checks each candidate against the query anyway.
+         */
+        Iterable<Entry> candidates(String query) {
+            Collection<Entry> indexed = index.candidates(query);
+            if (changes.isEmpty()) {
+                return indexed;
+            }
+            return () -> Stream.concat(
+                    indexed.stream().filter(entry -> !changes.containsKey(entry.id)),
+                    changes.values().stream().filter(Objects::nonNull)).iterator();
+        }
+
+        /**
+         * BM25 score of a book for the query words; a query word also matches longer words it is a prefix of.
+         */
+        double score(Entry entry, String query) {
+            int documents = Math.max(this.documents, 1);
+            double averageLength = Math.max((double) totalLength / documents, 1);
+            double score = 0;
+            for (String token : tokens(query)) {
+                for (Map.Entry<String, Integer> term : entry.termFrequencies.entrySet()) {
+                    if (!term.getKey().startsWith(token)) {
+                        continue;
+                    }
+                    Map<Long, Integer> postings = index.terms.get(term.getKey());
+                    int documentFrequency = Math.max((postings == null ? 0 : postings.size())
+                            + frequencyChanges.getOrDefault(term.getKey(), 0), 1);
+                    double idf = Math.log(1 + (documents - documentFrequency + 0.5) / (documentFrequency + 0.5));
+                    double frequency = term.getValue();
+                    score += idf * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * entry.length / averageLength));
+                }
+            }
+            return score;
+        }
+    }
+}
@@ -1,29 +1,38 @@
 package com.example.booklending.service;
 
+import com.example.booklending.configuration.ActingUser;
 import com.example.booklending.dto.BookDto;
 import com.example.booklending.exception.BookAlreadyExistsException;
 import com.example.booklending.exception.ConflictException;
+import com.example.booklending.mapper.BookMapper;
 import com.example.booklending.model.*;
 import com.example.booklending.repository.ActionRepository;
 import com.example.booklending.repository.BookRepository;
-import com.example.booklending.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 
@@ -32,10 +41,20 @@ import java.util.stream.Collectors;
 @Slf4j
 public class BookService {
 
-    private final ModelMapper modelMapper;
+    private final BookMapper bookMapper;
     private final BookRepository bookRepository;
-    private final UserRepository userRepository;
     private final ActionRepository actionRepository;
+    private final BookSearchIndex bookSearchIndex;
+    private final OptimisticLockRetry optimisticLockRetry;
+
+    static final String SEARCH_MODE_SUBSTRING = "substring";
+    static final String SEARCH_MODE_FULLTEXT = "fulltext";
+    static final String COUNT_MODE_EXACT = "exact";
+    static final String COUNT_MODE_ESTIMATE = "estimate";
+    static final String COUNT_MODE_NONE = "none";
+
+    private static final char LIKE_ESCAPE = '\\';
+    private static final Pattern LIKE_WILDCARDS = Pattern.compile("[\\\\%_]");
 
     @Value("${spring.application.defaults.page-size}")
     private String defaultPageSize;
@@ -44,7 +63,7 @@ public class BookService {
     @Transactional
     public Optional<BookDto> createBook(BookDto bookDto, String userName) {
         log.info("Attempting to create a new book with ISBN: {}", bookDto.getIsbn());
-        User user = userRepository.findByUsername(userName).orElseThrow(() -> new RuntimeException("User not found"));
+        User user = ActingUser.authenticated(userName);
         try {
             // Check if the book already exists by ISBN
             if (bookRepository.findByIsbn(bookDto.getIsbn()).isPresent()) {
@@ -52,7 +71,7 @@ public class BookService {
                 throw new BookAlreadyExistsException("Book with this ISBN already exists.");
             }
 
-            Book book = modelMapper.map(bookDto, Book.class);
+            Book book = bookMapper.toEntity(bookDto);
             Book savedBook = bookRepository.save(book);
 
             Action action = new Action();
@@ -61,11 +80,12 @@ public class BookService {
             action.setAction(ActionType.ADD_BOOK);
             action.setActionDate(LocalDateTime.now());
             actionRepository.save(action);
+            bookSearchIndex.put(savedBook);
 
 
             log.info("Book created successfully with ID: {}", savedBook.getId());
 
-            BookDto savedBookDto = modelMapper.map(savedBook, BookDto.class);
+            BookDto savedBookDto = bookMapper.toDto(savedBook);
             return Optional.of(savedBookDto);
 
         } catch (BookAlreadyExistsException e) {
@@ -79,47 +99,81 @@ public class BookService {
 
     public Optional<BookDto> getBookById(Long id) {
         log.info("Fetching book with ID: {}", id);
-        return bookRepository.findById(id)
+        return bookRepository.findDtoById(id)
                 .map(book -> {
                     log.info("Book found with ID: {}", id);
-                    return modelMapper.map(book, BookDto.class);
+                    return book;
                 });
     }
 
     public Optional<BookDto> getBookByIsbn(String isbn) {
         log.info("Fetching book with ISBN: {}", isbn);
-        return bookRepository.findByIsbn(isbn)
+        return bookRepository.findDtoByIsbn(isbn)
                 .map(book -> {
                     log.info("Book found with ISBN: {}", isbn);
-                    return modelMapper.map(book, BookDto.class);
+                    return book;
                 });
     }
 
-    @Transactional
+    /**
+     * Updates the title, author, ISBN and cover of a book. The status is left alone: it only changes through the
+     * lending actions, so an update racing a reservation cannot put the book back to the status the client saw.
+     *
+     * @throws IllegalArgumentException if the update does not carry the version of the book it is based on
+     * @throws ConflictException if the book has changed since that version
+     */
     public Optional<BookDto> updateBook(Long id, BookDto bookDtoToUpdate) {
         log.info("Updating book with ID: {}", id);
 
+        Long expectedVersion = bookDtoToUpdate.getVersion();
+        if (expectedVersion == null) {
+            throw new IllegalArgumentException("The version of the book being updated is required");
+        }
         try {
-            Book bookToUpdate = modelMapper.map(bookDtoToUpdate, Book.class);
-            bookToUpdate.setId(id);  // Ensure the ID remains the same
-            Book updatedBook = bookRepository.save(bookToUpdate);
-            log.info("Book updated successfully with ID: {}", id);
-
-            BookDto updatedBookDto = modelMapper.map(updatedBook, BookDto.class);
-            return Optional.of(updatedBookDto);
-
+            // The change is based on the version the client read and is not retried: applied to a newer row it
+            // would silently overwrite whatever changed in between
+            return optimisticLockRetry.executeOnce("updateBook", () -> bookRepository.findById(id)
+                    .map(bookToUpdate -> {
+                        if (!expectedVersion.equals(bookToUpdate.getVersion())) {
+                            throw new ObjectOptimisticLockingFailureException(Book.class, id);
+                        }
+                        bookToUpdate.setTitle(bookDtoToUpdate.getTitle());
+                        bookToUpdate.setAuthor(bookDtoToUpdate.getAuthor());
+                        bookToUpdate.setIsbn(bookDtoToUpdate.getIsbn());
+                        bookToUpdate.setCoverUrl(bookDtoToUpdate.getCoverUrl());
+                        Book updatedBook = bookRepository.saveAndFlush(bookToUpdate);
+                        bookSearchIndex.put(updatedBook);
+                        log.info("Book updated successfully with ID: {}", id);
+
+                        return bookMapper.toDto(updatedBook);
+                    }));
+
+        } catch (OptimisticLockingFailureException e) {
+            log.warn("Book with ID {} changed since version {}: {}", id, expectedVersion, e.getMessage());
+            throw new ConflictException("Book was modified since it was read, please reload it and try again.");
         } catch (Exception e) {
             log.error("An error occurred while updating the book: {}", e.getMessage());
             return Optional.empty();
         }
     }
 
-    @Transactional
     public void deleteBook(Long id, String userName) {
 
         log.info("Attempting to delete book with ID: {}", id);
 
-        User user = userRepository.findByUsername(userName).orElseThrow(() -> new EntityNotFoundException("User " + userName + " not found"));
+        User user = ActingUser.authenticated(userName);
+        try {
+            optimisticLockRetry.execute("deleteBook", () -> {
+                deleteBook(id, user);
+                return null;
+            });
+        } catch (OptimisticLockingFailureException e) {
+            log.warn("Book with ID {} kept changing while deleting it: {}", id, e.getMessage());
+            throw new ConflictException("Book was modified concurrently, please try again.");
+        }
+    }
+
+    private void deleteBook(Long id, User user) {
         Optional<Book> bookToDelete = bookRepository.findById(id);
 
         if (bookToDelete.isPresent()) {
@@ -133,6 +187,7 @@ public class BookService {
             actionRepository.save(action);
 
             bookRepository.delete(bookToDelete.get());
+            bookSearchIndex.remove(id);
             log.info("Book deleted successfully with ID: {}", id);
         } else {
             log.error("Book not found with ID: {}", id);
@@ -140,39 +195,18 @@ public class BookService {
         }
     }
 
-    public PagedResponse<BookDto> getBooks(String searchQuery, String page, String size, String sortBy, String order, String statuses) {
+    public PagedResponse<BookDto> getBooks(String searchQuery, String page, String size, String sortBy, String order, String statuses, String cursor, String searchMode, String countMode) {
         log.info("Fetching books with search query: {}, sorting by: {}, order: {}", searchQuery, sortBy, order);
 
+        String totalCount = parseCountMode(countMode);
+
         // Create a sorting object based on the sortBy and order parameters
-        Sort sort = order.equalsIgnoreCase("desc") ? Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
+        Sort.Direction direction = order.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort sort = Sort.by(direction, sortBy);
 
         // Create a specification for filtering
-        Specification<Book> spec = Specification.where(null);
-        if (searchQuery != null && !searchQuery.isEmpty()) {
-            String lowerCaseSearchQuery = "%" + searchQuery.toLowerCase() + "%";
-
-            spec = spec.and((root, query, criteriaBuilder) ->
-                    criteriaBuilder.or(
-                            criteriaBuilder.like(criteriaBuilder.lower(root.get("title")), lowerCaseSearchQuery),
-                            criteriaBuilder.like(criteriaBuilder.lower(root.get("isbn")), lowerCaseSearchQuery),
-                            criteriaBuilder.like(criteriaBuilder.lower(root.get("author")), lowerCaseSearchQuery)
-                    )
-            );
-        }
-
-        // Add status filtering
-        if (statuses != null && !statuses.isEmpty()) {
-            // Split the statuses string into an array
-            String[] statusArray = statuses.split(",");
-            List<BookStatus> statusList = Arrays.stream(statusArray)
-                    .map(String::trim)
-                    .map(BookStatus::valueOf)
-                    .collect(Collectors.toList());
-
-            spec = spec.and((root, query, criteriaBuilder) ->
-                    root.get("status").in(statusList)
-            );
-        }
+        List<BookStatus> statusList = parseStatuses(statuses);
+        Specification<Book> spec = bookFilter(searchQuery, statusList);
 
         // Parsing and handling the size parameter
         int pageSize;
@@ -192,15 +226,89 @@ public class BookService {
             pageNumber = 0; // Default page if parsing fails
         }
 
+        // Ranked full-text search is ordered by relevance, so sortBy and order do not apply
+        if (isFullTextSearch(searchMode) && searchQuery != null && !searchQuery.isBlank()) {
+            if (cursor != null) {
+                throw new IllegalArgumentException("Cursor pagination is not supported for full-text search");
+            }
+            return getBooksByFullText(searchQuery, statusList, pageNumber, pageSize);
+        }
+
+        // A cursor (even an empty one) switches to keyset pagination
+        if (cursor != null) {
+            return getBooksAfterCursor(spec, sortBy, direction, pageSize, cursor);
+        }
+
+        if (bookSearchIndex.isAvailable()) {
+            return getBooksFromIndex(searchQuery, statusList, sortBy, direction, pageNumber, pageSize);
+        }
+
         // Limiting the number of results
         Pageable pageable = PageRequest.of(pageNumber, pageSize, sort);
 
+        if (!COUNT_MODE_EXACT.equals(totalCount)) {
+            String likePattern = searchQuery != null && !searchQuery.isBlank() ? likePattern(searchQuery) : null;
+            return getBooksWithoutCount(spec, pageable, COUNT_MODE_ESTIMATE.equals(totalCount), likePattern, statusList);
+        }
+
         // Fetch the filtered and sorted list of books
-        Page<BookDto> bookPage = bookRepository.findAll(spec, pageable)
-                .map(book -> {
-                    log.debug("Mapping book entity to DTO for book ID: {}", book.getId());
-                    return modelMapper.map(book, BookDto.class);
-                });
+        Page<BookDto> bookPage = bookRepository.findPage(spec, pageable);
+
+        return new PagedResponse<>(
+                bookPage.getContent(),
+                bookPage.getTotalElements(),
+                bookPage.getTotalPages(),
+                bookPage.isLast(),
+                bookPage.getSize(),
+                bookPage.getNumber(),
+                null
+        );
+    }
+
+    /**
+     * Offset page without the count query. With an estimate, the total comes from planner statistics;
+     * it is exact once the last page has been reached.
+     */
+    private PagedResponse<BookDto> getBooksWithoutCount(Specification<Book> spec, Pageable pageable, boolean estimate, String likePattern, List<BookStatus> statusList) {
+        Slice<BookDto> bookSlice = bookRepository.findSlice(spec, pageable);
+
+        long totalElements = -1;
+        int totalPages = -1;
+        if (estimate) {
+            long seen = pageable.getOffset() + bookSlice.getNumberOfElements();
+            totalElements = bookSlice.hasNext() ? Math.max(bookRepository.estimateCount(likePattern, statusList), seen + 1) : seen;
+            totalPages = (int) Math.ceil((double) totalElements / pageable.getPageSize());
+        }
+
+        return new PagedResponse<>(
+                bookSlice.getContent(),
+                totalElements,
+                totalPages,
+                !bookSlice.hasNext(),
+                bookSlice.getSize(),
+                bookSlice.getNumber(),
+                null
+        );
+    }
+
+    private static String parseCountMode(String countMode) {
+        String mode = countMode == null ? COUNT_MODE_EXACT : countMode.toLowerCase(Locale.ROOT);
+        if (!List.of(COUNT_MODE_EXACT, COUNT_MODE_ESTIMATE, COUNT_MODE_NONE).contains(mode)) {
+            throw new IllegalArgumentException("Unsupported count mode: " + countMode);
+        }
+        return mode;
+    }
+
+    /**
+     * Ranked search on the weighted title/author tsvector column, served by its GIN index.
+     */
+    private PagedResponse<BookDto> getBooksByFullText(String searchQuery, List<BookStatus> statusList, int pageNumber, int pageSize) {
+        List<String> statusNames = (statusList.isEmpty() ? Arrays.asList(BookStatus.values()) : statusList).stream()
+                .map(BookStatus::name)
+                .collect(Collectors.toList());
+
+        Page<BookDto> bookPage = bookRepository.searchFullText(searchQuery.trim(), statusNames, PageRequest.of(pageNumber, pageSize))
+                .map(book -> bookMapper.toDto(book));
 
         return new PagedResponse<>(
                 bookPage.getContent(),
@@ -208,7 +316,126 @@ public class BookService {
                 bookPage.getTotalPages(),
                 bookPage.isLast(),
                 bookPage.getSize(),
-                bookPage.getNumber()
+                bookPage.getNumber(),
+                null
         );
     }
+
+    private static boolean isFullTextSearch(String searchMode) {
+        if (searchMode == null || SEARCH_MODE_SUBSTRING.equalsIgnoreCase(searchMode)) {
+            return false;
+        }
+        if (SEARCH_MODE_FULLTEXT.equalsIgnoreCase(searchMode)) {
+            return true;
+        }
+        throw new IllegalArgumentException("Unsupported search mode: " + searchMode);
+    }
+
+    /**
+     * Resolves the matching page of IDs from the in-memory search index and loads only those rows.
+     */
+    private PagedResponse<BookDto> getBooksFromIndex(String searchQuery, List<BookStatus> statusList, String sortBy, Sort.Direction direction, int pageNumber, int pageSize) {
+        BookSearchIndex.SearchResult result = bookSearchIndex.search(searchQuery, statusList, sortBy, direction, (long) pageNumber * pageSize, pageSize);
+
+        Map<Long, BookDto> books = bookRepository.findDtosByIdIn(result.getIds()).stream()
+                .collect(Collectors.toMap(BookDto::getId, Function.identity()));
+        List<BookDto> content = result.getIds().stream()
+                .map(books::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        int totalPages = (int) Math.ceil((double) result.getTotalElements() / pageSize);
+        return new PagedResponse<>(content, result.getTotalElements(), totalPages, pageNumber + 1 >= totalPages, pageSize, pageNumber, null);
+    }
+
+    static List<BookStatus> parseStatuses(String statuses) {
+        if (statuses == null || statuses.isEmpty()) {
+            return List.of();
+        }
+        // Split the statuses string into an array
+        String[] statusArray = statuses.split(",");
+        return Arrays.stream(statusArray)
+                .map(String::trim)
+                .map(BookStatus::valueOf)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * The listing filter: substring search on title, ISBN or author, and the status filter.
+     */
+    static Specification<Book> bookFilter(String searchQuery, List<BookStatus> statusList) {
+        Specification<Book> spec = Specification.where(null);
+        if (searchQuery != null && !searchQuery.isBlank()) {
+            spec = spec.and(containsText(searchQuery));
+        }
+
+        // Add status filtering
+        if (!statusList.isEmpty()) {
+            spec = spec.and((root, query, criteriaBuilder) ->
+                    root.get("status").in(statusList)
+            );
+        }
+        return spec;
+    }
+
+    /**
+     * Case-insensitive substring match on title, ISBN or author. Each branch is written as
+     * {@code lower(column) LIKE ?} so that it matches the pg_trgm expression indexes on those columns,
+     * and wildcards typed by the user are escaped so they cannot widen the pattern.
+     */
+    static Specification<Book> containsText(String searchQuery) {
+        String pattern = likePattern(searchQuery);
+
+        return (root, query, criteriaBuilder) ->
+                criteriaBuilder.or(
+                        criteriaBuilder.like(criteriaBuilder.lower(root.get("title")), pattern, LIKE_ESCAPE),
+                        criteriaBuilder.like(criteriaBuilder.lower(root.get("isbn")), pattern, LIKE_ESCAPE),
+                        criteriaBuilder.like(criteriaBuilder.lower(root.get("author")), pattern, LIKE_ESCAPE)
+                );
+    }
+
+    static String likePattern(String searchQuery) {
+        return "%" + LIKE_WILDCARDS.matcher(searchQuery.trim().toLowerCase(Locale.ROOT)).replaceAll("\\\\$0") + "%";
+    }
+
+    /**
+     * Keyset pagination: seeks past the cursor instead of skipping an offset, and skips the count query,
+     * so every page costs the same as the first one. The seek {@code (key, id) > (?, ?)} is split into two
+     * index range reads: the rest of the cursor's tie group, then everything with a greater key.
+     */
+    private PagedResponse<BookDto> getBooksAfterCursor(Specification<Book> spec, String sortBy, Sort.Direction direction, int pageSize, String cursor) {
+        if (!BookCursor.SORT_FIELDS.contains(sortBy)) {
+            throw new IllegalArgumentException("Cursor pagination is not supported when sorting by " + sortBy);
+        }
+
+        Sort byId = Sort.by(direction, "id");
+        Sort sort = "id".equals(sortBy) ? byId : Sort.by(direction, sortBy).and(byId);
+
+        // Fetch one extra row to find out whether there is a next page
+        List<Book> books = new ArrayList<>(pageSize + 1);
+        if (cursor.isEmpty()) {
+            books.addAll(bookRepository.findAll(spec, sort, pageSize + 1));
+        } else {
+            BookCursor position = BookCursor.decode(cursor, sortBy, direction);
+            if (!position.isSortedById()) {
+                books.addAll(bookRepository.findAll(spec.and(position.sameKeyAfterId()), byId, pageSize + 1));
+            }
+            if (books.size() <= pageSize) {
+                books.addAll(bookRepository.findAll(spec.and(position.keyAfter()), sort, pageSize + 1 - books.size()));
+            }
+        }
+
+        boolean hasNext = books.size() > pageSize;
+        List<Book> pageContent = hasNext ? books.subList(0, pageSize) : books;
+        String nextCursor = hasNext
+                ? BookCursor.after(pageContent.get(pageContent.size() - 1), sortBy, direction).encode()
+                : null;
+
+        List<BookDto> content = pageContent.stream()
+                .map(book -> bookMapper.toDto(book))
+                .collect(Collectors.toList());
+
+        // Totals are not computed in cursor mode
+        return new PagedResponse<>(content, -1, -1, !hasNext, pageSize, 0, nextCursor);
+    }
 }
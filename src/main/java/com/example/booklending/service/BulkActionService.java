@@ -0,0 +1,280 @@
+package com.example.booklending.service;
+
+import com.example.booklending.configuration.ActingUser;
+import com.example.booklending.dto.BulkActionItemDto;
+import com.example.booklending.dto.BulkActionResultDto;
+import com.example.booklending.model.BookStatus;
+import com.example.booklending.model.BulkMode;
+import com.example.booklending.model.BulkOutcome;
+import com.example.booklending.model.User;
+import com.example.booklending.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static com.example.booklending.configuration.Constants.ADMIN_ROLE;
+import static com.example.booklending.configuration.Constants.USER_ROLE;
+
+/**
+ * The lending transitions of {@link ActionService} applied to many books at once. Each transition is a single
+ * statement over the whole batch: it locks the books in ID order, moves those whose status and current state
+ * allow it, records their actions and updates {@code book_current_state}, so a batch costs the same few round
+ * trips as a single book. The books left out are then looked up once to tell the client why. As in
+ * {@link ActionService}, a book without a {@code book_current_state} row gets its state rebuilt from its latest
+ * reservation and loan.
+ * <p>
+ * In {@link BulkMode#BEST_EFFORT} the books that could be moved stay moved. In {@link BulkMode#ALL_OR_NOTHING}
+ * a single failure rolls the whole batch back, and the books that would have been moved are reported as
+ * {@link BulkOutcome#ROLLED_BACK}.
+ */
+@Slf4j
+@Service
+public class BulkActionService {
+
+    private static final String RESERVE = """
+            WITH locked AS (
+              SELECT id FROM books WHERE id = ANY(?) AND status = 'AVAILABLE' ORDER BY id FOR UPDATE
+            ), moved AS (
+              UPDATE books b SET status = 'RESERVED', version = b.version + 1 FROM locked WHERE b.id = locked.id
+              RETURNING b.id
+            ), inserted AS (
+              INSERT INTO actions (book_id, user_id, action, action_date, due_date)
+              SELECT id, ?, 'RESERVE_BOOK', ?, ? FROM moved
+              RETURNING id, book_id, user_id, due_date
+            ), state AS (
+              INSERT INTO book_current_state (book_id, holder_id, reservation_action_id, loan_action_id, due_date)
+              SELECT book_id, user_id, id, NULL, due_date FROM inserted
+              ON CONFLICT (book_id) DO UPDATE SET holder_id = EXCLUDED.holder_id, reservation_action_id = EXCLUDED.reservation_action_id,
+                loan_action_id = NULL, due_date = EXCLUDED.due_date
+            )
+            SELECT book_id, id AS action_id FROM inserted
+            """;
+
+    // Locks the requested books in the given status in ID order, with their current state; a book without a
+    // book_current_state row gets the state rebuilt from its latest reservation and a loan that followed it
+    private static final String CURRENT_STATE = """
+            SELECT b.id,
+              CASE WHEN s.book_id IS NULL THEN COALESCE(l.user_id, r.user_id) ELSE s.holder_id END AS holder_id,
+              CASE WHEN s.book_id IS NULL THEN r.id ELSE s.reservation_action_id END AS reservation_action_id,
+              CASE WHEN s.book_id IS NULL THEN l.id ELSE s.loan_action_id END AS loan_action_id,
+              CASE WHEN s.book_id IS NULL THEN COALESCE(l.due_date, r.due_date) ELSE s.due_date END AS due_date
+            FROM books b
+            LEFT JOIN book_current_state s ON s.book_id = b.id
+            LEFT JOIN LATERAL (
+              SELECT a.id, a.user_id, a.due_date, a.action_date FROM actions a
+              WHERE a.book_id = b.id AND a.action = 'RESERVE_BOOK'
+              ORDER BY a.action_date DESC, a.id DESC LIMIT 1
+            ) r ON s.book_id IS NULL
+            LEFT JOIN LATERAL (
+              SELECT a.id, a.user_id, a.due_date FROM actions a
+              WHERE a.book_id = b.id AND a.action = 'LENT_OUT_BOOK' AND a.action_date >= r.action_date
+              ORDER BY a.action_date DESC, a.id DESC LIMIT 1
+            ) l ON s.book_id IS NULL
+            WHERE b.id = ANY(?) AND b.status = '%s'
+            ORDER BY b.id FOR UPDATE OF b
+            """;
+
+    private static final String LENT_OUT = """
+            WITH current_state AS (
+            %s), locked AS (
+              SELECT id, holder_id, reservation_action_id FROM current_state
+              WHERE reservation_action_id IS NOT NULL AND holder_id IS NOT NULL
+            ), moved AS (
+              UPDATE books b SET status = 'LENT_OUT', version = b.version + 1 FROM locked WHERE b.id = locked.id
+              RETURNING b.id, locked.holder_id, locked.reservation_action_id
+            ), inserted AS (
+              INSERT INTO actions (book_id, user_id, action, action_date, due_date)
+              SELECT id, holder_id, 'LENT_OUT_BOOK', ?, ? FROM moved
+              RETURNING id, book_id, user_id, due_date
+            ), state AS (
+              INSERT INTO book_current_state (book_id, holder_id, reservation_action_id, loan_action_id, due_date)
+              SELECT inserted.book_id, inserted.user_id, moved.reservation_action_id, inserted.id, inserted.due_date
+              FROM inserted JOIN moved ON moved.id = inserted.book_id
+              ON CONFLICT (book_id) DO UPDATE SET loan_action_id = EXCLUDED.loan_action_id, due_date = EXCLUDED.due_date
+            )
+            SELECT book_id, id AS action_id FROM inserted
+            """.formatted(CURRENT_STATE.formatted("RESERVED"));
+
+    private static final String RECEIVED = """
+            WITH current_state AS (
+            %s), locked AS (
+              SELECT id, due_date FROM current_state WHERE loan_action_id IS NOT NULL AND holder_id = ?
+            ), moved AS (
+              UPDATE books b SET status = 'BORROWED', version = b.version + 1 FROM locked WHERE b.id = locked.id
+              RETURNING b.id, locked.due_date
+            ), inserted AS (
+              INSERT INTO actions (book_id, user_id, action, action_date, due_date)
+              SELECT id, ?, 'RECEIVE_BOOK', ?, due_date FROM moved
+              RETURNING id, book_id
+            )
+            SELECT book_id, id AS action_id FROM inserted
+            """.formatted(CURRENT_STATE.formatted("LENT_OUT"));
+
+    private static final String RETURNED_BY_USER = """
+            WITH locked AS (
+              SELECT id FROM books WHERE id = ANY(?) AND status = 'BORROWED' ORDER BY id FOR UPDATE
+            ), moved AS (
+              UPDATE books b SET status = 'RETURNED', version = b.version + 1 FROM locked WHERE b.id = locked.id
+              RETURNING b.id
+            ), inserted AS (
+              INSERT INTO actions (book_id, user_id, action, action_date)
+              SELECT id, ?, 'RETURN_BOOK', ? FROM moved
+              RETURNING id, book_id
+            )
+            SELECT book_id, id AS action_id FROM inserted
+            """;
+
+    private static final String RETURNED_TO_ADMIN = """
+            WITH locked AS (
+              SELECT id FROM books WHERE id = ANY(?) AND status = 'RETURNED' ORDER BY id FOR UPDATE
+            ), moved AS (
+              UPDATE books b SET status = 'AVAILABLE', version = b.version + 1 FROM locked WHERE b.id = locked.id
+              RETURNING b.id
+            ), inserted AS (
+              INSERT INTO actions (book_id, user_id, action, action_date)
+              SELECT id, ?, 'RETURN_BOOK', ? FROM moved
+              RETURNING id, book_id
+            ), state AS (
+              UPDATE book_current_state s SET holder_id = NULL, reservation_action_id = NULL, loan_action_id = NULL, due_date = NULL
+              FROM moved WHERE s.book_id = moved.id
+            )
+            SELECT book_id, id AS action_id FROM inserted
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BookRepository bookRepository;
+    private final BookSearchIndex bookSearchIndex;
+    private final int maxSize;
+
+    public BulkActionService(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             BookRepository bookRepository,
+                             BookSearchIndex bookSearchIndex,
+                             @Value("${actions.bulk.max-size:1000}") int maxSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.bookRepository = bookRepository;
+        this.bookSearchIndex = bookSearchIndex;
+        this.maxSize = maxSize;
+    }
+
+    public BulkActionResultDto reserveBooks(String userName, List<Long> bookIds, BulkMode mode) {
+        User user = ActingUser.authenticated(userName);
+        if (user.getRole().getId() != 2) {
+            throw new RuntimeException("User is not a borrower");
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Timestamp dueDate = Timestamp.valueOf(now.toLocalDateTime().plusHours(24)); // reservation up to 24 hours
+        return apply(bookIds, mode, BookStatus.AVAILABLE, "Book is not available for reservation", null,
+                ids -> doneActions(RESERVE, ids, user.getId(), now, dueDate));
+    }
+
+    public BulkActionResultDto markAsLentOut(List<Long> bookIds, BulkMode mode) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Timestamp dueDate = Timestamp.valueOf(now.toLocalDateTime().plusWeeks(4)); // 4-week borrowing period
+        return apply(bookIds, mode, BookStatus.RESERVED, "Book is not reserved", "Reservation not found",
+                ids -> doneActions(LENT_OUT, ids, now, dueDate));
+    }
+
+    public BulkActionResultDto markAsReceived(String userName, List<Long> bookIds, BulkMode mode) {
+        User user = ActingUser.authenticated(userName);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return apply(bookIds, mode, BookStatus.LENT_OUT, "Book is not lent out!", "Book is not lent out!",
+                ids -> doneActions(RECEIVED, ids, user.getId(), user.getId(), now));
+    }
+
+    public BulkActionResultDto markAsReturned(String userName, List<Long> bookIds, BulkMode mode) {
+        User user = ActingUser.authenticated(userName);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        if (user.getRole().getName().equals(ADMIN_ROLE)) {
+            return apply(bookIds, mode, BookStatus.RETURNED, "Book currently is not returned by user!", null,
+                    ids -> doneActions(RETURNED_TO_ADMIN, ids, user.getId(), now));
+        }
+        if (user.getRole().getName().equals(USER_ROLE)) {
+            return apply(bookIds, mode, BookStatus.BORROWED, "Book currently is not borrowed by user!", null,
+                    ids -> doneActions(RETURNED_BY_USER, ids, user.getId(), now));
+        }
+        throw new RuntimeException("User cannot return books");
+    }
+
+    /**
+     * Runs one bulk transition and reports on every requested book.
+     *
+     * @param from                status the books have to be in
+     * @param conflictMessage     reported for books in another status
+     * @param preconditionMessage reported for books in status {@code from} that the transition still left out
+     *                            because their current state did not allow it
+     * @param transition          applies the transition to the given IDs and returns the action recorded per book
+     * @throws IllegalArgumentException if more than {@code actions.bulk.max-size} books are requested
+     */
+    private BulkActionResultDto apply(List<Long> bookIds, BulkMode mode, BookStatus from, String conflictMessage,
+                                      String preconditionMessage, Function<Long[], Map<Long, Long>> transition) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(bookIds));
+        if (distinctIds.size() > maxSize) {
+            throw new IllegalArgumentException("At most " + maxSize + " books can be processed at once.");
+        }
+        return transactionTemplate.execute(status -> {
+            Map<Long, Long> done = transition.apply(distinctIds.toArray(new Long[0]));
+            Map<Long, String> statusOfLeftOut = done.size() == distinctIds.size()
+                    ? Map.of()
+                    : statuses(distinctIds.stream().filter(id -> !done.containsKey(id)).toArray(Long[]::new));
+
+            boolean rollBack = mode == BulkMode.ALL_OR_NOTHING && done.size() < distinctIds.size();
+            List<BulkActionItemDto> results = new ArrayList<>(distinctIds.size());
+            for (Long id : distinctIds) {
+                if (done.containsKey(id)) {
+                    results.add(rollBack
+                            ? new BulkActionItemDto(id, BulkOutcome.ROLLED_BACK, null, null)
+                            : new BulkActionItemDto(id, BulkOutcome.DONE, done.get(id), null));
+                } else if (!statusOfLeftOut.containsKey(id)) {
+                    results.add(new BulkActionItemDto(id, BulkOutcome.NOT_FOUND, null, "Book not found"));
+                } else if (preconditionMessage != null && from.name().equals(statusOfLeftOut.get(id))) {
+                    results.add(new BulkActionItemDto(id, BulkOutcome.NOT_FOUND, null, preconditionMessage));
+                } else {
+                    results.add(new BulkActionItemDto(id, BulkOutcome.CONFLICT, null, conflictMessage));
+                }
+            }
+
+            if (rollBack) {
+                status.setRollbackOnly();
+                log.info("Rolled back bulk transition from {}: {} of {} books failed", from, distinctIds.size() - done.size(), distinctIds.size());
+            } else if (!done.isEmpty() && bookSearchIndex.isEnabled()) {
+                bookRepository.findAllById(done.keySet()).forEach(bookSearchIndex::put);
+            }
+            int succeeded = rollBack ? 0 : done.size();
+            return new BulkActionResultDto(!rollBack, succeeded, distinctIds.size() - succeeded, results);
+        });
+    }
+
+    private Map<Long, Long> doneActions(String sql, Long[] ids, Object... args) {
+        Object[] params = new Object[args.length + 1];
+        params[0] = ids;
+        System.arraycopy(args, 0, params, 1, args.length);
+        Map<Long, Long> done = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            done.put(rs.getLong("book_id"), rs.getLong("action_id"));
+        }, params);
+        return done;
+    }
+
+    private Map<Long, String> statuses(Long[] ids) {
+        Map<Long, String> statuses = new HashMap<>();
+        jdbcTemplate.query("SELECT id, status FROM books WHERE id = ANY(?)", rs -> {
+            statuses.put(rs.getLong("id"), rs.getString("status"));
+        }, (Object) ids);
+        return statuses;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.booklending.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads RFC 4180 CSV one record at a time: fields are separated by commas and may be quoted, a quoted field
+ * can hold commas, line breaks and doubled quotes. Records end with LF or CRLF.
+ */
+class CsvRecordReader {
+
+    private static final int NONE = -2;
+
+    private final Reader reader;
+    private long line = 1;
+    private long recordLine;
+    private int pushedBack = NONE;
+
+    CsvRecordReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+    }
+
+    /**
+     * @return the fields of the next record, or null at the end of the input
+     * @throws IOException if the input cannot be read or ends inside a quoted field
+     */
+    List<String> read() throws IOException {
+        int c = next();
+        if (c == -1) {
+            return null;
+        }
+        recordLine = line;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean inQuotes = false;
+        while (true) {
+            if (inQuotes) {
+                if (c == -1) {
+                    throw new IOException("Quoted field starting on line " + recordLine + " is not closed.");
+                }
+                if (c == '"') {
+                    int following = next();
+                    if (following != '"') {
+                        inQuotes = false;
+                        c = following;
+                        continue;
+                    }
+                } else if (c == '\n') {
+                    line++;
+                }
+                field.append((char) c);
+            } else if (c == '"' && !quoted && field.length() == 0) {
+                inQuotes = quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                quoted = false;
+            } else if (c == '\n' || c == '\r' || c == -1) {
+                if (c == '\r') {
+                    int following = next();
+                    if (following != '\n') {
+                        pushedBack = following;
+                    }
+                }
+                if (c != -1) {
+                    line++;
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            c = next();
+        }
+    }
+
+    /**
+     * @return the line the record last returned by {@link #read()} starts on, counting from 1
+     */
+    long recordLine() {
+        return recordLine;
+    }
+
+    private int next() throws IOException {
+        if (pushedBack != NONE) {
+            int c = pushedBack;
+            pushedBack = NONE;
+            return c;
+        }
+        return reader.read();
+    }
+}
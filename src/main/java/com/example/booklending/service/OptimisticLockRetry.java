@@ -0,0 +1,112 @@
+package com.example.booklending.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.OptimisticLockException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs a read-modify-write in its own transaction and, if it loses an optimistic locking race, runs it again
+ * on fresh data after a jittered backoff, up to {@code optimistic-lock.retry.max-attempts} attempts in total.
+ * <p>
+ * Every conflict is counted in {@code optimistic.lock.conflicts} and every retry in
+ * {@code optimistic.lock.retries}, both tagged with the operation; a conflict that is counted but not
+ * retried means the budget ran out, or the operation is not retried at all, and the caller got the exception.
+ */
+@Slf4j
+@Component
+public class OptimisticLockRetry {
+
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    public OptimisticLockRetry(PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${optimistic-lock.retry.max-attempts:3}") int maxAttempts,
+                               @Value("${optimistic-lock.retry.initial-backoff:PT0.01S}") Duration initialBackoff,
+                               @Value("${optimistic-lock.retry.max-backoff:PT0.2S}") Duration maxBackoff) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * Runs {@code work} in a new transaction, retrying on optimistic locking conflicts. Inside an existing
+     * transaction the work runs once as part of it, since a failed attempt has already spoiled that
+     * transaction; the outermost caller decides.
+     *
+     * @param operation name of the operation, used as the metric tag
+     * @throws OptimisticLockingFailureException if the last attempt still conflicts
+     */
+    public <T> T execute(String operation, Supplier<T> work) {
+        return execute(operation, work, maxAttempts);
+    }
+
+    /**
+     * Runs {@code work} in a new transaction like {@link #execute}, but gives up on the first conflict. For
+     * changes a client based on what it read earlier: applied again to fresh data, they would overwrite
+     * whatever changed in between.
+     *
+     * @param operation name of the operation, used as the metric tag
+     * @throws OptimisticLockingFailureException if the work conflicts
+     */
+    public <T> T executeOnce(String operation, Supplier<T> work) {
+        return execute(operation, work, 1);
+    }
+
+    private <T> T execute(String operation, Supplier<T> work, int maxAttempts) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return work.get();
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                counter("optimistic.lock.conflicts", operation).increment();
+                if (attempt >= maxAttempts) {
+                    log.warn("Giving up {} after {} conflicting attempts", operation, attempt);
+                    throw e instanceof OptimisticLockingFailureException failure
+                            ? failure
+                            : new OptimisticLockingFailureException(e.getMessage(), e);
+                }
+                counter("optimistic.lock.retries", operation).increment();
+                log.debug("Retrying {} after optimistic locking conflict (attempt {})", operation, attempt);
+                backoff(attempt);
+            }
+        }
+    }
+
+    // Full jitter: a random wait up to an exponentially growing cap, so that the retries of racing requests spread out
+    private void backoff(int attempt) {
+        long cap = Math.min(maxBackoff.toNanos(), initialBackoff.toNanos() << Math.min(attempt - 1, 20));
+        if (cap <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backing off", e);
+        }
+    }
+
+    private Counter counter(String name, String operation) {
+        return meterRegistry.counter(name, "operation", operation);
+    }
+}
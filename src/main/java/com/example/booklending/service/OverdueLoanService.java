@@ -0,0 +1,117 @@
+package com.example.booklending.service;
+
+import com.example.booklending.dto.OverdueLoanDto;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Finds loans of books that are still out after their due date. Both the periodic detection and the report
+ * read {@code book_current_state} through its partial index on active loans, never the actions table.
+ * <p>
+ * The detector refreshes the {@code loans.active}, {@code loans.overdue} and {@code loans.overdue.max.days}
+ * gauges every {@code loans.overdue.refresh-interval}. The report is read through a server-side cursor,
+ * {@code loans.overdue.fetch-size} rows at a time, so it takes the same memory however many loans are overdue.
+ */
+@Slf4j
+@Service
+public class OverdueLoanService {
+
+    // A book the holder has handed back is not overdue, even before an admin confirms the return
+    private static final String COUNTS = """
+            SELECT count(*) AS active, count(*) FILTER (WHERE s.due_date < ?) AS overdue, min(s.due_date) AS oldest
+            FROM book_current_state s
+            JOIN books b ON b.id = s.book_id
+            WHERE s.loan_action_id IS NOT NULL AND b.status IN ('LENT_OUT', 'BORROWED')
+            """;
+
+    private static final String OVERDUE = """
+            SELECT s.book_id, b.title, b.isbn, s.holder_id, u.username, s.due_date
+            FROM book_current_state s
+            JOIN books b ON b.id = s.book_id
+            LEFT JOIN users u ON u.id = s.holder_id
+            WHERE s.loan_action_id IS NOT NULL AND s.due_date < ? AND b.status IN ('LENT_OUT', 'BORROWED')
+            ORDER BY s.due_date
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate cursorTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final AtomicLong activeLoans = new AtomicLong();
+    private final AtomicLong overdueLoans = new AtomicLong();
+    private final AtomicLong maxDaysOverdue = new AtomicLong();
+
+    public OverdueLoanService(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${loans.overdue.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cursorTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.cursorTemplate.setFetchSize(fetchSize);
+        // PostgreSQL only reads through a cursor, rather than loading the whole result, inside a transaction
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        Gauge.builder("loans.active", activeLoans, AtomicLong::get)
+                .description("Books currently lent out")
+                .register(meterRegistry);
+        Gauge.builder("loans.overdue", overdueLoans, AtomicLong::get)
+                .description("Books still out after their due date")
+                .register(meterRegistry);
+        Gauge.builder("loans.overdue.max.days", maxDaysOverdue, AtomicLong::get)
+                .description("Days the longest overdue loan is past its due date")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${loans.overdue.refresh-interval:PT5M}", initialDelayString = "${loans.overdue.refresh-interval:PT5M}")
+    public void detect() {
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.query(COUNTS, rs -> {
+            Timestamp oldest = rs.getTimestamp("oldest");
+            activeLoans.set(rs.getLong("active"));
+            overdueLoans.set(rs.getLong("overdue"));
+            maxDaysOverdue.set(oldest == null ? 0 : Math.max(0, daysOverdue(oldest.toLocalDateTime(), now)));
+        }, Timestamp.valueOf(now));
+        if (overdueLoans.get() > 0) {
+            log.info("{} of {} active loans are overdue, the oldest by {} days", overdueLoans.get(), activeLoans.get(), maxDaysOverdue.get());
+        }
+    }
+
+    /**
+     * Hands every loan overdue at {@code now} to {@code sink}, oldest due date first, without holding
+     * more than a fetch of them in memory.
+     */
+    public void streamOverdue(LocalDateTime now, Consumer<OverdueLoanDto> sink) {
+        readOnlyTransaction.executeWithoutResult(status -> cursorTemplate.query(OVERDUE, rs -> {
+            LocalDateTime dueDate = rs.getTimestamp("due_date").toLocalDateTime();
+            sink.accept(OverdueLoanDto.builder()
+                    .bookId(rs.getLong("book_id"))
+                    .title(rs.getString("title"))
+                    .isbn(rs.getString("isbn"))
+                    .holderId(rs.getObject("holder_id", Long.class))
+                    .holderUsername(rs.getString("username"))
+                    .dueDate(dueDate)
+                    .daysOverdue(daysOverdue(dueDate, now))
+                    .build());
+        }, Timestamp.valueOf(now)));
+    }
+
+    private static long daysOverdue(LocalDateTime dueDate, LocalDateTime now) {
+        return Duration.between(dueDate, now).toDays();
+    }
+}
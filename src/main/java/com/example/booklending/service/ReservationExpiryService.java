@@ -0,0 +1,170 @@
+package com.example.booklending.service;
+
+import com.example.booklending.repository.BookRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Puts reserved books back to {@code AVAILABLE} once their reservation has run out, recording a
+ * {@code CANCEL_BOOK_RESERVATION} action for the holder.
+ * <p>
+ * The sweep, every {@code reservations.expiry.sweep-interval}, expires whatever is already due and loads the
+ * reservations running out before the next sweep into a timer wheel, which is checked every
+ * {@code reservations.expiry.tick}; reservations therefore expire within about a tick of their due date,
+ * and a missed tick is caught up by the next sweep. Both read {@code book_current_state} through its partial
+ * index on open reservations, never the actions table.
+ * <p>
+ * Each batch locks its books with {@code FOR UPDATE SKIP LOCKED}, so instances expiring at the same time
+ * split the due reservations between them, and a book being cancelled or lent out is left to that request.
+ */
+@Slf4j
+@Service
+public class ReservationExpiryService {
+
+    // Locks the books before their state rows, in the same order as the lending transitions in ActionService
+    private static final String EXPIRE_BATCH = """
+            WITH due AS (
+              SELECT s.book_id, s.holder_id FROM book_current_state s
+              JOIN books b ON b.id = s.book_id
+              WHERE s.reservation_action_id IS NOT NULL AND s.loan_action_id IS NULL AND s.due_date <= ?
+                AND b.status = 'RESERVED'
+              ORDER BY s.due_date
+              LIMIT ?
+              FOR UPDATE OF b SKIP LOCKED
+            ), expired AS (
+              UPDATE books b SET status = 'AVAILABLE', version = b.version + 1
+              FROM due WHERE b.id = due.book_id
+              RETURNING b.id, due.holder_id
+            ), cancelled AS (
+              INSERT INTO actions (book_id, user_id, action, action_date)
+              SELECT id, holder_id, 'CANCEL_BOOK_RESERVATION', ? FROM expired WHERE holder_id IS NOT NULL
+            )
+            UPDATE book_current_state s
+            SET holder_id = NULL, reservation_action_id = NULL, loan_action_id = NULL, due_date = NULL
+            FROM expired WHERE s.book_id = expired.id
+            RETURNING s.book_id
+            """;
+
+    private static final String UPCOMING = """
+            SELECT due_date FROM book_current_state
+            WHERE reservation_action_id IS NOT NULL AND loan_action_id IS NULL AND due_date > ? AND due_date <= ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BookRepository bookRepository;
+    private final BookSearchIndex bookSearchIndex;
+    private final Counter expiredCounter;
+    private final boolean enabled;
+    private final Duration sweepInterval;
+    private final int batchSize;
+    private final TimerWheel timerWheel;
+
+    // Due dates up to here have been loaded into the wheel; the next sweep loads from here on
+    private LocalDateTime scheduledUntil;
+    // Guards scheduledUntil across the query that loads the wheel, without pinning a virtual thread as synchronized would
+    private final ReentrantLock scheduleLock = new ReentrantLock();
+
+    public ReservationExpiryService(JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    BookRepository bookRepository,
+                                    BookSearchIndex bookSearchIndex,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${reservations.expiry.enabled:true}") boolean enabled,
+                                    @Value("${reservations.expiry.tick:PT1S}") Duration tick,
+                                    @Value("${reservations.expiry.sweep-interval:PT1M}") Duration sweepInterval,
+                                    @Value("${reservations.expiry.batch-size:100}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.bookRepository = bookRepository;
+        this.bookSearchIndex = bookSearchIndex;
+        this.expiredCounter = Counter.builder("reservations.expired")
+                .description("Reservations put back to available because they ran out")
+                .register(meterRegistry);
+        this.enabled = enabled;
+        this.sweepInterval = sweepInterval;
+        this.batchSize = Math.max(1, batchSize);
+        // one lap covers a sweep interval, so a bucket holds the deadlines of a single lap
+        int buckets = (int) Math.max(1, sweepInterval.toMillis() / Math.max(1, tick.toMillis()) + 1);
+        this.timerWheel = new TimerWheel(tick, buckets, Instant.now());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${reservations.expiry.sweep-interval:PT1M}", initialDelayString = "${reservations.expiry.sweep-interval:PT1M}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        expireDue(now);
+        scheduleUpcoming(now, now.plus(sweepInterval));
+    }
+
+    @Scheduled(fixedDelayString = "${reservations.expiry.tick:PT1S}")
+    public void tick() {
+        if (enabled && timerWheel.expire(Instant.now()) > 0) {
+            expireDue(LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Expires every reservation due at {@code now}, one batch per transaction, skipping books that are locked
+     * by another instance or request.
+     *
+     * @return how many reservations were expired
+     */
+    public int expireDue(LocalDateTime now) {
+        int total = 0;
+        int expired;
+        do {
+            expired = transactionTemplate.execute(status -> expireBatch(now));
+            total += expired;
+        } while (expired == batchSize);
+        if (total > 0) {
+            expiredCounter.increment(total);
+            log.info("Expired {} reservations due by {}", total, now);
+        }
+        return total;
+    }
+
+    private int expireBatch(LocalDateTime now) {
+        Timestamp at = Timestamp.valueOf(now);
+        List<Long> bookIds = jdbcTemplate.queryForList(EXPIRE_BATCH, Long.class, at, batchSize, at);
+        // the search index copies the new status once the batch commits
+        bookRepository.findAllById(bookIds).forEach(bookSearchIndex::put);
+        return bookIds.size();
+    }
+
+    private void scheduleUpcoming(LocalDateTime now, LocalDateTime until) {
+        scheduleLock.lock();
+        try {
+            LocalDateTime from = scheduledUntil != null && scheduledUntil.isAfter(now) ? scheduledUntil : now;
+            if (!until.isAfter(from)) {
+                return;
+            }
+            List<Timestamp> upcoming = jdbcTemplate.queryForList(UPCOMING, Timestamp.class, Timestamp.valueOf(from), Timestamp.valueOf(until));
+            upcoming.forEach(dueDate -> timerWheel.schedule(dueDate.toLocalDateTime().atZone(ZoneId.systemDefault()).toInstant()));
+            scheduledUntil = until;
+            log.debug("Scheduled {} reservations expiring by {}", upcoming.size(), until);
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+}
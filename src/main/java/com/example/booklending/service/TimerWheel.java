@@ -0,0 +1,95 @@
+package com.example.booklending.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hashed timer wheel: deadlines are dropped into one of a fixed number of buckets by their tick, and advancing
+ * the wheel only visits the buckets of the ticks that have passed since the last advance. Scheduling and
+ * advancing cost the same however many deadlines are pending; a bucket holds the deadlines of every lap, so
+ * entries of a later lap stay in it until their own tick comes round.
+ * <p>
+ * The wheel only counts deadlines, it does not remember what they belong to: the caller looks that up in the
+ * database once the wheel says something is due.
+ */
+class TimerWheel {
+
+    private final long tickMillis;
+    private final List<ArrayDeque<Long>> buckets;
+
+    // Last tick the wheel was advanced to; deadlines at or before it are due at once
+    private long currentTick;
+    private int overdue;
+    private int size;
+
+    TimerWheel(Duration tick, int bucketCount, Instant start) {
+        if (tick.toMillis() <= 0 || bucketCount <= 0) {
+            throw new IllegalArgumentException("Tick and bucket count must be positive.");
+        }
+        this.tickMillis = tick.toMillis();
+        this.buckets = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new ArrayDeque<>());
+        }
+        this.currentTick = tickOf(start);
+    }
+
+    synchronized void schedule(Instant deadline) {
+        // rounded up so that a deadline never fires before it has passed
+        long tick = Math.floorDiv(deadline.toEpochMilli() + tickMillis - 1, tickMillis);
+        if (tick <= currentTick) {
+            overdue++;
+        } else {
+            buckets.get(bucketOf(tick)).add(tick);
+        }
+        size++;
+    }
+
+    /**
+     * Advances the wheel to {@code now} and removes the deadlines that have passed.
+     *
+     * @return how many deadlines have passed since the last call
+     */
+    synchronized int expire(Instant now) {
+        long nowTick = tickOf(now);
+        int expired = overdue;
+        overdue = 0;
+        if (nowTick > currentTick) {
+            // after a full lap every bucket has been passed at least once
+            long laps = Math.min(nowTick - currentTick, buckets.size());
+            for (long tick = nowTick - laps + 1; tick <= nowTick; tick++) {
+                expired += drain(buckets.get(bucketOf(tick)), nowTick);
+            }
+            currentTick = nowTick;
+        }
+        size -= expired;
+        return expired;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private static int drain(ArrayDeque<Long> bucket, long nowTick) {
+        int drained = 0;
+        for (Iterator<Long> it = bucket.iterator(); it.hasNext(); ) {
+            if (it.next() <= nowTick) {
+                it.remove();
+                drained++;
+            }
+        }
+        return drained;
+    }
+
+    private long tickOf(Instant instant) {
+        return Math.floorDiv(instant.toEpochMilli(), tickMillis);
+    }
+
+    private int bucketOf(long tick) {
+        return (int) Math.floorMod(tick, (long) buckets.size());
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.booklending.service;
+
+import com.example.booklending.model.RevokedToken;
+import com.example.booklending.repository.RevokedTokenRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Revoked tokens, kept in the {@code revoked_tokens} table and mirrored in memory for the per-request check.
+ * <p>
+ * A revocation is either a single token ({@code token:<digest>}) or a cut-off time for a user
+ * ({@code user:<username>}) up to which all of their tokens are revoked. A token's issue time only has whole
+ * seconds, so the cut-off is truncated to the second and every token issued in that second is revoked too: a
+ * token issued before the revocation is never let through, at the cost of rejecting one issued right after it
+ * in the same second. The check first asks a Bloom filter,
+ * which answers "not revoked" for almost every request, and only on a positive looks the key up in the exact map.
+ * Both are rebuilt from the table periodically, so revocations made on other instances are picked up, and rows
+ * whose tokens have all expired are purged.
+ */
+@Slf4j
+@Service
+public class TokenRevocationService {
+
+    private static final String TOKEN_KEY_PREFIX = "token:";
+    private static final String USER_KEY_PREFIX = "user:";
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final long expirationTime;
+    private final int expectedRevocations;
+
+    // Serializes rebuilds with local revocations so that a rebuild cannot drop a revocation made meanwhile; not
+    // synchronized, as a rebuild holds it while it queries the database
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private volatile Snapshot snapshot;
+
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository,
+                                  @Value("${jwt.expiration}") long expirationTime,
+                                  @Value("${jwt.revocation.expected-revocations:10000}") int expectedRevocations) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.expirationTime = expirationTime;
+        this.expectedRevocations = expectedRevocations;
+        this.snapshot = new Snapshot(expectedRevocations);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${jwt.revocation.refresh-interval:PT30S}", initialDelayString = "${jwt.revocation.refresh-interval:PT30S}")
+    public void rebuild() {
+        int purged = revokedTokenRepository.deleteExpired(LocalDateTime.now());
+        writeLock.lock();
+        try {
+            List<RevokedToken> revocations = revokedTokenRepository.findAll();
+            Snapshot rebuilt = new Snapshot(Math.max(expectedRevocations, revocations.size() * 2));
+            revocations.forEach(revocation -> rebuilt.add(revocation.getTokenKey(), toInstant(revocation.getRevokedAt())));
+            snapshot = rebuilt;
+            log.debug("Loaded {} token revocations, purged {} expired", revocations.size(), purged);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Revokes a single token.
+     *
+     * @param tokenDigest the digest of the token, see {@code JwtUtil.digest}
+     * @param expiresAt   when the token expires
+     */
+    public void revokeToken(String tokenDigest, Instant expiresAt) {
+        revoke(TOKEN_KEY_PREFIX + tokenDigest, expiresAt);
+    }
+
+    /**
+     * Revokes every token issued to the user up to now, including any issued within the current second. Tokens
+     * issued in a later second are not affected.
+     */
+    public void revokeAllForUser(String username) {
+        revoke(USER_KEY_PREFIX + username, Instant.now().plusMillis(expirationTime));
+    }
+
+    public boolean isRevoked(String tokenDigest, String username, Instant issuedAt) {
+        Snapshot current = snapshot;
+        String tokenKey = TOKEN_KEY_PREFIX + tokenDigest;
+        if (current.bloomFilter.mightContain(tokenKey) && current.revokedAt.containsKey(tokenKey)) {
+            return true;
+        }
+        String userKey = USER_KEY_PREFIX + username;
+        if (current.bloomFilter.mightContain(userKey)) {
+            Instant revokedAt = current.revokedAt.get(userKey);
+            return revokedAt != null && !issuedAt.isAfter(revokedAt);
+        }
+        return false;
+    }
+
+    private void revoke(String key, Instant expiresAt) {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        revokedTokenRepository.upsert(key, toLocalDateTime(now), toLocalDateTime(expiresAt));
+
+        writeLock.lock();
+        try {
+            snapshot.add(key, now);
+        } finally {
+            writeLock.unlock();
+        }
+        log.info("Revoked {}", key.startsWith(USER_KEY_PREFIX) ? key : TOKEN_KEY_PREFIX + "...");
+    }
+
+    private static Instant toInstant(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    private static LocalDateTime toLocalDateTime(Instant instant) {
+        return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+    }
+
+    private static final class Snapshot {
+
+        private final BloomFilter bloomFilter;
+        private final Map<String, Instant> revokedAt = new ConcurrentHashMap<>();
+
+        private Snapshot(int expectedRevocations) {
+            this.bloomFilter = new BloomFilter(expectedRevocations, FALSE_POSITIVE_RATE);
+        }
+
+        // The map entry goes in first, so a reader that sees the Bloom filter bit also sees the entry
+        private void add(String key, Instant revokedAt) {
+            this.revokedAt.put(key, revokedAt);
+            bloomFilter.put(key);
+        }
+    }
+}
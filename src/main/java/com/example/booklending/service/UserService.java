@@ -1,23 +1,24 @@
 package com.example.booklending.service;
 
-import com.example.booklending.configuration.RoleIdGrantedAuthority;
+import com.example.booklending.configuration.ActingUser;
 import com.example.booklending.dto.UserDto;
 import com.example.booklending.exception.ConflictException;
 import com.example.booklending.exception.UserAlreadyExistsException;
+import com.example.booklending.mapper.UserMapper;
 import com.example.booklending.model.User;
 import com.example.booklending.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -26,14 +27,21 @@ import java.util.stream.Collectors;
 @Slf4j  // This annotation adds a logger instance to the class
 public class UserService implements UserDetailsService {
 
-    private ModelMapper modelMapper;
+    private UserMapper userMapper;
 
     private final UserRepository userRepository;
 
+    private final UserVersionRegistry userVersionRegistry;
+
+    private final CacheManager cacheManager;
+
     @Autowired
-    public UserService(ModelMapper modelMapper, UserRepository userRepository) {
-        this.modelMapper = modelMapper;
+    public UserService(UserMapper userMapper, UserRepository userRepository, UserVersionRegistry userVersionRegistry,
+                       CacheManager cacheManager) {
+        this.userMapper = userMapper;
         this.userRepository = userRepository;
+        this.userVersionRegistry = userVersionRegistry;
+        this.cacheManager = cacheManager;
     }
 
     @Transactional
@@ -50,10 +58,10 @@ public class UserService implements UserDetailsService {
                 throw new UserAlreadyExistsException("Email already exists.");
             }
 
-            User user = modelMapper.map(userDto, User.class);
+            User user = userMapper.toEntity(userDto);
             User savedUser = userRepository.save(user);
             log.info("User created successfully with ID: {}", savedUser.getId());
-            return Optional.of(modelMapper.map(savedUser, UserDto.class));
+            return Optional.of(userMapper.toDto(savedUser));
 
         } catch (UserAlreadyExistsException e) {
             log.error("Conflict occurred during user creation: {}", e.getMessage());
@@ -75,11 +83,19 @@ public class UserService implements UserDetailsService {
 
     public Optional<UserDto> updateUser(Long id, UserDto userDtoToUpdate) {
         log.info("Updating user with ID: {}", id);
+        Optional<User> previousUser = userRepository.findById(id);
+        Optional<Integer> previousRoleId = previousUser.map(user -> user.getRole().getId());
         return entityFromDto(userDtoToUpdate)
                 .map(userToUpdate -> {
                     userToUpdate.setId(id);  // Ensure the ID remains the same
                     User updatedUser = userRepository.save(userToUpdate);
                     log.info("User updated successfully with ID: {}", id);
+                    previousUser.ifPresent(this::evictCachedUser);
+                    evictCachedUser(userToUpdate);
+                    // Tokens issued with the old role must not be honoured any longer
+                    if (previousRoleId.isPresent() && !previousRoleId.get().equals(userDtoToUpdate.getRoleId())) {
+                        userVersionRegistry.bump(id);
+                    }
                     return updatedUser;
                 })
                 .flatMap(this::dtoFromEntity);
@@ -90,6 +106,8 @@ public class UserService implements UserDetailsService {
         Optional<User> userToDelete = userRepository.findById(id);
         if (userToDelete.isPresent()) {
             userRepository.delete(userToDelete.get());
+            evictCachedUser(userToDelete.get());
+            userVersionRegistry.remove(id);
             log.info("User deleted successfully with ID: {}", id);
         } else {
             log.error("User not found with ID: {}", id);
@@ -121,7 +139,7 @@ public class UserService implements UserDetailsService {
         return userRepository.findAll().stream()
                 .map(source -> {
                     log.debug("Mapping user entity to DTO for user ID: {}", source.getId());
-                    return modelMapper.map(source, UserDto.class);
+                    return userMapper.toDto(source);
                 })
                 .collect(Collectors.toList());
     }
@@ -136,21 +154,36 @@ public class UserService implements UserDetailsService {
                 });
 
         log.info("User details loaded successfully for username: {}", username);
-        return new org.springframework.security.core.userdetails.User(
+        return new ActingUser(
+                user.getId(),
                 user.getUsername(),
                 user.getPassword(),
-                List.of(new RoleIdGrantedAuthority(user.getRole().getName())));
+                user.getRole().getId(),
+                user.getRole().getName());
+    }
+
+    // The user repository caches lookups by username and ID; both go stale when the user changes
+    private void evictCachedUser(User user) {
+        evict(UserRepository.USERS_BY_ID_CACHE, user.getId());
+        evict(UserRepository.USERS_BY_USERNAME_CACHE, user.getUsername());
+    }
+
+    private void evict(String cacheName, Object key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null && key != null) {
+            cache.evict(key);
+        }
     }
 
     private Optional<UserDto> dtoFromEntity(User user) {
 
         log.debug("Mapping user entity to DTO for user ID: {}", user.getId());
-        return Optional.of(modelMapper.map(user, UserDto.class));
+        return Optional.of(userMapper.toDto(user));
     }
 
     private Optional<User> entityFromDto(UserDto userDto) {
         log.debug("Mapping user DTO to entity for user ID: {}", userDto.getId());
-        return Optional.of(modelMapper.map(userDto, User.class));
+        return Optional.of(userMapper.toEntity(userDto));
     }
 
 }
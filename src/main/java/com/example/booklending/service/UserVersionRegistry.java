@@ -0,0 +1,96 @@
+package com.example.booklending.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory copy of each user's token version ({@code users.token_version}). Tokens issued in stateless mode
+ * carry the version current at login; bumping it on a role change, or dropping it on delete, invalidates
+ * every token issued before.
+ * <p>
+ * Lookups are a map read. The table is reloaded periodically so that bumps made by other instances are
+ * picked up; a user missing from the copy is read from the database once.
+ */
+@Slf4j
+@Component
+public class UserVersionRegistry {
+
+    // Version reported for users that do not exist; never matches a token
+    static final int NO_USER = -1;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Serializes reloads with bumps so that a reload started before a bump cannot overwrite it. A lock rather than
+    // synchronized, which would pin a virtual thread to its carrier while it waits for the database
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private volatile Map<Long, Integer> versions = new ConcurrentHashMap<>();
+
+    public UserVersionRegistry(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${jwt.user-version.refresh-interval:PT1M}", initialDelayString = "${jwt.user-version.refresh-interval:PT1M}")
+    public void reload() {
+        writeLock.lock();
+        try {
+            Map<Long, Integer> loaded = new ConcurrentHashMap<>();
+            jdbcTemplate.query("SELECT id, token_version FROM users", rs -> {
+                loaded.put(rs.getLong("id"), rs.getInt("token_version"));
+            });
+            versions = loaded;
+            log.debug("Loaded token versions for {} users", loaded.size());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public int currentVersion(long userId) {
+        return versions.computeIfAbsent(userId, this::loadVersion);
+    }
+
+    public boolean isCurrent(long userId, int version) {
+        return version != NO_USER && currentVersion(userId) == version;
+    }
+
+    /**
+     * Invalidates all tokens issued to the user so far.
+     */
+    public void bump(long userId) {
+        writeLock.lock();
+        try {
+            List<Integer> bumped = jdbcTemplate.queryForList(
+                    "UPDATE users SET token_version = token_version + 1 WHERE id = ? RETURNING token_version", Integer.class, userId);
+            versions.put(userId, bumped.isEmpty() ? NO_USER : bumped.get(0));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Invalidates all tokens of a deleted user.
+     */
+    public void remove(long userId) {
+        writeLock.lock();
+        try {
+            versions.put(userId, NO_USER);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private int loadVersion(long userId) {
+        List<Integer> found = jdbcTemplate.queryForList("SELECT token_version FROM users WHERE id = ?", Integer.class, userId);
+        return found.isEmpty() ? NO_USER : found.get(0);
+    }
+}
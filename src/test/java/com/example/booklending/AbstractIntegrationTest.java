@@ -15,6 +15,10 @@ public abstract class AbstractIntegrationTest {
         registry.add("spring.datasource.url", container::getJdbcUrl);
         registry.add("spring.datasource.username", container::getUsername);
         registry.add("spring.datasource.password", container::getPassword);
+        // Tests roll back their transactions, which would leave rolled-back users in the user cache
+        registry.add("spring.cache.type", () -> "none");
+        // Tests that need expiry call it themselves rather than racing the scheduled sweep
+        registry.add("reservations.expiry.enabled", () -> "false");
     }
 }
 
@@ -0,0 +1,175 @@
+package com.example.booklending;
+
+import com.example.booklending.model.Role;
+import com.example.booklending.model.User;
+import com.example.booklending.repository.UserRepository;
+import com.example.booklending.service.AuthService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares serving requests on Tomcat's platform thread pool with serving them on virtual threads
+ * ({@code spring.threads.virtual.enabled}). {@value #CLIENTS} clients each reserve and cancel a book of their own
+ * in a closed loop, so every request is a lending transition that waits on several database calls. Throughput
+ * and p99 latency of each mode are printed; only failed requests fail the test.
+ * <p>
+ * Runs with {@code ./gradlew loadTest} on Java 21, against PostgreSQL through Testcontainers (needs Docker).
+ */
+@Tag("load")
+@EnabledIfSystemProperty(named = "loadTest", matches = "true")
+class ThreadModeLoadTest {
+
+    private static final int CLIENTS = 1000;
+    private static final Duration WARM_UP = Duration.ofSeconds(15);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(30);
+    private static final String BORROWER = "load-borrower";
+    private static final String PASSWORD = "load-password";
+
+    @Test
+    void compareThreadModes() throws Exception {
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        System.out.printf("%n%-9s %12s %12s %8s%n", "threads", "requests/s", "p99 ms", "errors");
+        for (Result result : List.of(platform, virtual)) {
+            System.out.printf("%-9s %12.0f %12.1f %8d%n", result.mode, result.throughput(), result.p99Millis(), result.errors.get());
+        }
+        for (Result result : List.of(platform, virtual)) {
+            assertTrue(result.latencies.size() > 0, result.mode + " completed no requests");
+            assertEquals(0, result.errors.get(), result.mode + " had failed requests");
+        }
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        PostgreSQLContainer<?> container = PostgresTestContainer.getInstance();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(BookLendingApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "spring.datasource.url=" + container.getJdbcUrl(),
+                        "spring.datasource.username=" + container.getUsername(),
+                        "spring.datasource.password=" + container.getPassword(),
+                        "data.populate.enabled=false",
+                        "reservations.expiry.enabled=false",
+                        "logging.level.root=WARN")
+                .run()) {
+            List<Long> bookIds = seed(context);
+            String token = token(context);
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            return drive(virtualThreads ? "virtual" : "platform", "http://localhost:" + port, token, bookIds);
+        }
+    }
+
+    // One available book per client, and the borrower reserving them
+    private static List<Long> seed(ConfigurableApplicationContext context) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("""
+                INSERT INTO books (title, author, isbn, status)
+                SELECT 'Load ' || n, 'Author', lpad(n::text, 13, '9'), 'AVAILABLE' FROM generate_series(1, ?) AS n
+                ON CONFLICT (isbn) DO NOTHING
+                """, CLIENTS);
+        List<Long> bookIds = jdbcTemplate.queryForList(
+                "SELECT id FROM books WHERE title LIKE 'Load %' AND author = 'Author' ORDER BY id LIMIT ?", Long.class, CLIENTS);
+        jdbcTemplate.update("UPDATE books SET status = 'AVAILABLE' WHERE id = ANY(?)", (Object) bookIds.toArray(Long[]::new));
+        jdbcTemplate.update("DELETE FROM book_current_state WHERE book_id = ANY(?)", (Object) bookIds.toArray(Long[]::new));
+
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        if (userRepository.findByUsername(BORROWER).isEmpty()) {
+            userRepository.save(User.builder()
+                    .username(BORROWER)
+                    .password(context.getBean(PasswordEncoder.class).encode(PASSWORD))
+                    .email(BORROWER + "@example.com")
+                    .role(new Role(2, "USER"))
+                    .build());
+        }
+        return bookIds;
+    }
+
+    private static String token(ConfigurableApplicationContext context) {
+        return context.getBean(AuthService.class).authenticateAndGenerateToken(BORROWER, PASSWORD);
+    }
+
+    private static Result drive(String mode, String baseUrl, String token, List<Long> bookIds) {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        long start = System.nanoTime();
+        long measureFrom = start + WARM_UP.toNanos();
+        long measureUntil = measureFrom + MEASUREMENT.toNanos();
+        Result result = new Result(mode);
+
+        List<CompletableFuture<Void>> clients = new ArrayList<>(CLIENTS);
+        for (Long bookId : bookIds) {
+            clients.add(loop(client, baseUrl, token, bookId, true, measureFrom, measureUntil, result));
+        }
+        CompletableFuture.allOf(clients.toArray(CompletableFuture[]::new)).join();
+        return result;
+    }
+
+    // Alternates reserving and cancelling the book until the measurement ends, always leaving it available; a request
+    // that got no response is sent again
+    private static CompletableFuture<Void> loop(HttpClient client, String baseUrl, String token, Long bookId, boolean reserve,
+                                                long measureFrom, long measureUntil, Result result) {
+        if (reserve && System.nanoTime() >= measureUntil) {
+            return CompletableFuture.completedFuture(null);
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/actions/" + (reserve ? "reserve" : "cancel_reservation")
+                        + "?userName=" + BORROWER + "&bookId=" + bookId))
+                .header("Authorization", "Bearer " + token)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        long sent = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, failure) -> {
+                    long received = System.nanoTime();
+                    if (sent >= measureFrom && received <= measureUntil) {
+                        result.latencies.add(received - sent);
+                        if (failure != null || response.statusCode() >= 300) {
+                            result.errors.incrementAndGet();
+                        }
+                    }
+                    return failure == null;
+                })
+                .thenCompose(delivered -> loop(client, baseUrl, token, bookId, delivered != reserve,
+                        measureFrom, measureUntil, result));
+    }
+
+    private static class Result {
+
+        private final String mode;
+        private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        private final AtomicLong errors = new AtomicLong();
+
+        Result(String mode) {
+            this.mode = mode;
+        }
+
+        double throughput() {
+            return latencies.size() / (MEASUREMENT.toNanos() / 1e9);
+        }
+
+        double p99Millis() {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            return sorted.length == 0 ? 0 : sorted[(int) Math.ceil(sorted.length * 0.99) - 1] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.booklending.configuration;
+
+import com.example.booklending.dto.BookImportResultDto;
+import com.example.booklending.model.Book;
+import com.example.booklending.service.BookImportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the books API fetch against a local stub server whose pages overlap, so that every book but the
+ * first few is served more than once.
+ */
+@Tag("unit")
+class DataLoaderTest {
+
+    private static final int BOOKS_PER_PAGE = 5;
+    private static final int NEW_BOOKS_PER_PAGE = 3;
+    private static final Pattern START_INDEX = Pattern.compile("startIndex=(\\d+)");
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final BookImportService bookImportService = mock(BookImportService.class);
+    private DataLoader dataLoader;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/volumes", exchange -> {
+            requests.incrementAndGet();
+            Matcher matcher = START_INDEX.matcher(exchange.getRequestURI().getQuery());
+            int page = matcher.find() ? Integer.parseInt(matcher.group(1)) / 40 : 0;
+            byte[] body = page(page).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        when(bookImportService.importBooks(any())).thenAnswer(invocation -> {
+            Collection<Book> books = invocation.getArgument(0);
+            return new BookImportResultDto(books.size(), books.size(), 0, 0);
+        });
+
+        dataLoader = new DataLoader();
+        dataLoader.bookImportService = bookImportService;
+        ReflectionTestUtils.setField(dataLoader, "apiUrl", "http://localhost:" + server.getAddress().getPort() + "/volumes");
+        ReflectionTestUtils.setField(dataLoader, "concurrency", 4);
+        ReflectionTestUtils.setField(dataLoader, "requestTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(dataLoader, "outputFile", tempDir.resolve("books.json").toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void fetchAndSaveTopBooks_savesEachBookOnceUntilTheLimit() throws Exception {
+        dataLoader.fetchAndSaveTopBooks(100);
+
+        ArgumentCaptor<Collection<Book>> saved = ArgumentCaptor.forClass(Collection.class);
+        verify(bookImportService, atLeastOnce()).importBooks(saved.capture());
+        List<String> isbns = new ArrayList<>();
+        saved.getAllValues().forEach(page -> page.forEach(book -> isbns.add(book.getIsbn())));
+
+        assertEquals(100, isbns.size());
+        assertEquals(100, new HashSet<>(isbns).size());
+        assertTrue(requests.get() >= 100 / NEW_BOOKS_PER_PAGE, "requests: " + requests.get());
+        Book[] written = new ObjectMapper().readValue(tempDir.resolve("books.json").toFile(), Book[].class);
+        assertEquals(isbns, Arrays.stream(written).map(Book::getIsbn).toList());
+    }
+
+    @Test
+    void fetchAndSaveTopBooks_givesUpWhenNoPageAddsAnything() throws Exception {
+        doReturn(new BookImportResultDto(0, 0, 0, 0)).when(bookImportService).importBooks(any());
+
+        dataLoader.fetchAndSaveTopBooks(10);
+
+        assertTrue(requests.get() >= 50, "requests: " + requests.get());
+    }
+
+    // Page n holds books n * 3 to n * 3 + 4, so consecutive pages share two books
+    private static String page(int page) {
+        Set<String> items = new HashSet<>();
+        for (int i = 0; i < BOOKS_PER_PAGE; i++) {
+            int number = page * NEW_BOOKS_PER_PAGE + i;
+            items.add("""
+                    {"volumeInfo": {"title": "Title %1$d", "authors": ["Author %1$d"],
+                     "industryIdentifiers": [{"identifier": "%2$s"}], "imageLinks": {"thumbnail": "http://example.com/%1$d.jpg"}}}
+                    """.formatted(number, isbn13(number)));
+        }
+        return "{\"items\": [" + String.join(",", items) + "]}";
+    }
+
+    private static String isbn13(int number) {
+        String digits = String.format("978%09d", number);
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+}
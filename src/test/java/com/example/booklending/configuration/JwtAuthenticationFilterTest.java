@@ -1,5 +1,10 @@
 package com.example.booklending.configuration;
 
+import com.example.booklending.service.TokenRevocationService;
+import com.example.booklending.service.UserVersionRegistry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -11,12 +16,16 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.Date;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -44,6 +53,15 @@ public class JwtAuthenticationFilterTest {
     @Mock
     private UserDetails userDetails;
 
+    @Mock
+    private UserVersionRegistry userVersionRegistry;
+
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
+    @Spy
+    private VerifiedTokenCache tokenCache = new VerifiedTokenCache(100, Duration.ofMinutes(5), new SimpleMeterRegistry());
+
     @InjectMocks
     private JwtAuthenticationFilter jwtAuthenticationFilter;
 
@@ -60,19 +78,19 @@ public class JwtAuthenticationFilterTest {
         jwtAuthenticationFilter.doFilterInternal(request, response, chain);
 
         verify(userDetailsService, never()).loadUserByUsername(anyString());
-        verify(jwtUtil, never()).validateToken(anyString(), anyString());
+        verify(jwtUtil, never()).extractClaims(anyString());
         assertNull(SecurityContextHolder.getContext().getAuthentication());
     }
 
     @Test
     public void testDoFilterInternal_invalidToken() throws ServletException, IOException {
         when(request.getHeader("Authorization")).thenReturn("Bearer invalidtoken");
-        when(jwtUtil.extractUsername(anyString())).thenReturn(null);
+        when(jwtUtil.extractClaims(anyString())).thenReturn(null);
 
         jwtAuthenticationFilter.doFilterInternal(request, response, chain);
 
         verify(userDetailsService, never()).loadUserByUsername(anyString());
-        verify(jwtUtil, never()).validateToken(anyString(), anyString());
+        verify(tokenCache, never()).put(anyString(), any(), any(), any(), any());
         assertNull(SecurityContextHolder.getContext().getAuthentication());
     }
 
@@ -82,16 +100,15 @@ public class JwtAuthenticationFilterTest {
         String token = "validtoken";
 
         when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
-        when(jwtUtil.extractUsername(token)).thenReturn(username);
+        when(jwtUtil.extractClaims(token)).thenReturn(claims(username));
         when(userDetails.getUsername()).thenReturn(username);
         when(userDetailsService.loadUserByUsername(username)).thenReturn(userDetails);
-        when(jwtUtil.validateToken(token, username)).thenReturn(true);
 
 
         jwtAuthenticationFilter.doFilterInternal(request, response, chain);
 
         verify(userDetailsService, times(1)).loadUserByUsername(username);
-        verify(jwtUtil, times(1)).validateToken(token, username);
+        verify(jwtUtil, times(1)).extractClaims(token);
 
         UsernamePasswordAuthenticationToken authentication =
                 (UsernamePasswordAuthenticationToken) SecurityContextHolder.getContext().getAuthentication();
@@ -99,4 +116,93 @@ public class JwtAuthenticationFilterTest {
         assertNotNull(authentication);
         Assertions.assertEquals(userDetails, authentication.getPrincipal());
     }
+
+    @Test
+    public void testDoFilterInternal_repeatTokenIsServedFromCache() throws ServletException, IOException {
+        String username = "testUser";
+        String token = "validtoken";
+
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(jwtUtil.extractClaims(token)).thenReturn(claims(username));
+        when(userDetails.getUsername()).thenReturn(username);
+        when(userDetailsService.loadUserByUsername(username)).thenReturn(userDetails);
+
+        jwtAuthenticationFilter.doFilterInternal(request, response, chain);
+        SecurityContextHolder.clearContext();
+        jwtAuthenticationFilter.doFilterInternal(request, response, chain);
+
+        verify(jwtUtil, times(1)).extractClaims(token);
+        verify(userDetailsService, times(1)).loadUserByUsername(username);
+        Assertions.assertEquals(userDetails, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+    }
+
+    @Test
+    public void testDoFilterInternal_statelessTokenSkipsUserLookup() throws ServletException, IOException {
+        String token = "statelesstoken";
+        Claims claims = claims("testUser");
+        claims.put("userId", 7);
+        claims.put("roleId", 2);
+        claims.put("roleName", "USER");
+        claims.put("userVersion", 3);
+        ReflectionTestUtils.setField(jwtAuthenticationFilter, "stateless", true);
+
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(jwtUtil.extractClaims(token)).thenReturn(claims);
+        when(jwtUtil.extractActingUser(claims)).thenCallRealMethod();
+        when(jwtUtil.extractUserVersion(claims)).thenCallRealMethod();
+        when(userVersionRegistry.isCurrent(7L, 3)).thenReturn(true);
+
+        jwtAuthenticationFilter.doFilterInternal(request, response, chain);
+
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        ActingUser principal = (ActingUser) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        Assertions.assertEquals(7L, principal.getId());
+        Assertions.assertEquals(2, principal.getRoleId());
+        Assertions.assertEquals("USER", principal.getAuthorities().iterator().next().getAuthority());
+    }
+
+    @Test
+    public void testDoFilterInternal_statelessTokenWithStaleVersionIsRejected() throws ServletException, IOException {
+        String token = "staletoken";
+        Claims claims = claims("testUser");
+        claims.put("userId", 7);
+        claims.put("roleId", 2);
+        claims.put("roleName", "USER");
+        claims.put("userVersion", 3);
+        ReflectionTestUtils.setField(jwtAuthenticationFilter, "stateless", true);
+
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(jwtUtil.extractClaims(token)).thenReturn(claims);
+        when(jwtUtil.extractActingUser(claims)).thenCallRealMethod();
+        when(jwtUtil.extractUserVersion(claims)).thenCallRealMethod();
+        when(userVersionRegistry.isCurrent(7L, 3)).thenReturn(false);
+
+        jwtAuthenticationFilter.doFilterInternal(request, response, chain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(chain).doFilter(request, response);
+    }
+
+    @Test
+    public void testDoFilterInternal_revokedTokenIsRejected() throws ServletException, IOException {
+        String username = "testUser";
+        String token = "revokedtoken";
+
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(jwtUtil.extractClaims(token)).thenReturn(claims(username));
+        when(userDetails.getUsername()).thenReturn(username);
+        when(userDetailsService.loadUserByUsername(username)).thenReturn(userDetails);
+        when(tokenRevocationService.isRevoked(eq(JwtUtil.digest(token)), eq(username), any())).thenReturn(true);
+
+        jwtAuthenticationFilter.doFilterInternal(request, response, chain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(chain).doFilter(request, response);
+    }
+
+    private static Claims claims(String username) {
+        return Jwts.claims()
+                .setSubject(username)
+                .setExpiration(new Date(System.currentTimeMillis() + 3600000));
+    }
 }
@@ -117,4 +117,25 @@ public class JwtUtilTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    void testActingUserRoundTrip() {
+        ActingUser user = new ActingUser(7L, "testUser", "password", 2, "USER");
+
+        String token = jwtUtil.generateToken(user, 3);
+        Claims claims = jwtUtil.extractClaims(token);
+        ActingUser extracted = jwtUtil.extractActingUser(claims).orElseThrow();
+
+        assertEquals(7L, extracted.getId());
+        assertEquals("testUser", extracted.getUsername());
+        assertEquals(2, extracted.getRoleId());
+        assertEquals("USER", extracted.getRoleName());
+        assertEquals(Optional.of(3), jwtUtil.extractUserVersion(claims));
+    }
+
+    @Test
+    void testExtractActingUser_tokenWithoutUserId() {
+        String token = jwtUtil.generateToken("testUser", Optional.of("USER"));
+
+        assertTrue(jwtUtil.extractActingUser(jwtUtil.extractClaims(token)).isEmpty());
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.booklending.configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("unit")
+class VerifiedTokenCacheTest {
+
+    private MeterRegistry meterRegistry;
+    private VerifiedTokenCache tokenCache;
+
+    private final UserDetails userDetails = new User("testUser", "password", List.of(new RoleIdGrantedAuthority("USER")));
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        tokenCache = new VerifiedTokenCache(100, Duration.ofMinutes(5), meterRegistry);
+    }
+
+    @Test
+    void get_returnsCachedTokenAndCountsHitsAndMisses() {
+        assertNull(tokenCache.get("token"));
+
+        tokenCache.put("token", userDetails, Instant.now(), Instant.now().plusSeconds(60), null);
+
+        assertEquals(userDetails, tokenCache.get("token").userDetails());
+        assertNull(tokenCache.get("other-token"));
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "jwt.verified-tokens").tag("result", "hit").functionCounter().count());
+        assertEquals(2, meterRegistry.get("cache.gets").tag("cache", "jwt.verified-tokens").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void get_ignoresExpiredToken() {
+        tokenCache.put("token", userDetails, Instant.now(), Instant.now().minusSeconds(1), null);
+
+        assertNull(tokenCache.get("token"));
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.booklending.context;
+
+import com.example.booklending.configuration.ActingUser;
+import com.example.booklending.model.User;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Authenticates the calling thread as a user, the way the JWT filter does for a request, so that tests can call
+ * the services that act on behalf of the authenticated user directly.
+ */
+public final class TestAuthentication {
+
+    private TestAuthentication() {
+    }
+
+    public static void authenticateAs(User user) {
+        ActingUser actingUser = new ActingUser(user.getId(), user.getUsername(), null,
+                user.getRole().getId(), user.getRole().getName());
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(actingUser, null, actingUser.getAuthorities()));
+    }
+}
@@ -1,7 +1,15 @@
 package com.example.booklending.controller;
 
 import com.example.booklending.dto.ActionDto;
+import com.example.booklending.dto.BulkActionItemDto;
+import com.example.booklending.dto.BulkActionRequestDto;
+import com.example.booklending.dto.BulkActionResultDto;
+import com.example.booklending.exception.ConflictException;
+import com.example.booklending.exception.GlobalExceptionHandler;
+import com.example.booklending.model.BulkMode;
+import com.example.booklending.model.BulkOutcome;
 import com.example.booklending.service.ActionService;
+import com.example.booklending.service.BulkActionService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -9,12 +17,20 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import jakarta.persistence.EntityNotFoundException;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
 @Tag("unit")
@@ -23,6 +39,9 @@ class ActionControllerTest {
     @Mock
     private ActionService actionService;
 
+    @Mock
+    private BulkActionService bulkActionService;
+
     @InjectMocks
     private ActionController actionController;
 
@@ -57,6 +76,38 @@ class ActionControllerTest {
         verify(actionService).reserveBook(userName, bookId);
     }
 
+    @Test
+    void reserveBook_Conflict() {
+        String userName = "testUser";
+        Long bookId = 1L;
+        when(actionService.reserveBook(userName, bookId)).thenThrow(new ConflictException("Book is not available for reservation"));
+
+        ResponseEntity<ActionDto> response = actionController.reserveBook(userName, bookId);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+    }
+
+    @Test
+    void reserveBook_AsAnotherUser_Forbidden() {
+        String userName = "otherUser";
+        Long bookId = 1L;
+        when(actionService.reserveBook(userName, bookId)).thenThrow(new AccessDeniedException("Authenticated as testUser, cannot act as otherUser"));
+
+        ResponseEntity<ActionDto> response = actionController.reserveBook(userName, bookId);
+
+        assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode());
+    }
+
+    @Test
+    void markAsLentOut_Conflict() {
+        Long bookId = 1L;
+        when(actionService.markAsLentOut(bookId)).thenThrow(new ConflictException("Book is not reserved"));
+
+        ResponseEntity<ActionDto> response = actionController.markAsLentOut(bookId);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+    }
+
     @Test
     void cancelReservation_Success() {
         String userName = "testUser";
@@ -158,4 +209,59 @@ class ActionControllerTest {
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
         verify(actionService).markAsReturned(userName, bookId);
     }
-}
\ No newline at end of file
+
+    @Test
+    void markAsReturnedInBulk_BestEffortReportsEachBook() {
+        String userName = "testUser";
+        BulkActionRequestDto request = new BulkActionRequestDto(List.of(1L, 2L), BulkMode.BEST_EFFORT);
+        BulkActionResultDto expectedResult = new BulkActionResultDto(true, 1, 1, List.of(
+                new BulkActionItemDto(1L, BulkOutcome.DONE, 10L, null),
+                new BulkActionItemDto(2L, BulkOutcome.CONFLICT, null, "Book currently is not borrowed by user!")));
+        when(bulkActionService.markAsReturned(userName, request.getBookIds(), BulkMode.BEST_EFFORT)).thenReturn(expectedResult);
+
+        ResponseEntity<BulkActionResultDto> response = actionController.markBooksAsReturned(userName, request);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(expectedResult, response.getBody());
+    }
+
+    @Test
+    void reserveBooksInBulk_RolledBackIsConflict() {
+        String userName = "testUser";
+        BulkActionRequestDto request = new BulkActionRequestDto(List.of(1L, 2L), BulkMode.ALL_OR_NOTHING);
+        BulkActionResultDto expectedResult = new BulkActionResultDto(false, 0, 2, List.of(
+                new BulkActionItemDto(1L, BulkOutcome.ROLLED_BACK, null, null),
+                new BulkActionItemDto(2L, BulkOutcome.NOT_FOUND, null, "Book not found")));
+        when(bulkActionService.reserveBooks(userName, request.getBookIds(), BulkMode.ALL_OR_NOTHING)).thenReturn(expectedResult);
+
+        ResponseEntity<BulkActionResultDto> response = actionController.reserveBooks(userName, request);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        assertEquals(expectedResult, response.getBody());
+    }
+
+    @Test
+    void markAsLentOutInBulk_TooManyBooksIsBadRequest() {
+        BulkActionRequestDto request = new BulkActionRequestDto(List.of(1L), BulkMode.BEST_EFFORT);
+        when(bulkActionService.markAsLentOut(request.getBookIds(), BulkMode.BEST_EFFORT))
+                .thenThrow(new IllegalArgumentException("At most 1000 books can be processed at once."));
+
+        ResponseEntity<BulkActionResultDto> response = actionController.markBooksAsLentOut(request);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    void markAsLentOutInBulk_WithoutBookIdsIsBadRequest() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(actionController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+
+        mockMvc.perform(post("/api/actions/bulk/lent_out")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bookIds\": [], \"mode\": \"BEST_EFFORT\"}"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(bulkActionService);
+    }
+}
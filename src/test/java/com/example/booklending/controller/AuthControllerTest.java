@@ -2,6 +2,7 @@ package com.example.booklending.controller;
 
 import com.example.booklending.model.AuthRequest;
 import com.example.booklending.service.AuthService;
+import io.jsonwebtoken.MalformedJwtException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
@@ -14,6 +15,9 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
@@ -63,4 +67,38 @@ class AuthControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().string(expectedToken));
     }
+
+    @Test
+    void logout_ShouldRevokeBearerToken() throws Exception {
+        mockMvc.perform(post("/api/auth/logout")
+                        .header("Authorization", "Bearer jwt-token"))
+                .andExpect(status().isNoContent());
+
+        verify(authService).logout("jwt-token");
+    }
+
+    @Test
+    void logout_ShouldReturnUnauthorizedForInvalidToken() throws Exception {
+        doThrow(new MalformedJwtException("bad token")).when(authService).logout("bad-token");
+
+        mockMvc.perform(post("/api/auth/logout")
+                        .header("Authorization", "Bearer bad-token"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void logout_ShouldReturnUnauthorizedWithoutToken() throws Exception {
+        mockMvc.perform(post("/api/auth/logout"))
+                .andExpect(status().isUnauthorized());
+
+        verify(authService, never()).logout(anyString());
+    }
+
+    @Test
+    void revokeAllTokens_ShouldReturnNoContent() throws Exception {
+        mockMvc.perform(post("/api/auth/revoke/testuser"))
+                .andExpect(status().isNoContent());
+
+        verify(authService).revokeAllTokens("testuser");
+    }
 }
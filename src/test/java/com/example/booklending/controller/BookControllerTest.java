@@ -1,31 +1,63 @@
 package com.example.booklending.controller;
 
 import com.example.booklending.dto.BookDto;
+import com.example.booklending.dto.BookImportLineDto;
+import com.example.booklending.dto.BookImportResultDto;
 import com.example.booklending.exception.ConflictException;
+import com.example.booklending.exception.GlobalExceptionHandler;
+import com.example.booklending.model.BookImportFormat;
+import com.example.booklending.model.BookImportOutcome;
+import com.example.booklending.model.BookStatus;
 import com.example.booklending.model.PagedResponse;
+import com.example.booklending.model.User;
+import com.example.booklending.service.BookExportService;
+import com.example.booklending.service.BookImportService;
 import com.example.booklending.service.BookService;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
-
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@Tag("unit")
 public class BookControllerTest {
 
     @Mock
     private BookService bookService;
 
+    @Mock
+    private BookImportService bookImportService;
+
+    @Mock
+    private BookExportService bookExportService;
+
     @InjectMocks
     private BookController bookController;
 
@@ -110,9 +142,9 @@ public class BookControllerTest {
     @Test
     public void testGetAllBooks() {
         PagedResponse<BookDto> pagedResponse = new PagedResponse<>();
-        when(bookService.getBooks(anyString(), anyString(), anyString(), anyString(), anyString(), anyString())).thenReturn(pagedResponse);
+        when(bookService.getBooks(anyString(), anyString(), anyString(), anyString(), anyString(), anyString(), isNull(), anyString(), anyString())).thenReturn(pagedResponse);
 
-        ResponseEntity<PagedResponse<BookDto>> response = bookController.getAllBooks("search", "0", "10", "title", "asc", "available");
+        ResponseEntity<PagedResponse<BookDto>> response = bookController.getAllBooks("search", "0", "10", "title", "asc", "available", null, "substring", "exact");
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(pagedResponse, response.getBody());
@@ -164,4 +196,135 @@ public class BookControllerTest {
 
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
     }
+
+    @Test
+    public void testImportBooksStreamsOneResultPerLine() throws Exception {
+        User importer = User.builder().id(1L).username("admin").build();
+        when(bookImportService.findImporter("admin")).thenReturn(importer);
+        when(bookImportService.importLines(any(InputStream.class), eq(BookImportFormat.CSV), eq(importer), any())).thenAnswer(invocation -> {
+            String upload = new String(invocation.<InputStream>getArgument(0).readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(upload.startsWith("title,author,isbn"));
+            Consumer<BookImportLineDto> results = invocation.getArgument(3);
+            results.accept(new BookImportLineDto(2, "9780547928227", BookImportOutcome.INSERTED, 101L, null));
+            results.accept(new BookImportLineDto(3, "123", BookImportOutcome.INVALID, null, "ISBN is not a valid ISBN-10 or ISBN-13"));
+            return new BookImportResultDto(2, 1, 0, 1);
+        });
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(bookController).build();
+
+        MvcResult result = mockMvc.perform(post("/api/books/import").param("userName", "admin")
+                        .contentType(BookController.CSV_VALUE)
+                        .content("title,author,isbn\nThe Hobbit,J. R. R. Tolkien,9780547928227\nBroken,Nobody,123\n"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BookController.NDJSON_VALUE))
+                .andExpect(content().string(
+                        "{\"line\":2,\"isbn\":\"9780547928227\",\"outcome\":\"INSERTED\",\"bookId\":101,\"error\":null}\n" +
+                        "{\"line\":3,\"isbn\":\"123\",\"outcome\":\"INVALID\",\"bookId\":null,\"error\":\"ISBN is not a valid ISBN-10 or ISBN-13\"}\n"));
+    }
+
+    @Test
+    public void testImportBooksAsAnotherUser() throws Exception {
+        when(bookImportService.findImporter("ghost")).thenThrow(new AccessDeniedException("Authenticated as admin, cannot act as ghost"));
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(bookController).build();
+
+        mockMvc.perform(post("/api/books/import").param("userName", "ghost")
+                        .contentType(BookController.NDJSON_VALUE)
+                        .content("{}\n"))
+                .andExpect(status().isForbidden());
+
+        verify(bookImportService, never()).importLines(any(), any(), any(), any());
+    }
+
+    @Test
+    public void testImportBooksRejectsOtherContentTypes() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(bookController).build();
+
+        mockMvc.perform(post("/api/books/import").param("userName", "admin")
+                        .contentType("application/json")
+                        .content("[]"))
+                .andExpect(status().isUnsupportedMediaType());
+
+        verifyNoInteractions(bookImportService);
+    }
+
+    @Test
+    public void testExportBooksStreamsCsv() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<BookDto> sink = invocation.getArgument(1);
+            sink.accept(new BookDto(1L, "The Hobbit", "J. R. R. Tolkien", "9780547928227", BookStatus.AVAILABLE, null));
+            sink.accept(new BookDto(2L, "Dogs, Cats and \"Other\" Pets", "Jane", "9780000000019", BookStatus.RESERVED, "http://example.com/2.jpg"));
+            return null;
+        }).when(bookExportService).streamBooks(eq(List.of(BookStatus.AVAILABLE, BookStatus.RESERVED)), any());
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(bookController).build();
+
+        MvcResult result = mockMvc.perform(get("/api/books/export").param("format", "CSV").param("statuses", "AVAILABLE, RESERVED"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BookController.CSV_VALUE))
+                .andExpect(content().string(
+                        "id,title,author,isbn,status,cover_url\n" +
+                        "1,The Hobbit,J. R. R. Tolkien,9780547928227,AVAILABLE,\n" +
+                        "2,\"Dogs, Cats and \"\"Other\"\" Pets\",Jane,9780000000019,RESERVED,http://example.com/2.jpg\n"));
+    }
+
+    @Test
+    public void testExportBooksStreamsNdjson() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<BookDto> sink = invocation.getArgument(1);
+            sink.accept(new BookDto(1L, "The Hobbit", "J. R. R. Tolkien", "9780547928227", BookStatus.AVAILABLE, null));
+            return null;
+        }).when(bookExportService).streamBooks(eq(List.of()), any());
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(bookController).build();
+
+        MvcResult result = mockMvc.perform(get("/api/books/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BookController.NDJSON_VALUE))
+                .andExpect(content().string(
+                        "{\"id\":1,\"title\":\"The Hobbit\",\"author\":\"J. R. R. Tolkien\",\"isbn\":\"9780547928227\",\"status\":\"AVAILABLE\",\"coverUrl\":null,\"version\":null}\n"));
+    }
+
+    @Test
+    public void testExportBooksRejectsUnknownStatusOrFormat() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(bookController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+
+        mockMvc.perform(get("/api/books/export").param("statuses", "LOST"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/books/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(bookExportService);
+    }
+
+    @Test
+    public void testExportBooksEndsWithAnErrorLineWhenReadingFails() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<BookDto> sink = invocation.getArgument(1);
+            sink.accept(new BookDto(1L, "The Hobbit", "J. R. R. Tolkien", "9780547928227", BookStatus.AVAILABLE, null));
+            throw new QueryTimeoutException("cursor timed out");
+        }).when(bookExportService).streamBooks(eq(List.of()), any());
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(bookController).build();
+
+        MvcResult result = mockMvc.perform(get("/api/books/export").param("format", "CSV"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(
+                        "id,title,author,isbn,status,cover_url\n" +
+                        "1,The Hobbit,J. R. R. Tolkien,9780547928227,AVAILABLE,\n" +
+                        "error,\"Export failed, the books above are incomplete\"\n"));
+    }
 }
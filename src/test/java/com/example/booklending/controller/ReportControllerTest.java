@@ -0,0 +1,94 @@
+package com.example.booklending.controller;
+
+import com.example.booklending.dto.OverdueLoanDto;
+import com.example.booklending.service.OverdueLoanService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@Tag("unit")
+class ReportControllerTest {
+
+    private AutoCloseable closeable;
+
+    private MockMvc mockMvc;
+
+    @Mock
+    private OverdueLoanService overdueLoanService;
+
+    @BeforeEach
+    void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+        ReportController reportController = new ReportController(overdueLoanService,
+                Jackson2ObjectMapperBuilder.json().indentOutput(true).build());
+        mockMvc = MockMvcBuilders.standaloneSetup(reportController).build();
+
+        doAnswer(invocation -> {
+            Consumer<OverdueLoanDto> sink = invocation.getArgument(1);
+            sink.accept(new OverdueLoanDto(1L, "The Hobbit", "9780547928227", 2L, "jdoe", LocalDateTime.of(2024, 9, 1, 12, 0), 3));
+            sink.accept(new OverdueLoanDto(4L, "Dogs, Cats and \"Other\" Pets", "9780000000001", null, null, LocalDateTime.of(2024, 9, 2, 12, 0), 2));
+            return null;
+        }).when(overdueLoanService).streamOverdue(any(), any());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    void getOverdueLoans_streamsOneJsonObjectPerLine() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/reports/overdue"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(ReportController.NDJSON))
+                .andExpect(content().string(
+                        "{\"bookId\":1,\"title\":\"The Hobbit\",\"isbn\":\"9780547928227\",\"holderId\":2,\"holderUsername\":\"jdoe\",\"dueDate\":\"2024-09-01T12:00:00\",\"daysOverdue\":3}\n" +
+                        "{\"bookId\":4,\"title\":\"Dogs, Cats and \\\"Other\\\" Pets\",\"isbn\":\"9780000000001\",\"holderId\":null,\"holderUsername\":null,\"dueDate\":\"2024-09-02T12:00:00\",\"daysOverdue\":2}\n"));
+    }
+
+    @Test
+    void getOverdueLoans_streamsCsvWithQuotedFields() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/reports/overdue").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(ReportController.CSV))
+                .andExpect(content().string(
+                        "book_id,title,isbn,holder_id,holder_username,due_date,days_overdue\n" +
+                        "1,The Hobbit,9780547928227,2,jdoe,2024-09-01T12:00:00,3\n" +
+                        "4,\"Dogs, Cats and \"\"Other\"\" Pets\",9780000000001,,,2024-09-02T12:00:00,2\n"));
+    }
+
+    @Test
+    void getOverdueLoans_rejectsUnknownFormat() throws Exception {
+        mockMvc.perform(get("/api/reports/overdue").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(overdueLoanService);
+    }
+}
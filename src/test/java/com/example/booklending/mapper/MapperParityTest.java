@@ -0,0 +1,95 @@
+package com.example.booklending.mapper;
+
+import com.example.booklending.dto.BookDto;
+import com.example.booklending.dto.UserDto;
+import com.example.booklending.model.Book;
+import com.example.booklending.model.BookStatus;
+import com.example.booklending.model.Role;
+import com.example.booklending.model.User;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.modelmapper.ModelMapper;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The hand-written mappers must produce exactly what the reflective ModelMapper they replaced produced.
+ */
+@Tag("unit")
+class MapperParityTest {
+
+    private final ModelMapper modelMapper = new ModelMapper();
+    private final BookMapper bookMapper = new BookMapper();
+    private final UserMapper userMapper = new UserMapper();
+
+    static Stream<Book> books() {
+        return Stream.of(
+                new Book(1L, "The Hobbit", "J. R. R. Tolkien", "9780547928227", BookStatus.AVAILABLE, "http://example.com/hobbit.jpg"),
+                new Book(2L, "Dune", "Frank Herbert", "9780441013593", BookStatus.LENT_OUT, null),
+                new Book(null, "Untitled", "Anonymous", "0000000000", null, ""));
+    }
+
+    static Stream<BookDto> bookDtos() {
+        return books().map(book -> new BookDto(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(), book.getStatus(), book.getCoverUrl()));
+    }
+
+    static Stream<User> users() {
+        return Stream.of(
+                new User(1L, "admin", "secret123", "admin@example.com", new Role(1, "ADMIN")),
+                new User(2L, "reader", "secret456", "reader@example.com", new Role(3, "USER")),
+                new User(3L, "orphan", "secret789", "orphan@example.com", null));
+    }
+
+    static Stream<UserDto> userDtos() {
+        return Stream.of(
+                new UserDto(1L, "admin", "secret123", "admin@example.com", 1),
+                new UserDto(null, "newcomer", "secret456", "new@example.com", 3),
+                new UserDto(3L, "orphan", "secret789", "orphan@example.com", null));
+    }
+
+    @ParameterizedTest
+    @MethodSource("books")
+    void bookToDto(Book book) {
+        assertEquals(modelMapper.map(book, BookDto.class), bookMapper.toDto(book));
+    }
+
+    @ParameterizedTest
+    @MethodSource("bookDtos")
+    void bookDtoToEntity(BookDto bookDto) {
+        Book expected = modelMapper.map(bookDto, Book.class);
+        Book actual = bookMapper.toEntity(bookDto);
+
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getAuthor(), actual.getAuthor());
+        assertEquals(expected.getIsbn(), actual.getIsbn());
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expected.getCoverUrl(), actual.getCoverUrl());
+    }
+
+    @ParameterizedTest
+    @MethodSource("users")
+    void userToDto(User user) {
+        assertEquals(modelMapper.map(user, UserDto.class), userMapper.toDto(user));
+    }
+
+    @ParameterizedTest
+    @MethodSource("userDtos")
+    void userDtoToEntity(UserDto userDto) {
+        User expected = modelMapper.map(userDto, User.class);
+        User actual = userMapper.toEntity(userDto);
+
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getUsername(), actual.getUsername());
+        assertEquals(expected.getPassword(), actual.getPassword());
+        assertEquals(expected.getEmail(), actual.getEmail());
+        assertEquals(expected.getRole() == null, actual.getRole() == null);
+        if (expected.getRole() != null) {
+            assertEquals(expected.getRole().getId(), actual.getRole().getId());
+            assertEquals(expected.getRole().getName(), actual.getRole().getName());
+        }
+    }
+}
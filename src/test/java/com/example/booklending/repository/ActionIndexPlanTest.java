@@ -0,0 +1,76 @@
+package com.example.booklending.repository;
+
+import com.example.booklending.AbstractIntegrationTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the latest-action lookups of ActionRepository are answered from the top of the
+ * (book_id/user_id, action, action_date DESC) indexes, without scanning or sorting a long history.
+ */
+@SpringBootTest
+@Tag("integration")
+@Transactional
+public class ActionIndexPlanTest extends AbstractIntegrationTest {
+
+    private static final int BOOKS = 1_000;
+    private static final int ACTIONS_PER_BOOK = 200;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seedHistory() {
+        jdbcTemplate.update("""
+                INSERT INTO books (title, author, isbn, status)
+                SELECT 'Title ' || i, 'Author ' || i, 'plan-' || i, 'AVAILABLE'
+                FROM generate_series(1, ?) AS i
+                """, BOOKS);
+        jdbcTemplate.update("""
+                INSERT INTO actions (book_id, user_id, action, action_date)
+                SELECT b.id, (SELECT min(id) FROM users),
+                       (ARRAY['RESERVE_BOOK', 'CANCEL_BOOK_RESERVATION', 'LENT_OUT_BOOK', 'RETURN_BOOK'])[1 + j % 4],
+                       now() - j * interval '1 hour'
+                FROM books b, generate_series(1, ?) AS j
+                WHERE b.isbn LIKE 'plan-%'
+                """, ACTIONS_PER_BOOK);
+        jdbcTemplate.execute("ANALYZE actions");
+    }
+
+    @Test
+    void testLatestActionOfBook_usesBookIndex() {
+        Long bookId = jdbcTemplate.queryForObject("SELECT min(id) FROM books WHERE isbn LIKE 'plan-%'", Long.class);
+
+        // Same shape as the SQL Hibernate renders for findTopByBookIdAndActionOrderByActionDateDesc
+        String plan = explain("SELECT a.* FROM actions a WHERE a.book_id = " + bookId +
+                " AND a.action = 'RESERVE_BOOK' ORDER BY a.action_date DESC FETCH FIRST 1 ROWS ONLY");
+
+        assertTrue(plan.contains("idx_actions_book_action_date"), plan);
+        assertTrue(!plan.contains("Sort"), plan);
+    }
+
+    @Test
+    void testLatestActionOfUser_usesUserIndex() {
+        Long userId = jdbcTemplate.queryForObject("SELECT min(id) FROM users", Long.class);
+
+        String plan = explain("SELECT a.* FROM actions a WHERE a.user_id = " + userId +
+                " AND a.action = 'RESERVE_BOOK' ORDER BY a.action_date DESC FETCH FIRST 1 ROWS ONLY");
+
+        assertTrue(plan.contains("idx_actions_user_action_date"), plan);
+        assertTrue(!plan.contains("Sort"), plan);
+    }
+
+    private String explain(String sql) {
+        List<String> lines = jdbcTemplate.queryForList("EXPLAIN " + sql, String.class);
+        return String.join("\n", lines);
+    }
+}
@@ -96,4 +96,39 @@ public class ActionRepositoryTest extends AbstractIntegrationTest {
         assertTrue(actions.stream().anyMatch(action -> action.getBook().equals(book)
                 && action.getAction() == ActionType.RETURN_BOOK));
     }
+
+    @Test
+    void testFindTopByBookIdAndUserIdAndAction_returnLatest() {
+        User user = new User();
+        user.setEmail("user3@example.com");
+        user.setUsername("testuser3");
+        user.setPassword("password");
+        user.setRole(roleRepository.save(new Role("USER")));
+        User savedUser = userRepository.save(user);
+
+        Book book = new Book();
+        book.setTitle("Yet Another Test Book");
+        book.setIsbn("1122334455");
+        book.setAuthor("Author of book");
+        book.setStatus(BookStatus.AVAILABLE);
+        Book savedbook = bookRepository.save(book);
+
+        LocalDateTime now = LocalDateTime.now();
+        Action latest = null;
+        for (int daysAgo : new int[]{3, 1, 2}) {
+            Action act = new Action();
+            act.setUser(savedUser);
+            act.setBook(savedbook);
+            act.setAction(ActionType.RESERVE_BOOK);
+            act.setActionDate(now.minusDays(daysAgo));
+            Action saved = ActionRepository.save(act);
+            if (daysAgo == 1) {
+                latest = saved;
+            }
+        }
+
+        assertEquals(latest.getId(), ActionRepository.findTopByBookIdAndActionOrderByActionDateDesc(savedbook.getId(), ActionType.RESERVE_BOOK).orElseThrow().getId());
+        assertEquals(latest.getId(), ActionRepository.findTopByUserIdAndActionOrderByActionDateDesc(savedUser.getId(), ActionType.RESERVE_BOOK).orElseThrow().getId());
+        assertTrue(ActionRepository.findTopByBookIdAndActionOrderByActionDateDesc(savedbook.getId(), ActionType.RETURN_BOOK).isEmpty());
+    }
 }
@@ -1,18 +1,25 @@
 package com.example.booklending.repository;
 
 import com.example.booklending.AbstractIntegrationTest;
+import com.example.booklending.dto.BookDto;
 import com.example.booklending.model.Book;
 import com.example.booklending.model.BookStatus;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -24,6 +31,12 @@ public class BookRepositoryTest extends AbstractIntegrationTest {
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Test
     void testFindByIsbn_whenBookExists() {
         Book book = new Book();
@@ -80,4 +93,75 @@ public class BookRepositoryTest extends AbstractIntegrationTest {
         assertEquals("DEF", books.get(0).getTitle());
         assertEquals("ABC", books.get(1).getTitle());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSearchFullText_ranksTitleMatchesAboveAuthorMatches() {
+        Book byAuthor = new Book();
+        byAuthor.setTitle("A Biography");
+        byAuthor.setAuthor("Humphrey Hobbit");
+        byAuthor.setIsbn("1234567894");
+        byAuthor.setStatus(BookStatus.AVAILABLE);
+        bookRepository.save(byAuthor);
+
+        Book byTitle = new Book();
+        byTitle.setTitle("The Hobbit");
+        byTitle.setAuthor("J. R. R. Tolkien");
+        byTitle.setIsbn("1234567895");
+        byTitle.setStatus(BookStatus.AVAILABLE);
+        bookRepository.save(byTitle);
+
+        Book unavailable = new Book();
+        unavailable.setTitle("The Hobbit, Annotated");
+        unavailable.setAuthor("Douglas Anderson");
+        unavailable.setIsbn("1234567896");
+        unavailable.setStatus(BookStatus.LENT_OUT);
+        bookRepository.saveAndFlush(unavailable);
+
+        Page<Book> books = bookRepository.searchFullText("hobbits", List.of("AVAILABLE"), PageRequest.of(0, 10));
+
+        assertEquals(2, books.getTotalElements());
+        assertEquals("The Hobbit", books.getContent().get(0).getTitle());
+        assertEquals("A Biography", books.getContent().get(1).getTitle());
+    }
+
+    @Test
+    void testFindPage_readsDtosWithoutManagingEntities() {
+        for (int i = 0; i < 3; i++) {
+            Book book = new Book();
+            book.setTitle("Title " + i);
+            book.setAuthor("Author " + i);
+            book.setIsbn("223456789" + i);
+            book.setStatus(BookStatus.AVAILABLE);
+            bookRepository.save(book);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Specification<Book> spec = (root, query, criteriaBuilder) ->
+                criteriaBuilder.like(root.get("title"), "Title %");
+        Page<BookDto> page = bookRepository.findPage(spec, PageRequest.of(0, 2, Sort.by("title")));
+
+        assertEquals(3, page.getTotalElements());
+        assertEquals(List.of("Title 0", "Title 1"), page.getContent().stream().map(BookDto::getTitle).toList());
+        assertTrue(bookRepository.findSlice(spec, PageRequest.of(1, 2, Sort.by("title"))).isLast());
+        assertEquals("Title 2", bookRepository.findDtoByIsbn("2234567892").orElseThrow().getTitle());
+        assertEquals("Title 0", bookRepository.findDtoById(page.getContent().get(0).getId()).orElseThrow().getTitle());
+        assertEquals(0, entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+    }
+
+    @Test
+    void testSaveAll_pooledIdsDoNotCollideWithPlainSqlInserts() {
+        Book first = bookRepository.save(new Book(null, "First", "Author", "3234567890", BookStatus.AVAILABLE, null));
+        Long plainSqlId = jdbcTemplate.queryForObject(
+                "INSERT INTO books (title, author, isbn, status) VALUES ('Plain', 'Author', '3234567891', 'AVAILABLE') RETURNING id", Long.class);
+        List<Book> batch = bookRepository.saveAll(List.of(
+                new Book(null, "Second", "Author", "3234567892", BookStatus.AVAILABLE, null),
+                new Book(null, "Third", "Author", "3234567893", BookStatus.AVAILABLE, null)));
+        entityManager.flush();
+
+        // pooled-lo hands out the rest of a reserved block from memory; the SQL insert must land outside of it
+        assertEquals(4, Set.of(first.getId(), plainSqlId, batch.get(0).getId(), batch.get(1).getId()).size());
+        assertEquals(4, jdbcTemplate.queryForObject(
+                "SELECT count(DISTINCT id) FROM books WHERE isbn LIKE '323456789%'", Integer.class));
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.booklending.repository;
+
+import com.example.booklending.AbstractIntegrationTest;
+import com.example.booklending.dto.BookDto;
+import com.example.booklending.model.PagedResponse;
+import com.example.booklending.service.BookService;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the SQL Hibernate emits for a catalog search through BookService is answered from the pg_trgm
+ * indexes instead of a sequential scan once the catalog is large. The statements are captured as Hibernate
+ * sends them and explained with their parameters bound.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.booklending.repository.BookSearchPlanTest$RecordingStatementInspector")
+@Tag("integration")
+@Transactional
+public class BookSearchPlanTest extends AbstractIntegrationTest {
+
+    private static final int CATALOG_SIZE = 1_000_000;
+    private static final String SEARCH_QUERY = "Tolkien";
+    // The LIKE pattern BookService binds for SEARCH_QUERY
+    private static final String SEARCH_PATTERN = "%tolkien%";
+    private static final int PAGE_SIZE = 2;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seedCatalog() {
+        jdbcTemplate.update("""
+                INSERT INTO books (title, author, isbn, status)
+                SELECT 'Title ' || md5(i::text), 'Author ' || md5((i * 7)::text), lpad(i::text, 13, '0'), 'AVAILABLE'
+                FROM generate_series(1, ?) AS i
+                """, CATALOG_SIZE);
+        jdbcTemplate.update("""
+                INSERT INTO books (title, author, isbn, status) VALUES
+                ('The Hobbit', 'J. R. R. Tolkien', '9780547928227', 'AVAILABLE'),
+                ('The Lord of the Rings', 'J. R. R. Tolkien', '9780544003415', 'AVAILABLE'),
+                ('The Silmarillion', 'J. R. R. Tolkien', '9780544338012', 'AVAILABLE')
+                """);
+        jdbcTemplate.execute("ANALYZE books");
+        RecordingStatementInspector.STATEMENTS.clear();
+    }
+
+    @Test
+    void testSearchQueries_useTrigramIndexes() {
+        // A full first page, so that the count query runs as well
+        PagedResponse<BookDto> page = bookService.getBooks(SEARCH_QUERY, "0", String.valueOf(PAGE_SIZE), "title", "asc",
+                "", null, "substring", "exact");
+        assertEquals(3, page.getTotalElements());
+
+        String pagePlan = explain(captured(sql -> !sql.contains("count(")));
+        assertTrue(pagePlan.contains("idx_books_title_trgm"), pagePlan);
+        assertTrue(!pagePlan.contains("Seq Scan"), pagePlan);
+
+        String countPlan = explain(captured(sql -> sql.contains("count(")));
+        assertTrue(countPlan.contains("idx_books_title_trgm"), countPlan);
+        assertTrue(countPlan.contains("idx_books_author_trgm"), countPlan);
+        assertTrue(countPlan.contains("idx_books_isbn_trgm"), countPlan);
+        assertTrue(!countPlan.contains("Seq Scan"), countPlan);
+    }
+
+    private static String captured(Predicate<String> kind) {
+        List<String> statements = RecordingStatementInspector.STATEMENTS.stream()
+                .filter(sql -> sql.contains(" books "))
+                .filter(kind)
+                .toList();
+        assertEquals(1, statements.size(), statements.toString());
+        return statements.get(0);
+    }
+
+    /**
+     * Explains a captured statement as PostgreSQL runs it: prepared, then executed with the search pattern bound
+     * to its text parameters and the page size to its integer one, the only parameters a first page has.
+     */
+    private String explain(String sql) {
+        StringBuilder positional = new StringBuilder();
+        int parameters = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                positional.append('$').append(++parameters);
+            } else {
+                positional.append(c);
+            }
+        }
+        jdbcTemplate.execute("PREPARE search_plan AS " + positional);
+        try {
+            String types = jdbcTemplate.queryForObject(
+                    "SELECT parameter_types::text FROM pg_prepared_statements WHERE name = 'search_plan'", String.class);
+            List<String> arguments = new ArrayList<>();
+            for (String type : types.substring(1, types.length() - 1).split(",")) {
+                switch (type.replace("\"", "")) {
+                    case "text", "character varying" -> arguments.add("'" + SEARCH_PATTERN + "'");
+                    case "integer", "bigint" -> arguments.add(String.valueOf(PAGE_SIZE));
+                    default -> throw new IllegalStateException("Unexpected parameter type " + type + " in " + sql);
+                }
+            }
+            jdbcTemplate.execute("SET LOCAL plan_cache_mode = force_custom_plan");
+            List<String> lines = jdbcTemplate.queryForList(
+                    "EXPLAIN EXECUTE search_plan(" + String.join(", ", arguments) + ")", String.class);
+            return String.join("\n", lines);
+        } finally {
+            jdbcTemplate.execute("DEALLOCATE search_plan");
+        }
+    }
+
+    /**
+     * Records every SQL statement Hibernate prepares, unchanged.
+     */
+    public static class RecordingStatementInspector implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
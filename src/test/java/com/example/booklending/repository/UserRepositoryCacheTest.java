@@ -0,0 +1,93 @@
+package com.example.booklending.repository;
+
+import com.example.booklending.model.Role;
+import com.example.booklending.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks the caching declared on UserRepository against a mocked repository behind the caching proxy.
+ */
+@Tag("unit")
+@SpringJUnitConfig
+class UserRepositoryCacheTest {
+
+    @Configuration
+    @EnableCaching
+    static class Config {
+
+        @Bean
+        UserRepository userRepository() {
+            return mock(UserRepository.class);
+        }
+
+        @Bean
+        CacheManager cacheManager() {
+            return new CaffeineCacheManager(UserRepository.USERS_BY_USERNAME_CACHE, UserRepository.USERS_BY_ID_CACHE);
+        }
+    }
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    // The mock behind the caching proxy
+    private UserRepository target;
+
+    private final User user = User.builder().id(1L).username("testuser").role(new Role(1, "USER")).build();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        target = (UserRepository) ((Advised) userRepository).getTargetSource().getTarget();
+        reset(target);
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    void findByUsername_isServedFromCacheOnRepeat() {
+        when(target.findByUsername("testuser")).thenReturn(Optional.of(user));
+
+        userRepository.findByUsername("testuser");
+        Optional<User> cached = userRepository.findByUsername("testuser");
+
+        assertEquals(user, cached.orElseThrow());
+        verify(target, times(1)).findByUsername("testuser");
+    }
+
+    @Test
+    void findById_isServedFromCacheOnRepeat() {
+        when(target.findById(1L)).thenReturn(Optional.of(user));
+
+        userRepository.findById(1L);
+        Optional<User> cached = userRepository.findById(1L);
+
+        assertEquals(user, cached.orElseThrow());
+        verify(target, times(1)).findById(1L);
+    }
+
+    @Test
+    void findByUsername_doesNotCacheMissingUsers() {
+        when(target.findByUsername("newuser")).thenReturn(Optional.empty(), Optional.of(user));
+
+        assertTrue(userRepository.findByUsername("newuser").isEmpty());
+        assertTrue(userRepository.findByUsername("newuser").isPresent());
+        verify(target, times(2)).findByUsername("newuser");
+    }
+}
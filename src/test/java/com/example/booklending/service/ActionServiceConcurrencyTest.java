@@ -0,0 +1,107 @@
+package com.example.booklending.service;
+
+import com.example.booklending.AbstractIntegrationTest;
+import com.example.booklending.exception.ConflictException;
+import com.example.booklending.model.ActionType;
+import com.example.booklending.model.Book;
+import com.example.booklending.model.BookStatus;
+import com.example.booklending.model.Role;
+import com.example.booklending.model.User;
+import com.example.booklending.repository.ActionRepository;
+import com.example.booklending.repository.BookRepository;
+import com.example.booklending.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.example.booklending.context.TestAuthentication.authenticateAs;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Fires many simultaneous reservations at one book: exactly one must win and every other must be
+ * rejected as a conflict. Not transactional, since every reservation has to commit on its own.
+ */
+@SpringBootTest
+@Tag("integration")
+public class ActionServiceConcurrencyTest extends AbstractIntegrationTest {
+
+    private static final int RESERVATIONS = 2000;
+    private static final int THREADS = 64;
+
+    @Autowired
+    private ActionService actionService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ActionRepository actionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Book book;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+                .username("concurrent-borrower")
+                .password("password")
+                .email("concurrent-borrower@example.com")
+                .role(new Role(2, "USER"))
+                .build());
+        book = bookRepository.save(new Book(null, "Concurrency in Practice", "Brian Goetz", "9780321349606", BookStatus.AVAILABLE, null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        actionRepository.deleteAll(actionRepository.findByBookIdAndAction(book.getId(), ActionType.RESERVE_BOOK));
+        bookRepository.deleteById(book.getId());
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    void testSimultaneousReservations_exactlyOneWins() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < RESERVATIONS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    authenticateAs(user);
+                    try {
+                        actionService.reserveBook(user.getUsername(), book.getId());
+                        reserved.incrementAndGet();
+                    } catch (ConflictException e) {
+                        conflicts.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, reserved.get());
+        assertEquals(RESERVATIONS - 1, conflicts.get());
+        assertEquals(BookStatus.RESERVED, bookRepository.findById(book.getId()).orElseThrow().getStatus());
+        assertEquals(1, actionRepository.findByBookIdAndAction(book.getId(), ActionType.RESERVE_BOOK).size());
+    }
+}
@@ -1,22 +1,33 @@
 package com.example.booklending.service;
 
+import com.example.booklending.configuration.ActingUser;
 import com.example.booklending.dto.ActionDto;
+import com.example.booklending.exception.ConflictException;
 import com.example.booklending.model.*;
 import com.example.booklending.repository.ActionRepository;
+import com.example.booklending.repository.BookCurrentStateRepository;
 import com.example.booklending.repository.BookRepository;
 import com.example.booklending.repository.UserRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
 
+import static com.example.booklending.context.TestAuthentication.authenticateAs;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+@Tag("unit")
 class ActionServiceTest {
 
     @Mock
@@ -28,6 +39,12 @@ class ActionServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private BookSearchIndex bookSearchIndex;
+
+    @Mock
+    private BookCurrentStateRepository bookCurrentStateRepository;
+
     @InjectMocks
     private ActionService actionService;
 
@@ -36,6 +53,11 @@ class ActionServiceTest {
         MockitoAnnotations.openMocks(this);
     }
 
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
     @Test
     void testReserveBook_Success() {
         // Arrange
@@ -44,15 +66,14 @@ class ActionServiceTest {
         User user = new User();
         user.setId(1L);
         user.setUsername(userName);
-        Role role = new Role();
-        role.setId(2);
-        user.setRole(role);
+        user.setRole(new Role(2, "USER"));
 
         Book book = new Book();
         book.setId(bookId);
         book.setStatus(BookStatus.AVAILABLE);
 
-        when(userRepository.findByUsername(userName)).thenReturn(Optional.of(user));
+        authenticateAs(user);
+        when(bookRepository.compareAndSetStatus(bookId, BookStatus.AVAILABLE, BookStatus.RESERVED)).thenReturn(1);
         when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
         when(actionRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
 
@@ -62,32 +83,76 @@ class ActionServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals(ActionType.RESERVE_BOOK, result.getActionType());
-        verify(bookRepository).save(book);
-        assertEquals(BookStatus.RESERVED, book.getStatus());
+        verify(bookRepository).compareAndSetStatus(bookId, BookStatus.AVAILABLE, BookStatus.RESERVED);
+        verify(bookRepository, never()).save(any());
     }
 
     @Test
-    void testReserveBook_UserNotFound() {
-        // Arrange
-        when(userRepository.findByUsername(anyString())).thenReturn(Optional.empty());
+    void testReserveBook_ActingUserFromSecurityContext() {
+        String userName = "testUser";
+        Long bookId = 1L;
+        ActingUser actingUser = new ActingUser(5L, userName, null, 2, "USER");
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(actingUser, null, actingUser.getAuthorities()));
 
-        // Act & Assert
-        assertThrows(RuntimeException.class, () -> actionService.reserveBook("nonexistentUser", 1L));
+        Book book = new Book();
+        book.setId(bookId);
+        book.setStatus(BookStatus.AVAILABLE);
+
+        when(bookRepository.compareAndSetStatus(bookId, BookStatus.AVAILABLE, BookStatus.RESERVED)).thenReturn(1);
+        when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
+        when(actionRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ActionDto result = actionService.reserveBook(userName, bookId);
+
+        assertEquals(5L, result.getUserId());
+        verify(userRepository, never()).findByUsername(anyString());
+    }
+
+    @Test
+    void testReserveBook_NotAuthenticated() {
+        assertThrows(AccessDeniedException.class, () -> actionService.reserveBook("testUser", 1L));
+        verifyNoInteractions(bookRepository, actionRepository, userRepository);
+    }
+
+    @Test
+    void testReserveBook_AsAnotherUser() {
+        authenticateAs(User.builder().id(1L).username("testUser").role(new Role(2, "USER")).build());
+
+        assertThrows(AccessDeniedException.class, () -> actionService.reserveBook("otherUser", 1L));
+        verifyNoInteractions(bookRepository, actionRepository, userRepository);
     }
 
     @Test
     void testReserveBook_BookNotAvailable() {
         // Arrange
         User user = new User();
+        user.setId(1L);
+        user.setUsername("testUser");
         user.setRole(new Role(2, "USER"));
-        Book book = new Book();
-        book.setStatus(BookStatus.BORROWED);
 
-        when(userRepository.findByUsername(anyString())).thenReturn(Optional.of(user));
-        when(bookRepository.findById(anyLong())).thenReturn(Optional.of(book));
+        // The book exists but is no longer AVAILABLE, e.g. another user reserved it first
+        authenticateAs(user);
+        when(bookRepository.compareAndSetStatus(1L, BookStatus.AVAILABLE, BookStatus.RESERVED)).thenReturn(0);
+        when(bookRepository.existsById(1L)).thenReturn(true);
 
         // Act & Assert
-        assertThrows(RuntimeException.class, () -> actionService.reserveBook("testUser", 1L));
+        assertThrows(ConflictException.class, () -> actionService.reserveBook("testUser", 1L));
+        verify(actionRepository, never()).save(any());
+    }
+
+    @Test
+    void testReserveBook_BookNotFound() {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("testUser");
+        user.setRole(new Role(2, "USER"));
+
+        authenticateAs(user);
+        when(bookRepository.compareAndSetStatus(1L, BookStatus.AVAILABLE, BookStatus.RESERVED)).thenReturn(0);
+        when(bookRepository.existsById(1L)).thenReturn(false);
+
+        assertThrows(EntityNotFoundException.class, () -> actionService.reserveBook("testUser", 1L));
     }
 
     @Test
@@ -96,13 +161,16 @@ class ActionServiceTest {
         String userName = "testUser";
         Long bookId = 1L;
         User user = new User();
+        user.setId(1L);
         user.setUsername(userName);
+        user.setRole(new Role(2, "USER"));
         Book book = new Book();
         book.setId(bookId);
         book.setStatus(BookStatus.RESERVED);
 
+        when(bookRepository.compareAndSetStatus(bookId, BookStatus.RESERVED, BookStatus.AVAILABLE)).thenReturn(1);
         when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
-        when(userRepository.findByUsername(userName)).thenReturn(Optional.of(user));
+        authenticateAs(user);
         when(actionRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
@@ -111,8 +179,8 @@ class ActionServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals(ActionType.CANCEL_BOOK_RESERVATION, result.getActionType());
-        verify(bookRepository).save(book);
-        assertEquals(BookStatus.AVAILABLE, book.getStatus());
+        verify(bookRepository).compareAndSetStatus(bookId, BookStatus.RESERVED, BookStatus.AVAILABLE);
+        verify(bookRepository, never()).save(any());
     }
 
     @Test
@@ -123,16 +191,19 @@ class ActionServiceTest {
         book.setId(bookId);
         book.setStatus(BookStatus.RESERVED);
 
-        Action reservationAction = new Action();
-        reservationAction.setBook(book);
-        reservationAction.setUser(new User());
-        reservationAction.setAction(ActionType.RESERVE_BOOK);
-        reservationAction.setActionDate(LocalDateTime.now().minusHours(1));
+        User borrower = new User();
+        borrower.setId(7L);
+        BookCurrentState state = new BookCurrentState(bookId, 7L, 10L, null, LocalDateTime.now().plusHours(23));
 
+        when(bookRepository.compareAndSetStatus(bookId, BookStatus.RESERVED, BookStatus.LENT_OUT)).thenReturn(1);
         when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
-        when(actionRepository.findByBookIdAndAction(bookId, ActionType.RESERVE_BOOK))
-                .thenReturn(java.util.List.of(reservationAction));
-        when(actionRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(bookCurrentStateRepository.findById(bookId)).thenReturn(Optional.of(state));
+        when(userRepository.getReferenceById(7L)).thenReturn(borrower);
+        when(actionRepository.save(any())).thenAnswer(invocation -> {
+            Action action = invocation.getArgument(0);
+            action.setId(11L);
+            return action;
+        });
 
         // Act
         ActionDto result = actionService.markAsLentOut(bookId);
@@ -140,8 +211,48 @@ class ActionServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals(ActionType.LENT_OUT_BOOK, result.getActionType());
-        verify(bookRepository).save(book);
-        assertEquals(BookStatus.LENT_OUT, book.getStatus());
+        assertEquals(7L, result.getUserId());
+        verify(bookRepository).compareAndSetStatus(bookId, BookStatus.RESERVED, BookStatus.LENT_OUT);
+        verify(bookRepository, never()).save(any());
+        verify(actionRepository, never()).findByBookIdAndAction(anyLong(), any());
+        assertEquals(11L, state.getLoanActionId());
+    }
+
+    @Test
+    void testMarkAsLentOut_StateRebuiltFromHistory() {
+        Long bookId = 1L;
+        User borrower = new User();
+        borrower.setId(7L);
+        Action reservation = new Action();
+        reservation.setId(10L);
+        reservation.setUser(borrower);
+        reservation.setAction(ActionType.RESERVE_BOOK);
+        reservation.setActionDate(LocalDateTime.now().minusHours(1));
+
+        when(bookRepository.compareAndSetStatus(bookId, BookStatus.RESERVED, BookStatus.LENT_OUT)).thenReturn(1);
+        when(bookRepository.findById(bookId)).thenReturn(Optional.of(new Book()));
+        when(bookCurrentStateRepository.findById(bookId)).thenReturn(Optional.empty());
+        when(actionRepository.findTopByBookIdAndActionOrderByActionDateDesc(bookId, ActionType.RESERVE_BOOK)).thenReturn(Optional.of(reservation));
+        when(userRepository.getReferenceById(7L)).thenReturn(borrower);
+        when(actionRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ActionDto result = actionService.markAsLentOut(bookId);
+
+        assertEquals(7L, result.getUserId());
+        verify(bookCurrentStateRepository).save(argThat(state -> state.getBookId().equals(bookId) && state.getReservationActionId().equals(10L)));
+        verify(actionRepository, never()).findByBookIdAndAction(anyLong(), any());
+    }
+
+    @Test
+    void testMarkAsLentOut_WithoutReservation() {
+        Long bookId = 1L;
+
+        when(bookRepository.compareAndSetStatus(bookId, BookStatus.RESERVED, BookStatus.LENT_OUT)).thenReturn(1);
+        when(bookRepository.findById(bookId)).thenReturn(Optional.of(new Book()));
+        when(bookCurrentStateRepository.findById(bookId)).thenReturn(Optional.empty());
+
+        assertThrows(EntityNotFoundException.class, () -> actionService.markAsLentOut(bookId));
+        verify(actionRepository, never()).save(any());
     }
 
     @Test
@@ -150,21 +261,18 @@ class ActionServiceTest {
         String userName = "testUser";
         Long bookId = 1L;
         User user = new User();
+        user.setId(7L);
         user.setUsername(userName);
+        user.setRole(new Role(2, "USER"));
         Book book = new Book();
         book.setId(bookId);
         book.setStatus(BookStatus.LENT_OUT);
+        LocalDateTime dueDate = LocalDateTime.now().plusWeeks(4);
 
-        Action lentOutAction = new Action();
-        lentOutAction.setBook(book);
-        lentOutAction.setUser(user);
-        lentOutAction.setAction(ActionType.LENT_OUT_BOOK);
-        lentOutAction.setDueDate(LocalDateTime.now().plusWeeks(4));
-
+        when(bookRepository.compareAndSetStatus(bookId, BookStatus.LENT_OUT, BookStatus.BORROWED)).thenReturn(1);
         when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
-        when(userRepository.findByUsername(userName)).thenReturn(Optional.of(user));
-        when(actionRepository.findByBookIdAndAction(bookId, ActionType.LENT_OUT_BOOK))
-                .thenReturn(java.util.List.of(lentOutAction));
+        authenticateAs(user);
+        when(bookCurrentStateRepository.findById(bookId)).thenReturn(Optional.of(new BookCurrentState(bookId, 7L, 10L, 11L, dueDate)));
         when(actionRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
@@ -173,8 +281,27 @@ class ActionServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals(ActionType.RECEIVE_BOOK, result.getActionType());
-        verify(bookRepository).save(book);
-        assertEquals(BookStatus.BORROWED, book.getStatus());
+        assertEquals(dueDate, result.getDueDate());
+        verify(bookRepository).compareAndSetStatus(bookId, BookStatus.LENT_OUT, BookStatus.BORROWED);
+        verify(bookRepository, never()).save(any());
+    }
+
+    @Test
+    void testMarkAsReceived_LentOutToAnotherUser() {
+        String userName = "testUser";
+        Long bookId = 1L;
+        User user = new User();
+        user.setId(7L);
+        user.setUsername(userName);
+        user.setRole(new Role(2, "USER"));
+
+        when(bookRepository.compareAndSetStatus(bookId, BookStatus.LENT_OUT, BookStatus.BORROWED)).thenReturn(1);
+        when(bookRepository.findById(bookId)).thenReturn(Optional.of(new Book()));
+        authenticateAs(user);
+        when(bookCurrentStateRepository.findById(bookId)).thenReturn(Optional.of(new BookCurrentState(bookId, 8L, 10L, 11L, null)));
+
+        assertThrows(EntityNotFoundException.class, () -> actionService.markAsReceived(userName, bookId));
+        verify(actionRepository, never()).save(any());
     }
 
     @Test
@@ -183,16 +310,16 @@ class ActionServiceTest {
         String userName = "testUser";
         Long bookId = 1L;
         User user = new User();
+        user.setId(1L);
         user.setUsername(userName);
-        Role userRole = new Role();
-        userRole.setName("USER");
-        user.setRole(userRole);
+        user.setRole(new Role(2, "USER"));
         Book book = new Book();
         book.setId(bookId);
         book.setStatus(BookStatus.BORROWED);
 
+        when(bookRepository.compareAndSetStatus(bookId, BookStatus.BORROWED, BookStatus.RETURNED)).thenReturn(1);
         when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
-        when(userRepository.findByUsername(userName)).thenReturn(Optional.of(user));
+        authenticateAs(user);
         when(actionRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
@@ -201,8 +328,8 @@ class ActionServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals(ActionType.RETURN_BOOK, result.getActionType());
-        verify(bookRepository).save(book);
-        assertEquals(BookStatus.RETURNED, book.getStatus());
+        verify(bookRepository).compareAndSetStatus(bookId, BookStatus.BORROWED, BookStatus.RETURNED);
+        verify(bookRepository, never()).save(any());
     }
 
     @Test
@@ -211,16 +338,16 @@ class ActionServiceTest {
         String adminName = "adminUser";
         Long bookId = 1L;
         User admin = new User();
+        admin.setId(2L);
         admin.setUsername(adminName);
-        Role adminRole = new Role();
-        adminRole.setName("ADMIN");
-        admin.setRole(adminRole);
+        admin.setRole(new Role(1, "ADMIN"));
         Book book = new Book();
         book.setId(bookId);
         book.setStatus(BookStatus.RETURNED);
 
+        when(bookRepository.compareAndSetStatus(bookId, BookStatus.RETURNED, BookStatus.AVAILABLE)).thenReturn(1);
         when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
-        when(userRepository.findByUsername(adminName)).thenReturn(Optional.of(admin));
+        authenticateAs(admin);
         when(actionRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
@@ -229,7 +356,7 @@ class ActionServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals(ActionType.RETURN_BOOK, result.getActionType());
-        verify(bookRepository).save(book);
-        assertEquals(BookStatus.AVAILABLE, book.getStatus());
+        verify(bookRepository).compareAndSetStatus(bookId, BookStatus.RETURNED, BookStatus.AVAILABLE);
+        verify(bookRepository, never()).save(any());
     }
 }
\ No newline at end of file
@@ -1,8 +1,11 @@
 package com.example.booklending.service;
 
+import com.example.booklending.configuration.ActingUser;
 import com.example.booklending.configuration.JwtUtil;
 import com.example.booklending.configuration.RoleIdGrantedAuthority;
+import io.jsonwebtoken.Jwts;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -14,14 +17,18 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
+@Tag("unit")
 class AuthServiceTest {
 
     @Mock
@@ -30,6 +37,12 @@ class AuthServiceTest {
     @Mock
     private JwtUtil jwtUtil;
 
+    @Mock
+    private UserVersionRegistry userVersionRegistry;
+
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
     @Mock
     private Authentication authentication;
 
@@ -91,4 +104,31 @@ class AuthServiceTest {
         verify(authenticationManager).authenticate(any(UsernamePasswordAuthenticationToken.class));
         verify(jwtUtil, never()).generateToken(anyString(), any());
     }
+
+    @Test
+    void authenticateAndGenerateToken_includesUserIdAndVersion() {
+        ActingUser actingUser = new ActingUser(7L, "user1", "password1", 2, "USER");
+
+        when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
+                .thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(actingUser);
+        when(userVersionRegistry.currentVersion(7L)).thenReturn(3);
+        when(jwtUtil.generateToken(actingUser, 3)).thenReturn("jwt-token");
+        SecurityContextHolder.setContext(mock(SecurityContext.class));
+
+        String token = authService.authenticateAndGenerateToken("user1", "password1");
+
+        assertEquals("jwt-token", token);
+        verify(jwtUtil, never()).generateToken(anyString(), any());
+    }
+
+    @Test
+    void logout_revokesTokenUntilItExpires() {
+        Date expiration = Date.from(Instant.now().plusSeconds(3600).truncatedTo(ChronoUnit.SECONDS));
+        when(jwtUtil.extractClaims("jwt-token")).thenReturn(Jwts.claims().setSubject("user1").setExpiration(expiration));
+
+        authService.logout("jwt-token");
+
+        verify(tokenRevocationService).revokeToken(JwtUtil.digest("jwt-token"), expiration.toInstant());
+    }
 }
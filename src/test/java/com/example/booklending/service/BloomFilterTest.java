@@ -0,0 +1,39 @@
+package com.example.booklending.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class BloomFilterTest {
+
+    @Test
+    void mightContain_hasNoFalseNegatives() {
+        BloomFilter bloomFilter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            bloomFilter.put("token:" + i);
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(bloomFilter.mightContain("token:" + i), "token:" + i);
+        }
+    }
+
+    @Test
+    void mightContain_keepsFalsePositivesNearTheConfiguredRate() {
+        BloomFilter bloomFilter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            bloomFilter.put("token:" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (bloomFilter.mightContain("other:" + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+}
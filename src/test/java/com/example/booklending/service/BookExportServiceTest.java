@@ -0,0 +1,63 @@
+package com.example.booklending.service;
+
+import com.example.booklending.AbstractIntegrationTest;
+import com.example.booklending.dto.BookDto;
+import com.example.booklending.model.Book;
+import com.example.booklending.model.BookStatus;
+import com.example.booklending.repository.BookRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = "books.export.fetch-size=2")
+@Tag("integration")
+@Transactional
+public class BookExportServiceTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private BookExportService bookExportService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testStreamBooks_streamsEveryBookInIdOrder() {
+        bookRepository.saveAndFlush(new Book(null, "One", "Author", "6234567891", BookStatus.AVAILABLE, null));
+        bookRepository.saveAndFlush(new Book(null, "Two", "Author", "6234567892", BookStatus.RESERVED, "http://example.com/2.jpg"));
+        bookRepository.saveAndFlush(new Book(null, "Three", "Author", "6234567893", BookStatus.AVAILABLE, null));
+        List<BookDto> books = new ArrayList<>();
+
+        bookExportService.streamBooks(List.of(), books::add);
+
+        assertEquals(jdbcTemplate.queryForObject("SELECT count(*) FROM books", Integer.class), books.size());
+        assertEquals(books.stream().map(BookDto::getId).sorted().toList(), books.stream().map(BookDto::getId).toList());
+        BookDto two = books.stream().filter(book -> book.getIsbn().equals("6234567892")).findFirst().orElseThrow();
+        assertEquals("Two", two.getTitle());
+        assertEquals(BookStatus.RESERVED, two.getStatus());
+        assertEquals("http://example.com/2.jpg", two.getCoverUrl());
+    }
+
+    @Test
+    void testStreamBooks_filtersByStatus() {
+        bookRepository.saveAndFlush(new Book(null, "One", "Author", "7234567891", BookStatus.LENT_OUT, null));
+        bookRepository.saveAndFlush(new Book(null, "Two", "Author", "7234567892", BookStatus.BORROWED, null));
+        bookRepository.saveAndFlush(new Book(null, "Three", "Author", "7234567893", BookStatus.AVAILABLE, null));
+        List<BookDto> books = new ArrayList<>();
+
+        bookExportService.streamBooks(List.of(BookStatus.LENT_OUT, BookStatus.BORROWED), books::add);
+
+        assertEquals(jdbcTemplate.queryForObject("SELECT count(*) FROM books WHERE status IN ('LENT_OUT', 'BORROWED')", Integer.class), books.size());
+        assertEquals(List.of("7234567891", "7234567892"), books.stream().map(BookDto::getIsbn).filter(isbn -> isbn.startsWith("723")).toList());
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.booklending.service;
+
+import com.example.booklending.AbstractIntegrationTest;
+import com.example.booklending.dto.BookImportLineDto;
+import com.example.booklending.dto.BookImportResultDto;
+import com.example.booklending.model.ActionType;
+import com.example.booklending.model.Book;
+import com.example.booklending.model.BookImportFormat;
+import com.example.booklending.model.BookImportOutcome;
+import com.example.booklending.model.BookStatus;
+import com.example.booklending.model.Role;
+import com.example.booklending.model.User;
+import com.example.booklending.repository.BookRepository;
+import com.example.booklending.repository.UserRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = "data.populate.batch-size=2")
+@Tag("integration")
+@Transactional
+public class BookImportServiceTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private BookImportService bookImportService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testImportJsonArray_skipsExistingRepeatedAndInvalidBooks() throws IOException {
+        bookRepository.saveAndFlush(new Book(null, "Existing", "Author", "4234567890", BookStatus.AVAILABLE, null));
+
+        BookImportResultDto result = bookImportService.importJsonArray(json("""
+                [
+                  {"title": "First", "author": "Author", "isbn": "4234567891", "status": "AVAILABLE", "coverUrl": "http://example.com/1.jpg", "id": null},
+                  {"title": "Existing again", "author": "Author", "isbn": "4234567890"},
+                  {"title": "Repeated", "author": "Author", "isbn": "4234567891"},
+                  {"title": "No author", "isbn": "4234567892"},
+                  {"title": "ISBN too long", "author": "Author", "isbn": "42345678930000"},
+                  {"title": "Last", "author": "Author", "isbn": "4234567894", "extra": "ignored"}
+                ]
+                """), Long.MAX_VALUE);
+
+        assertEquals(new BookImportResultDto(6, 2, 2, 2), result);
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT count(*) FROM books WHERE isbn LIKE '423456789%'", Integer.class));
+        assertEquals(BookStatus.AVAILABLE, bookRepository.findByIsbn("4234567894").orElseThrow().getStatus());
+        assertEquals("http://example.com/1.jpg", bookRepository.findByIsbn("4234567891").orElseThrow().getCoverUrl());
+    }
+
+    @Test
+    void testImportJsonArray_stopsAtLimit() throws IOException {
+        BookImportResultDto result = bookImportService.importJsonArray(json("""
+                [
+                  {"title": "One", "author": "Author", "isbn": "5234567891"},
+                  {"title": "Two", "author": "Author", "isbn": "5234567892"},
+                  {"title": "Three", "author": "Author", "isbn": "5234567893"}
+                ]
+                """), 2);
+
+        assertEquals(2, result.getRead());
+        assertEquals(2, result.getInserted());
+    }
+
+    @Test
+    void testImportJsonArray_rejectsInputThatIsNotAnArray() {
+        assertThrows(IOException.class, () -> bookImportService.importJsonArray(json("{\"title\": \"One\"}"), 10));
+    }
+
+    @Test
+    void testImportLines_reportsEveryLineAndRecordsAddedBooks() throws IOException {
+        User importer = importer();
+        bookRepository.saveAndFlush(new Book(null, "Existing", "Author", "9780000000019", BookStatus.AVAILABLE, null));
+        List<BookImportLineDto> lines = new ArrayList<>();
+
+        BookImportResultDto result = bookImportService.importLines(json("""
+                {"title": "First", "author": "Author", "isbn": "978-0-00-000002-6"}
+                {"title": "Existing again", "author": "Author", "isbn": "9780000000019"}
+
+                not json
+                {"title": "Repeated", "author": "Author", "isbn": "9780000000026"}
+                {"title": "Bad check digit", "author": "Author", "isbn": "9780000000030"}
+                {"title": "Ten digits", "author": "Author", "isbn": "0-306-40615-2", "status": "AVAILABLE"}
+                """), BookImportFormat.NDJSON, importer, lines::add);
+
+        assertEquals(new BookImportResultDto(6, 2, 2, 2), result);
+        assertEquals(List.of(1L, 2L, 4L, 5L, 6L, 7L), lines.stream().map(BookImportLineDto::getLine).toList());
+        assertEquals(List.of(BookImportOutcome.INSERTED, BookImportOutcome.DUPLICATE, BookImportOutcome.INVALID,
+                        BookImportOutcome.DUPLICATE, BookImportOutcome.INVALID, BookImportOutcome.INSERTED),
+                lines.stream().map(BookImportLineDto::getOutcome).toList());
+        Book first = bookRepository.findByIsbn("9780000000026").orElseThrow();
+        assertEquals(first.getId(), lines.get(0).getBookId());
+        assertNotNull(bookRepository.findByIsbn("0306406152").orElseThrow().getId());
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT count(*) FROM actions WHERE user_id = ? AND action = ?",
+                Integer.class, importer.getId(), ActionType.ADD_BOOK.name()));
+    }
+
+    @Test
+    void testImportLines_readsCsvByHeader() throws IOException {
+        List<BookImportLineDto> lines = new ArrayList<>();
+
+        BookImportResultDto result = bookImportService.importLines(json("""
+                isbn,Title,author,cover_url,status
+                9780000000033,"Dogs, Cats and ""Other"" Pets",Jane,http://example.com/1.jpg,
+                9780000000040,Lost,Jane,,LOST
+                9780000000057,No author,,,
+                """), BookImportFormat.CSV, importer(), lines::add);
+
+        assertEquals(new BookImportResultDto(3, 1, 0, 2), result);
+        assertEquals(List.of(2L, 3L, 4L), lines.stream().map(BookImportLineDto::getLine).toList());
+        Book book = bookRepository.findByIsbn("9780000000033").orElseThrow();
+        assertEquals("Dogs, Cats and \"Other\" Pets", book.getTitle());
+        assertEquals(BookStatus.AVAILABLE, book.getStatus());
+        assertEquals("Author is required", lines.get(2).getError());
+    }
+
+    @Test
+    void testImportLines_rejectsCsvWithoutRequiredColumns() {
+        assertThrows(IllegalArgumentException.class, () -> bookImportService.importLines(
+                json("title,isbn\nOne,9780000000033\n"), BookImportFormat.CSV, importer(), line -> {
+                }));
+    }
+
+    private User importer() {
+        return userRepository.save(User.builder()
+                .username("importer")
+                .password("password")
+                .email("importer@example.com")
+                .role(new Role(1, "ADMIN"))
+                .build());
+    }
+
+    private static InputStream json(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.booklending.service;
+
+import com.example.booklending.model.Book;
+import com.example.booklending.model.BookStatus;
+import com.example.booklending.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@Tag("unit")
+class BookSearchIndexTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    private BookSearchIndex bookSearchIndex;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(bookRepository.findAll(any(Specification.class), any(Sort.class), anyInt())).thenReturn(List.of(
+                new Book(1L, "The Hobbit", "J. R. R. Tolkien", "9780547928227", BookStatus.AVAILABLE, null),
+                new Book(2L, "The Lord of the Rings", "J. R. R. Tolkien", "9780544003415", BookStatus.RESERVED, null),
+                new Book(3L, "Dune", "Frank Herbert", "9780441172719", BookStatus.AVAILABLE, null),
+                new Book(4L, "Tolkien: A Biography", "Humphrey Carpenter", "9780618057023", BookStatus.LENT_OUT, null)
+        ));
+
+        bookSearchIndex = new BookSearchIndex(bookRepository, "memory");
+        bookSearchIndex.rebuild();
+    }
+
+    @Test
+    void testIsAvailable_onlyWhenEnabledAndBuilt() {
+        assertTrue(bookSearchIndex.isAvailable());
+
+        BookSearchIndex databaseBackend = new BookSearchIndex(bookRepository, "database");
+        databaseBackend.rebuild();
+        assertFalse(databaseBackend.isAvailable());
+    }
+
+    @Test
+    void testSearch_substringAcrossFields() {
+        BookSearchIndex.SearchResult result = bookSearchIndex.search("olkie", List.of(), "title", Sort.Direction.ASC, 0, 10);
+
+        assertEquals(3, result.getTotalElements());
+        assertEquals(List.of(1L, 2L, 4L), result.getIds());
+        assertEquals(List.of(3L), bookSearchIndex.search("0441", List.of(), "id", Sort.Direction.ASC, 0, 10).getIds());
+        assertEquals(List.of(3L), bookSearchIndex.search("du", List.of(), "id", Sort.Direction.ASC, 0, 10).getIds());
+    }
+
+    @Test
+    void testSearch_statusFilterSortAndPaging() {
+        BookSearchIndex.SearchResult result = bookSearchIndex.search(null, List.of(BookStatus.AVAILABLE, BookStatus.RESERVED),
+                "title", Sort.Direction.DESC, 1, 2);
+
+        assertEquals(3, result.getTotalElements());
+        assertEquals(List.of(1L, 3L), result.getIds());
+    }
+
+    @Test
+    void testSearch_pagesFollowTheFullOrder() {
+        List<Long> all = bookSearchIndex.search(null, List.of(), "author", Sort.Direction.ASC, 0, 10).getIds();
+        assertEquals(List.of(3L, 4L, 1L, 2L), all);
+
+        for (int offset = 0; offset < all.size(); offset++) {
+            BookSearchIndex.SearchResult page = bookSearchIndex.search(null, List.of(), "author", Sort.Direction.ASC, offset, 1);
+            assertEquals(4, page.getTotalElements());
+            assertEquals(List.of(all.get(offset)), page.getIds());
+        }
+        assertEquals(4, bookSearchIndex.search(null, List.of(), "author", Sort.Direction.ASC, 0, 0).getTotalElements());
+        assertTrue(bookSearchIndex.search(null, List.of(), "author", Sort.Direction.ASC, 4, 10).getIds().isEmpty());
+    }
+
+    @Test
+    void testSearch_relevanceRanksTitleMatchesFirst() {
+        BookSearchIndex.SearchResult result = bookSearchIndex.search("tolkien", List.of(), BookSearchIndex.RELEVANCE, Sort.Direction.DESC, 0, 10);
+
+        assertEquals(4L, result.getIds().get(0));
+        assertEquals(3, result.getIds().size());
+    }
+
+    @Test
+    void testPutAndRemove_keepIndexInSync() {
+        bookSearchIndex.put(new Book(5L, "Children of Dune", "Frank Herbert", "9780593098240", BookStatus.AVAILABLE, null));
+        bookSearchIndex.put(new Book(3L, "Dune", "Frank Herbert", "9780441172719", BookStatus.LENT_OUT, null));
+
+        assertEquals(List.of(3L, 5L), bookSearchIndex.search("dune", List.of(), "id", Sort.Direction.ASC, 0, 10).getIds());
+        assertEquals(List.of(5L), bookSearchIndex.search("dune", List.of(BookStatus.AVAILABLE), "id", Sort.Direction.ASC, 0, 10).getIds());
+
+        bookSearchIndex.remove(5L);
+
+        assertEquals(List.of(3L), bookSearchIndex.search("dune", List.of(), "id", Sort.Direction.ASC, 0, 10).getIds());
+    }
+
+    @Test
+    void testManyWrites_foldIntoTheIndexWithoutLosingAny() {
+        for (long id = 100; id < 1600; id++) {
+            bookSearchIndex.put(new Book(id, "Volume " + id, "Anonymous", "97800000" + id, BookStatus.AVAILABLE, null));
+        }
+        bookSearchIndex.remove(3L);
+        bookSearchIndex.put(new Book(1L, "The Hobbit", "J. R. R. Tolkien", "9780547928227", BookStatus.LENT_OUT, null));
+
+        BookSearchIndex.SearchResult volumes = bookSearchIndex.search("volume", List.of(), "id", Sort.Direction.ASC, 0, 2);
+        assertEquals(1500, volumes.getTotalElements());
+        assertEquals(List.of(100L, 101L), volumes.getIds());
+        assertEquals(List.of(), bookSearchIndex.search("dune", List.of(), "id", Sort.Direction.ASC, 0, 10).getIds());
+        assertEquals(List.of(1L), bookSearchIndex.search("hobbit", List.of(BookStatus.LENT_OUT), "id", Sort.Direction.ASC, 0, 10).getIds());
+        assertEquals(List.of(1599L), bookSearchIndex.search("volume 1599", List.of(), BookSearchIndex.RELEVANCE, Sort.Direction.DESC, 0, 10).getIds());
+    }
+
+    @Test
+    void testSearch_unknownSortProperty() {
+        assertThrows(IllegalArgumentException.class,
+                () -> bookSearchIndex.search(null, List.of(), "publisher", Sort.Direction.ASC, 0, 10));
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.booklending.service;
+
+import com.example.booklending.AbstractIntegrationTest;
+import com.example.booklending.dto.BookDto;
+import com.example.booklending.exception.ConflictException;
+import com.example.booklending.model.Book;
+import com.example.booklending.model.BookStatus;
+import com.example.booklending.model.Role;
+import com.example.booklending.model.User;
+import com.example.booklending.repository.BookRepository;
+import com.example.booklending.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.example.booklending.context.TestAuthentication.authenticateAs;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Updates of a book racing each other and the lending actions. Not transactional, since every update has to
+ * commit on its own for the others to see its version.
+ */
+@SpringBootTest
+@Tag("integration")
+public class BookServiceConcurrencyTest extends AbstractIntegrationTest {
+
+    private static final int UPDATES = 200;
+    private static final int THREADS = 16;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ActionService actionService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Book book;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+                .username("update-borrower")
+                .password("password")
+                .email("update-borrower@example.com")
+                .role(new Role(2, "USER"))
+                .build());
+        book = bookRepository.save(new Book(null, "Refactoring", "Martin Fowler", "9780134757599", BookStatus.AVAILABLE, null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        jdbcTemplate.update("DELETE FROM book_current_state WHERE book_id = ?", book.getId());
+        jdbcTemplate.update("DELETE FROM actions WHERE book_id = ?", book.getId());
+        bookRepository.deleteById(book.getId());
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    void testUpdateOfStaleVersion_isRejectedAndKeepsReservation() {
+        BookDto seenBeforeReservation = bookService.getBookById(book.getId()).orElseThrow();
+        authenticateAs(user);
+        actionService.reserveBook(user.getUsername(), book.getId());
+
+        seenBeforeReservation.setTitle("Refactoring, 2nd Edition");
+        assertThrows(ConflictException.class, () -> bookService.updateBook(book.getId(), seenBeforeReservation));
+        assertEquals("Refactoring", bookRepository.findById(book.getId()).orElseThrow().getTitle());
+
+        BookDto seenAfterReservation = bookService.getBookById(book.getId()).orElseThrow();
+        seenAfterReservation.setTitle("Refactoring, 2nd Edition");
+        BookDto updated = bookService.updateBook(book.getId(), seenAfterReservation).orElseThrow();
+
+        assertEquals("Refactoring, 2nd Edition", updated.getTitle());
+        assertEquals(BookStatus.RESERVED, updated.getStatus());
+        assertEquals(seenAfterReservation.getVersion() + 1, updated.getVersion());
+        assertEquals(BookStatus.RESERVED, bookRepository.findById(book.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void testSimultaneousUpdatesOfTheSameVersion_atMostOneWinsAndReservationIsKept() throws Exception {
+        BookDto seen = bookService.getBookById(book.getId()).orElseThrow();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger updated = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            futures.add(executor.submit(() -> {
+                start.await();
+                authenticateAs(user);
+                actionService.reserveBook(user.getUsername(), book.getId());
+                return null;
+            }));
+            for (int i = 0; i < UPDATES; i++) {
+                String title = "Refactoring #" + i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        BookDto update = new BookDto(seen.getId(), title, seen.getAuthor(), seen.getIsbn(),
+                                seen.getStatus(), null, seen.getVersion());
+                        if (bookService.updateBook(book.getId(), update).isPresent()) {
+                            updated.incrementAndGet();
+                        }
+                    } catch (ConflictException e) {
+                        conflicts.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Every update is based on the same version, so no update may overwrite another one
+        assertEquals(UPDATES, updated.get() + conflicts.get());
+        assertTrue(updated.get() <= 1);
+        Book result = bookRepository.findById(book.getId()).orElseThrow();
+        assertEquals(BookStatus.RESERVED, result.getStatus());
+        assertEquals(updated.get() == 1, result.getTitle().startsWith("Refactoring #"));
+    }
+}
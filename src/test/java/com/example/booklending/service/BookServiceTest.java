@@ -2,45 +2,70 @@ package com.example.booklending.service;
 
 import com.example.booklending.dto.BookDto;
 import com.example.booklending.exception.ConflictException;
+import com.example.booklending.mapper.BookMapper;
 import com.example.booklending.model.Action;
 import com.example.booklending.model.Book;
+import com.example.booklending.model.BookStatus;
 import com.example.booklending.model.PagedResponse;
+import com.example.booklending.model.Role;
 import com.example.booklending.model.User;
 import com.example.booklending.repository.ActionRepository;
 import com.example.booklending.repository.BookRepository;
-import com.example.booklending.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.modelmapper.ModelMapper;
+import org.mockito.Spy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Duration;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
+import static com.example.booklending.context.TestAuthentication.authenticateAs;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+@Tag("unit")
 class BookServiceTest {
 
     @Mock
-    private ModelMapper modelMapper;
+    private BookMapper bookMapper;
 
     @Mock
     private BookRepository bookRepository;
 
     @Mock
-    private UserRepository userRepository;
+    private ActionRepository actionRepository;
 
     @Mock
-    private ActionRepository actionRepository;
+    private BookSearchIndex bookSearchIndex;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private OptimisticLockRetry optimisticLockRetry =
+            new OptimisticLockRetry(mock(PlatformTransactionManager.class), meterRegistry, 3, Duration.ZERO, Duration.ZERO);
 
     @InjectMocks
     private BookService bookService;
@@ -50,18 +75,21 @@ class BookServiceTest {
         MockitoAnnotations.openMocks(this);
     }
 
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
     @Test
     void createBook_Success() {
         BookDto bookDto = new BookDto();
         bookDto.setIsbn("1234567890");
         Book book = new Book();
-        User user = new User();
-
-        when(userRepository.findByUsername(anyString())).thenReturn(Optional.of(user));
+        authenticateAs(User.builder().id(1L).username("username").role(new Role(1, "ADMIN")).build());
         when(bookRepository.findByIsbn(anyString())).thenReturn(Optional.empty());
-        when(modelMapper.map(any(BookDto.class), eq(Book.class))).thenReturn(book);
+        when(bookMapper.toEntity(any(BookDto.class))).thenReturn(book);
         when(bookRepository.save(any(Book.class))).thenReturn(book);
-        when(modelMapper.map(any(Book.class), eq(BookDto.class))).thenReturn(bookDto);
+        when(bookMapper.toDto(any(Book.class))).thenReturn(bookDto);
 
         Optional<BookDto> result = bookService.createBook(bookDto, "username");
 
@@ -73,9 +101,7 @@ class BookServiceTest {
     void createBook_AlreadyExists() {
         BookDto bookDto = new BookDto();
         bookDto.setIsbn("1234567890");
-        User user = new User();
-
-        when(userRepository.findByUsername(anyString())).thenReturn(Optional.of(user));
+        authenticateAs(User.builder().id(1L).username("username").role(new Role(1, "ADMIN")).build());
         when(bookRepository.findByIsbn(anyString())).thenReturn(Optional.of(new Book()));
 
         assertThrows(ConflictException.class, () -> bookService.createBook(bookDto, "username"));
@@ -84,41 +110,96 @@ class BookServiceTest {
     @Test
     void getBookById_Success() {
         Long bookId = 1L;
-        Book book = new Book();
         BookDto bookDto = new BookDto();
 
-        when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
-        when(modelMapper.map(book, BookDto.class)).thenReturn(bookDto);
+        when(bookRepository.findDtoById(bookId)).thenReturn(Optional.of(bookDto));
 
         Optional<BookDto> result = bookService.getBookById(bookId);
 
         assertTrue(result.isPresent());
         assertEquals(bookDto, result.get());
+        verify(bookRepository, never()).findById(any());
+        verifyNoInteractions(bookMapper);
     }
 
     @Test
     void updateBook_Success() {
         Long bookId = 1L;
-        BookDto bookDto = new BookDto();
-        Book book = new Book();
+        BookDto bookDto = new BookDto(bookId, "Title", "Author", "1234567890", BookStatus.AVAILABLE, null, 0L);
+        Book book = new Book(bookId, "Old title", "Author", "1234567890", BookStatus.AVAILABLE, null, 0L);
 
-        when(modelMapper.map(bookDto, Book.class)).thenReturn(book);
-        when(bookRepository.save(any(Book.class))).thenReturn(book);
-        when(modelMapper.map(book, BookDto.class)).thenReturn(bookDto);
+        when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
+        when(bookRepository.saveAndFlush(book)).thenReturn(book);
+        when(bookMapper.toDto(book)).thenReturn(bookDto);
 
         Optional<BookDto> result = bookService.updateBook(bookId, bookDto);
 
         assertTrue(result.isPresent());
         assertEquals(bookDto, result.get());
+        assertEquals("Title", book.getTitle());
+    }
+
+    @Test
+    void updateBook_KeepsStatus() {
+        Long bookId = 1L;
+        BookDto bookDto = new BookDto(bookId, "Title", "Author", "1234567890", BookStatus.AVAILABLE, null, 3L);
+        Book book = new Book(bookId, "Old title", "Author", "1234567890", BookStatus.RESERVED, null, 3L);
+
+        when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
+        when(bookRepository.saveAndFlush(book)).thenReturn(book);
+        when(bookMapper.toDto(book)).thenReturn(bookDto);
+
+        bookService.updateBook(bookId, bookDto);
+
+        assertEquals("Title", book.getTitle());
+        assertEquals(BookStatus.RESERVED, book.getStatus());
+    }
+
+    @Test
+    void updateBook_RequiresVersion() {
+        Long bookId = 1L;
+        BookDto bookDto = new BookDto(bookId, "Title", "Author", "1234567890", BookStatus.AVAILABLE, null);
+
+        assertThrows(IllegalArgumentException.class, () -> bookService.updateBook(bookId, bookDto));
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void updateBook_ConflictWhenVersionIsStale() {
+        Long bookId = 1L;
+        BookDto bookDto = new BookDto(bookId, "Title", "Author", "1234567890", BookStatus.AVAILABLE, null, 1L);
+        Book book = new Book(bookId, "Old title", "Author", "1234567890", BookStatus.RESERVED, null, 2L);
+
+        when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
+
+        assertThrows(ConflictException.class, () -> bookService.updateBook(bookId, bookDto));
+        assertEquals("Old title", book.getTitle());
+        verify(bookRepository, times(1)).findById(bookId);
+        verify(bookRepository, never()).saveAndFlush(any());
+        assertEquals(1, meterRegistry.counter("optimistic.lock.conflicts", "operation", "updateBook").count());
+        assertEquals(0, meterRegistry.counter("optimistic.lock.retries", "operation", "updateBook").count());
+    }
+
+    @Test
+    void updateBook_ConflictWithoutRetryWhenRowChangesDuringUpdate() {
+        Long bookId = 1L;
+        BookDto bookDto = new BookDto(bookId, "Title", "Author", "1234567890", BookStatus.AVAILABLE, null, 0L);
+        Book book = new Book(bookId, "Old title", "Author", "1234567890", BookStatus.AVAILABLE, null, 0L);
+
+        when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
+        when(bookRepository.saveAndFlush(book)).thenThrow(new ObjectOptimisticLockingFailureException(Book.class, bookId));
+
+        assertThrows(ConflictException.class, () -> bookService.updateBook(bookId, bookDto));
+        verify(bookRepository, times(1)).saveAndFlush(book);
+        assertEquals(1, meterRegistry.counter("optimistic.lock.conflicts", "operation", "updateBook").count());
+        assertEquals(0, meterRegistry.counter("optimistic.lock.retries", "operation", "updateBook").count());
     }
 
     @Test
     void deleteBook_Success() {
         Long bookId = 1L;
-        User user = new User();
         Book book = new Book();
-
-        when(userRepository.findByUsername(anyString())).thenReturn(Optional.of(user));
+        authenticateAs(User.builder().id(1L).username("username").role(new Role(1, "ADMIN")).build());
         when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
 
         assertDoesNotThrow(() -> bookService.deleteBook(bookId, "username"));
@@ -130,9 +211,7 @@ class BookServiceTest {
     @Test
     void deleteBook_NotFound() {
         Long bookId = 1L;
-        User user = new User();
-
-        when(userRepository.findByUsername(anyString())).thenReturn(Optional.of(user));
+        authenticateAs(User.builder().id(1L).username("username").role(new Role(1, "ADMIN")).build());
         when(bookRepository.findById(bookId)).thenReturn(Optional.empty());
 
         assertThrows(EntityNotFoundException.class, () -> bookService.deleteBook(bookId, "username"));
@@ -141,15 +220,144 @@ class BookServiceTest {
     @Test
     void getBooks_Success() {
         BookDto bookDto = new BookDto();
-        Page<Book> bookPage = new PageImpl<>(Collections.singletonList(new Book()));
+        Page<BookDto> bookPage = new PageImpl<>(Collections.singletonList(bookDto));
 
-        when(bookRepository.findAll(any(Specification.class), any(Pageable.class))).thenReturn(bookPage);
-        when(modelMapper.map(any(Book.class), eq(BookDto.class))).thenReturn(bookDto);
+        when(bookRepository.findPage(any(Specification.class), any(Pageable.class))).thenReturn(bookPage);
 
-        PagedResponse<BookDto> result = bookService.getBooks("query", "0", "10", "title", "asc", "AVAILABLE");
+        PagedResponse<BookDto> result = bookService.getBooks("query", "0", "10", "title", "asc", "AVAILABLE", null, "substring", "exact");
 
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
         assertEquals(bookDto, result.getContent().get(0));
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void getBooks_FirstCursorPage() {
+        Book first = new Book(1L, "Alpha", "Author", "1111111111", BookStatus.AVAILABLE, null);
+        Book second = new Book(2L, "Beta", "Author", "2222222222", BookStatus.AVAILABLE, null);
+        Book third = new Book(3L, "Gamma", "Author", "3333333333", BookStatus.AVAILABLE, null);
+
+        when(bookRepository.findAll(any(Specification.class), any(Sort.class), eq(3))).thenReturn(List.of(first, second, third));
+        when(bookMapper.toDto(any(Book.class))).thenReturn(new BookDto());
+
+        PagedResponse<BookDto> result = bookService.getBooks(null, "0", "2", "title", "asc", "", "", "substring", "exact");
+
+        assertEquals(2, result.getContent().size());
+        assertFalse(result.isLast());
+        assertEquals(-1, result.getTotalElements());
+        assertNotNull(result.getNextCursor());
+        verify(bookRepository, never()).findPage(any(Specification.class), any(Pageable.class));
+    }
+
+    @Test
+    void getBooks_NextCursorPage() {
+        Book last = new Book(2L, "Beta", "Author", "2222222222", BookStatus.AVAILABLE, null);
+        String cursor = BookCursor.after(last, "title", Sort.Direction.ASC).encode();
+        Book tie = new Book(5L, "Beta", "Author", "5555555555", BookStatus.AVAILABLE, null);
+        Book next = new Book(3L, "Gamma", "Author", "3333333333", BookStatus.AVAILABLE, null);
+
+        when(bookRepository.findAll(any(Specification.class), eq(Sort.by(Sort.Direction.ASC, "id")), eq(3))).thenReturn(List.of(tie));
+        when(bookRepository.findAll(any(Specification.class), eq(Sort.by(Sort.Direction.ASC, "title", "id")), eq(2))).thenReturn(List.of(next));
+        when(bookMapper.toDto(any(Book.class))).thenReturn(new BookDto());
+
+        PagedResponse<BookDto> result = bookService.getBooks(null, "0", "2", "title", "asc", "", cursor, "substring", "exact");
+
+        assertEquals(2, result.getContent().size());
+        assertTrue(result.isLast());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void getBooks_CursorForDifferentSortIsRejected() {
+        Book last = new Book(2L, "Beta", "Author", "2222222222", BookStatus.AVAILABLE, null);
+        String cursor = BookCursor.after(last, "title", Sort.Direction.ASC).encode();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> bookService.getBooks(null, "0", "2", "author", "asc", "", cursor, "substring", "exact"));
+        assertThrows(IllegalArgumentException.class,
+                () -> bookService.getBooks(null, "0", "2", "coverUrl", "asc", "", "", "substring", "exact"));
+    }
+
+    @Test
+    void getBooks_FullTextSearch() {
+        Book book = new Book(1L, "The Hobbit", "J. R. R. Tolkien", "9780547928227", BookStatus.AVAILABLE, null);
+        when(bookRepository.searchFullText(eq("hobbit tolkien"), eq(List.of("AVAILABLE")), eq(PageRequest.of(0, 10))))
+                .thenReturn(new PageImpl<>(List.of(book)));
+        when(bookMapper.toDto(any(Book.class))).thenReturn(new BookDto());
+
+        PagedResponse<BookDto> result = bookService.getBooks(" hobbit tolkien ", "0", "10", "title", "asc", "AVAILABLE", null, "fulltext", "exact");
+
+        assertEquals(1, result.getContent().size());
+        verify(bookRepository, never()).findPage(any(Specification.class), any(Pageable.class));
+    }
+
+    @Test
+    void getBooks_WithoutCount() {
+        Slice<BookDto> slice = new SliceImpl<>(List.of(new BookDto()), PageRequest.of(3, 1, Sort.by("title")), true);
+        when(bookRepository.findSlice(any(Specification.class), any(Pageable.class))).thenReturn(slice);
+
+        PagedResponse<BookDto> result = bookService.getBooks(null, "3", "1", "title", "asc", "", null, "substring", "none");
+
+        assertEquals(1, result.getContent().size());
+        assertFalse(result.isLast());
+        assertEquals(-1, result.getTotalElements());
+        verify(bookRepository, never()).findPage(any(Specification.class), any(Pageable.class));
+        verify(bookRepository, never()).estimateCount(any(), any());
+    }
+
+    @Test
+    void getBooks_EstimatedCount() {
+        Slice<BookDto> slice = new SliceImpl<>(List.of(new BookDto()), PageRequest.of(0, 1, Sort.by("title")), true);
+        when(bookRepository.findSlice(any(Specification.class), any(Pageable.class))).thenReturn(slice);
+        when(bookRepository.estimateCount("%100\\%%", List.of(BookStatus.AVAILABLE))).thenReturn(40L);
+
+        PagedResponse<BookDto> result = bookService.getBooks("100%", "0", "1", "title", "asc", "AVAILABLE", null, "substring", "estimate");
+
+        assertEquals(40, result.getTotalElements());
+        assertEquals(40, result.getTotalPages());
+        verify(bookRepository, never()).findPage(any(Specification.class), any(Pageable.class));
+    }
+
+    @Test
+    void getBooks_EstimatedCountIsExactOnLastPage() {
+        Slice<BookDto> slice = new SliceImpl<>(List.of(new BookDto()), PageRequest.of(2, 10, Sort.by("title")), false);
+        when(bookRepository.findSlice(any(Specification.class), any(Pageable.class))).thenReturn(slice);
+
+        PagedResponse<BookDto> result = bookService.getBooks(null, "2", "10", "title", "asc", "", null, "substring", "estimate");
+
+        assertEquals(21, result.getTotalElements());
+        assertTrue(result.isLast());
+        verify(bookRepository, never()).estimateCount(any(), any());
+    }
+
+    @Test
+    void getBooks_UnknownSearchModeIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> bookService.getBooks("hobbit", "0", "10", "title", "asc", "", null, "fuzzy", "exact"));
+        assertThrows(IllegalArgumentException.class,
+                () -> bookService.getBooks("hobbit", "0", "10", "title", "asc", "", null, "substring", "approximate"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void containsText_EscapesLikeWildcards() {
+        Root<Book> root = mock(Root.class);
+        CriteriaQuery<?> query = mock(CriteriaQuery.class);
+        CriteriaBuilder criteriaBuilder = mock(CriteriaBuilder.class);
+
+        BookService.containsText("  100%_Done\\ ").toPredicate(root, query, criteriaBuilder);
+
+        verify(criteriaBuilder, times(3)).like(any(), eq("%100\\%\\_done\\\\%"), eq('\\'));
+    }
+
+    @Test
+    void bookCursor_RoundTrip() {
+        Book book = new Book(42L, "Title:\nwith separators", "Author", "4242424242", BookStatus.RESERVED, null);
+
+        BookCursor decoded = BookCursor.decode(BookCursor.after(book, "title", Sort.Direction.DESC).encode(), "title", Sort.Direction.DESC);
+
+        assertEquals(42L, decoded.getId());
+        assertEquals("Title:\nwith separators", decoded.getValue());
     }
 }
\ No newline at end of file
@@ -0,0 +1,181 @@
+package com.example.booklending.service;
+
+import com.example.booklending.AbstractIntegrationTest;
+import com.example.booklending.dto.BulkActionItemDto;
+import com.example.booklending.dto.BulkActionResultDto;
+import com.example.booklending.model.ActionType;
+import com.example.booklending.model.Book;
+import com.example.booklending.model.BookCurrentState;
+import com.example.booklending.model.BookStatus;
+import com.example.booklending.model.BulkMode;
+import com.example.booklending.model.BulkOutcome;
+import com.example.booklending.model.Role;
+import com.example.booklending.model.User;
+import com.example.booklending.repository.ActionRepository;
+import com.example.booklending.repository.BookCurrentStateRepository;
+import com.example.booklending.repository.BookRepository;
+import com.example.booklending.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static com.example.booklending.context.TestAuthentication.authenticateAs;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Tag("integration")
+@Transactional
+public class BulkActionServiceTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private BulkActionService bulkActionService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ActionRepository actionRepository;
+
+    @Autowired
+    private BookCurrentStateRepository bookCurrentStateRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private User borrower;
+    private User admin;
+
+    @BeforeEach
+    void setUp() {
+        borrower = userRepository.save(User.builder()
+                .username("bulk-borrower")
+                .password("password")
+                .email("bulk-borrower@example.com")
+                .role(new Role(2, "USER"))
+                .build());
+        admin = userRepository.save(User.builder()
+                .username("bulk-admin")
+                .password("password")
+                .email("bulk-admin@example.com")
+                .role(new Role(1, "ADMIN"))
+                .build());
+        authenticateAs(borrower);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testFullLendingCycle_inBulk() {
+        List<Long> ids = List.of(book("9780000000031"), book("9780000000032"), book("9780000000033"));
+
+        assertAllDone(bulkActionService.reserveBooks(borrower.getUsername(), ids, BulkMode.ALL_OR_NOTHING));
+        assertAllDone(bulkActionService.markAsLentOut(ids, BulkMode.ALL_OR_NOTHING));
+        assertAllDone(bulkActionService.markAsReceived(borrower.getUsername(), ids, BulkMode.ALL_OR_NOTHING));
+        assertAllDone(bulkActionService.markAsReturned(borrower.getUsername(), ids, BulkMode.ALL_OR_NOTHING));
+        authenticateAs(admin);
+        assertAllDone(bulkActionService.markAsReturned(admin.getUsername(), ids, BulkMode.ALL_OR_NOTHING));
+        entityManager.clear();
+
+        for (Long id : ids) {
+            assertEquals(BookStatus.AVAILABLE, bookRepository.findById(id).orElseThrow().getStatus());
+            assertEquals(1, actionRepository.findByBookIdAndAction(id, ActionType.LENT_OUT_BOOK).size());
+            BookCurrentState state = bookCurrentStateRepository.findById(id).orElseThrow();
+            assertNull(state.getHolderId());
+            assertNull(state.getLoanActionId());
+        }
+    }
+
+    @Test
+    void testReserveBooks_bestEffortKeepsTheBooksThatCouldBeReserved() {
+        Long available = book("9780000000034");
+        Long reserved = book("9780000000035");
+        bulkActionService.reserveBooks(borrower.getUsername(), List.of(reserved), BulkMode.BEST_EFFORT);
+
+        BulkActionResultDto result = bulkActionService.reserveBooks(borrower.getUsername(), List.of(available, reserved, -1L, available), BulkMode.BEST_EFFORT);
+        entityManager.clear();
+
+        assertTrue(result.isCommitted());
+        assertEquals(1, result.getSucceeded());
+        assertEquals(2, result.getFailed());
+        assertEquals(List.of(BulkOutcome.DONE, BulkOutcome.CONFLICT, BulkOutcome.NOT_FOUND),
+                result.getResults().stream().map(BulkActionItemDto::getOutcome).toList());
+        assertNotNull(result.getResults().get(0).getActionId());
+        assertEquals(BookStatus.RESERVED, bookRepository.findById(available).orElseThrow().getStatus());
+        assertEquals(borrower.getId(), bookCurrentStateRepository.findById(available).orElseThrow().getHolderId());
+    }
+
+    @Test
+    void testMarkAsLentOut_allOrNothingRollsBackOnAnyFailure() {
+        Long reserved = book("9780000000036");
+        Long available = book("9780000000037");
+        bulkActionService.reserveBooks(borrower.getUsername(), List.of(reserved), BulkMode.BEST_EFFORT);
+
+        BulkActionResultDto result = bulkActionService.markAsLentOut(List.of(reserved, available), BulkMode.ALL_OR_NOTHING);
+        entityManager.clear();
+
+        assertFalse(result.isCommitted());
+        assertEquals(0, result.getSucceeded());
+        assertEquals(BulkOutcome.ROLLED_BACK, result.getResults().get(0).getOutcome());
+        assertEquals(BulkOutcome.CONFLICT, result.getResults().get(1).getOutcome());
+        assertEquals(BookStatus.RESERVED, bookRepository.findById(reserved).orElseThrow().getStatus());
+        assertTrue(actionRepository.findByBookIdAndAction(reserved, ActionType.LENT_OUT_BOOK).isEmpty());
+    }
+
+    @Test
+    void testMarkAsLentOut_reportsReservedBookWithoutReservation() {
+        Long reserved = bookRepository.save(new Book(null, "Reserved elsewhere", "Author", "9780000000038", BookStatus.RESERVED, null)).getId();
+        entityManager.flush();
+
+        BulkActionResultDto result = bulkActionService.markAsLentOut(List.of(reserved), BulkMode.BEST_EFFORT);
+
+        assertEquals(BulkOutcome.NOT_FOUND, result.getResults().get(0).getOutcome());
+        assertEquals("Reservation not found", result.getResults().get(0).getMessage());
+    }
+
+    @Test
+    void testLentOutAndReceived_rebuildStateFromHistoryWhenTheRowIsMissing() {
+        Long id = book("9780000000039");
+        assertAllDone(bulkActionService.reserveBooks(borrower.getUsername(), List.of(id), BulkMode.ALL_OR_NOTHING));
+        bookCurrentStateRepository.deleteById(id);
+        entityManager.flush();
+
+        assertAllDone(bulkActionService.markAsLentOut(List.of(id), BulkMode.ALL_OR_NOTHING));
+        entityManager.clear();
+        BookCurrentState state = bookCurrentStateRepository.findById(id).orElseThrow();
+        assertEquals(borrower.getId(), state.getHolderId());
+        assertNotNull(state.getLoanActionId());
+
+        bookCurrentStateRepository.deleteById(id);
+        entityManager.flush();
+
+        assertAllDone(bulkActionService.markAsReceived(borrower.getUsername(), List.of(id), BulkMode.ALL_OR_NOTHING));
+        entityManager.clear();
+        assertEquals(BookStatus.BORROWED, bookRepository.findById(id).orElseThrow().getStatus());
+    }
+
+    private Long book(String isbn) {
+        Long id = bookRepository.save(new Book(null, "Bulk " + isbn, "Author", isbn, BookStatus.AVAILABLE, null)).getId();
+        entityManager.flush();
+        return id;
+    }
+
+    private static void assertAllDone(BulkActionResultDto result) {
+        assertTrue(result.isCommitted());
+        assertEquals(0, result.getFailed());
+        result.getResults().forEach(item -> assertEquals(BulkOutcome.DONE, item.getOutcome(), item.getMessage()));
+    }
+}
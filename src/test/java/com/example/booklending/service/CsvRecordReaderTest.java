@@ -0,0 +1,49 @@
+package com.example.booklending.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Tag("unit")
+class CsvRecordReaderTest {
+
+    @Test
+    void readsPlainAndQuotedFields() throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader(
+                "title,author\r\n\"Dogs, Cats and \"\"Other\"\" Pets\",Jane\nLast,\n"));
+
+        assertEquals(List.of("title", "author"), reader.read());
+        assertEquals(1, reader.recordLine());
+        assertEquals(List.of("Dogs, Cats and \"Other\" Pets", "Jane"), reader.read());
+        assertEquals(2, reader.recordLine());
+        assertEquals(List.of("Last", ""), reader.read());
+        assertEquals(3, reader.recordLine());
+        assertNull(reader.read());
+    }
+
+    @Test
+    void countsLinesInsideQuotedFields() throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader("\"Two\nlines\",a\nnext,b"));
+
+        assertEquals(List.of("Two\nlines", "a"), reader.read());
+        assertEquals(1, reader.recordLine());
+        assertEquals(List.of("next", "b"), reader.read());
+        assertEquals(3, reader.recordLine());
+        assertNull(reader.read());
+    }
+
+    @Test
+    void rejectsUnclosedQuotedField() throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader("ok\n\"never closed,x\n"));
+
+        assertEquals(List.of("ok"), reader.read());
+        assertThrows(IOException.class, reader::read);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.booklending.service;
+
+import com.example.booklending.AbstractIntegrationTest;
+import com.example.booklending.dto.OverdueLoanDto;
+import com.example.booklending.model.Book;
+import com.example.booklending.model.BookStatus;
+import com.example.booklending.model.Role;
+import com.example.booklending.model.User;
+import com.example.booklending.repository.BookRepository;
+import com.example.booklending.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.booklending.context.TestAuthentication.authenticateAs;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@Tag("integration")
+@Transactional
+public class OverdueLoanServiceTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private OverdueLoanService overdueLoanService;
+
+    @Autowired
+    private ActionService actionService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+                .username("late-borrower")
+                .password("password")
+                .email("late-borrower@example.com")
+                .role(new Role(2, "USER"))
+                .build());
+        authenticateAs(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testStreamOverdue_listsOnlyLoansPastTheirDueDate() {
+        Book late = lend("Late", "9780000000021");
+        Book later = lend("Later", "9780000000022");
+        lend("On time", "9780000000023");
+        jdbcTemplate.update("UPDATE book_current_state SET due_date = now() - interval '3 days' WHERE book_id = ?", late.getId());
+        jdbcTemplate.update("UPDATE book_current_state SET due_date = now() - interval '10 days' WHERE book_id = ?", later.getId());
+
+        List<OverdueLoanDto> overdue = new ArrayList<>();
+        overdueLoanService.streamOverdue(LocalDateTime.now(), overdue::add);
+
+        assertEquals(List.of(later.getId(), late.getId()), overdue.stream().map(OverdueLoanDto::getBookId).toList());
+        assertEquals("late-borrower", overdue.get(0).getHolderUsername());
+        assertEquals(10, overdue.get(0).getDaysOverdue());
+    }
+
+    @Test
+    void testDetect_updatesGauges() {
+        Book late = lend("Late", "9780000000024");
+        lend("On time", "9780000000025");
+        jdbcTemplate.update("UPDATE book_current_state SET due_date = now() - interval '5 days' WHERE book_id = ?", late.getId());
+        long activeBefore = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM book_current_state WHERE loan_action_id IS NOT NULL AND due_date < now()", Long.class);
+
+        overdueLoanService.detect();
+
+        assertEquals(activeBefore, (long) meterRegistry.get("loans.overdue").gauge().value());
+        assertEquals(5, (long) meterRegistry.get("loans.overdue.max.days").gauge().value());
+    }
+
+    private Book lend(String title, String isbn) {
+        Book book = bookRepository.save(new Book(null, title, "Author", isbn, BookStatus.AVAILABLE, null));
+        actionService.reserveBook(user.getUsername(), book.getId());
+        actionService.markAsLentOut(book.getId());
+        entityManager.flush();
+        return book;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.booklending.service;
+
+import com.example.booklending.AbstractIntegrationTest;
+import com.example.booklending.model.ActionType;
+import com.example.booklending.model.Book;
+import com.example.booklending.model.BookCurrentState;
+import com.example.booklending.model.BookStatus;
+import com.example.booklending.model.Role;
+import com.example.booklending.model.User;
+import com.example.booklending.repository.ActionRepository;
+import com.example.booklending.repository.BookCurrentStateRepository;
+import com.example.booklending.repository.BookRepository;
+import com.example.booklending.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+import static com.example.booklending.context.TestAuthentication.authenticateAs;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Tag("integration")
+@Transactional
+public class ReservationExpiryServiceTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private ReservationExpiryService reservationExpiryService;
+
+    @Autowired
+    private ActionService actionService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ActionRepository actionRepository;
+
+    @Autowired
+    private BookCurrentStateRepository bookCurrentStateRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+                .username("expiring-borrower")
+                .password("password")
+                .email("expiring-borrower@example.com")
+                .role(new Role(2, "USER"))
+                .build());
+        authenticateAs(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testExpireDue_releasesOnlyOverdueReservations() {
+        Book overdue = reserve("Overdue", "9780000000011");
+        Book current = reserve("Current", "9780000000012");
+        jdbcTemplate.update("UPDATE book_current_state SET due_date = now() - interval '1 minute' WHERE book_id = ?", overdue.getId());
+
+        int expired = reservationExpiryService.expireDue(LocalDateTime.now());
+        entityManager.clear();
+
+        assertEquals(1, expired);
+        assertEquals(BookStatus.AVAILABLE, bookRepository.findById(overdue.getId()).orElseThrow().getStatus());
+        assertEquals(BookStatus.RESERVED, bookRepository.findById(current.getId()).orElseThrow().getStatus());
+        assertEquals(1, actionRepository.findByBookIdAndAction(overdue.getId(), ActionType.CANCEL_BOOK_RESERVATION).size());
+        BookCurrentState state = bookCurrentStateRepository.findById(overdue.getId()).orElseThrow();
+        assertNull(state.getReservationActionId());
+        assertNull(state.getHolderId());
+    }
+
+    @Test
+    void testExpireDue_runsInBatchesUntilNothingIsDue() {
+        for (int i = 0; i < 250; i++) {
+            reserve("Batch " + i, String.format("978100%07d", i));
+        }
+        jdbcTemplate.update("UPDATE book_current_state SET due_date = now() - interval '1 minute' WHERE holder_id = ?", user.getId());
+
+        assertEquals(250, reservationExpiryService.expireDue(LocalDateTime.now()));
+        assertEquals(0, reservationExpiryService.expireDue(LocalDateTime.now()));
+    }
+
+    @Test
+    void testExpireDue_leavesLentOutBooksAlone() {
+        Book lentOut = reserve("Lent out", "9780000000013");
+        actionService.markAsLentOut(lentOut.getId());
+        entityManager.flush();
+        jdbcTemplate.update("UPDATE book_current_state SET due_date = now() - interval '1 minute' WHERE book_id = ?", lentOut.getId());
+
+        assertEquals(0, reservationExpiryService.expireDue(LocalDateTime.now()));
+    }
+
+    private Book reserve(String title, String isbn) {
+        Book book = bookRepository.save(new Book(null, title, "Author", isbn, BookStatus.AVAILABLE, null));
+        actionService.reserveBook(user.getUsername(), book.getId());
+        entityManager.flush();
+        return book;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.booklending.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@Tag("unit")
+class TimerWheelTest {
+
+    private static final Instant START = Instant.parse("2024-09-01T12:00:00Z");
+
+    @Test
+    void expire_reportsDeadlinesOnlyOnceTheyHavePassed() {
+        TimerWheel timerWheel = new TimerWheel(Duration.ofSeconds(1), 60, START);
+        timerWheel.schedule(START.plusSeconds(5));
+        timerWheel.schedule(START.plusMillis(5_500));
+
+        assertEquals(0, timerWheel.expire(START.plusSeconds(4)));
+        assertEquals(1, timerWheel.expire(START.plusSeconds(5)));
+        assertEquals(0, timerWheel.expire(START.plusMillis(5_900)));
+        assertEquals(1, timerWheel.expire(START.plusSeconds(6)));
+        assertEquals(0, timerWheel.size());
+    }
+
+    @Test
+    void expire_keepsDeadlinesOfLaterLapsInTheirBucket() {
+        TimerWheel timerWheel = new TimerWheel(Duration.ofSeconds(1), 10, START);
+        timerWheel.schedule(START.plusSeconds(3));
+        timerWheel.schedule(START.plusSeconds(13));
+
+        assertEquals(1, timerWheel.expire(START.plusSeconds(3)));
+        assertEquals(0, timerWheel.expire(START.plusSeconds(12)));
+        assertEquals(1, timerWheel.expire(START.plusSeconds(13)));
+    }
+
+    @Test
+    void expire_catchesUpAfterMoreThanALap() {
+        TimerWheel timerWheel = new TimerWheel(Duration.ofSeconds(1), 10, START);
+        for (int i = 1; i <= 25; i++) {
+            timerWheel.schedule(START.plusSeconds(i));
+        }
+
+        assertEquals(25, timerWheel.expire(START.plusSeconds(100)));
+        assertEquals(0, timerWheel.size());
+    }
+
+    @Test
+    void schedule_pastDeadlineIsDueAtTheNextExpire() {
+        TimerWheel timerWheel = new TimerWheel(Duration.ofSeconds(1), 10, START);
+        timerWheel.expire(START.plusSeconds(10));
+
+        timerWheel.schedule(START.plusSeconds(2));
+
+        assertEquals(1, timerWheel.expire(START.plusSeconds(10)));
+    }
+}
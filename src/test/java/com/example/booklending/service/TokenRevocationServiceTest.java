@@ -0,0 +1,93 @@
+package com.example.booklending.service;
+
+import com.example.booklending.configuration.JwtUtil;
+import com.example.booklending.model.RevokedToken;
+import com.example.booklending.repository.RevokedTokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@Tag("unit")
+class TokenRevocationServiceTest {
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    private TokenRevocationService tokenRevocationService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        tokenRevocationService = new TokenRevocationService(revokedTokenRepository, 86400000, 1000);
+    }
+
+    @Test
+    void revokeToken_isVisibleImmediatelyAndPersisted() {
+        Instant expiresAt = Instant.now().plusSeconds(3600);
+
+        tokenRevocationService.revokeToken("digest", expiresAt);
+
+        assertTrue(tokenRevocationService.isRevoked("digest", "user1", Instant.now()));
+        assertFalse(tokenRevocationService.isRevoked("other", "user1", Instant.now()));
+        verify(revokedTokenRepository).upsert(eq("token:digest"), any(LocalDateTime.class), eq(LocalDateTime.ofInstant(expiresAt, ZoneId.systemDefault())));
+    }
+
+    @Test
+    void revokeAllForUser_onlyAffectsTokensIssuedBefore() {
+        Instant issuedBefore = Instant.now().minusSeconds(60);
+
+        tokenRevocationService.revokeAllForUser("user1");
+
+        assertTrue(tokenRevocationService.isRevoked("digest", "user1", issuedBefore));
+        assertFalse(tokenRevocationService.isRevoked("digest", "user1", Instant.now().plusSeconds(1)));
+        assertFalse(tokenRevocationService.isRevoked("digest", "user2", issuedBefore));
+    }
+
+    @Test
+    void revokeAllForUser_revokesTokenIssuedEarlierInTheSameSecond() {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secretKey", "testSecretKey");
+        ReflectionTestUtils.setField(jwtUtil, "expirationTime", 86400000L);
+        String token = jwtUtil.generateToken("user1", Optional.empty());
+        // the iat claim only has whole seconds
+        Instant issuedAt = jwtUtil.extractClaims(token).getIssuedAt().toInstant();
+
+        tokenRevocationService.revokeAllForUser("user1");
+
+        assertTrue(tokenRevocationService.isRevoked(JwtUtil.digest(token), "user1", issuedAt));
+        assertTrue(tokenRevocationService.isRevoked("digest", "user1", issuedAt.minusSeconds(1)));
+        Instant nextSecond = Instant.now().truncatedTo(ChronoUnit.SECONDS).plusSeconds(1);
+        assertFalse(tokenRevocationService.isRevoked("digest", "user1", nextSecond));
+    }
+
+    @Test
+    void rebuild_loadsRevocationsFromTheTableAndPurgesExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        when(revokedTokenRepository.findAll()).thenReturn(List.of(
+                new RevokedToken(1L, "token:digest", now.minusMinutes(1), now.plusHours(1)),
+                new RevokedToken(2L, "user:user1", now.minusMinutes(1), now.plusHours(1))));
+
+        tokenRevocationService.rebuild();
+
+        verify(revokedTokenRepository).deleteExpired(any(LocalDateTime.class));
+        assertTrue(tokenRevocationService.isRevoked("digest", "user2", Instant.now()));
+        assertTrue(tokenRevocationService.isRevoked("other", "user1", Instant.now().minusSeconds(120)));
+        assertFalse(tokenRevocationService.isRevoked("other", "user2", Instant.now()));
+    }
+}
@@ -1,7 +1,9 @@
 package com.example.booklending.service;
 
+import com.example.booklending.configuration.ActingUser;
 import com.example.booklending.dto.UserDto;
 import com.example.booklending.exception.ConflictException;
+import com.example.booklending.mapper.UserMapper;
 import com.example.booklending.model.Role;
 import com.example.booklending.model.User;
 import com.example.booklending.repository.UserRepository;
@@ -12,8 +14,10 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
 import java.util.ArrayList;
@@ -22,6 +26,7 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -32,7 +37,13 @@ class UserServiceTest {
     private UserRepository userRepository;
 
     @Mock
-    private ModelMapper modelMapper;
+    private UserMapper userMapper;
+
+    @Mock
+    private UserVersionRegistry userVersionRegistry;
+
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager(UserRepository.USERS_BY_USERNAME_CACHE, UserRepository.USERS_BY_ID_CACHE);
 
     @InjectMocks
     private UserService userService;
@@ -61,9 +72,9 @@ class UserServiceTest {
 
     @Test
     void createUser_shouldReturnCreatedUserDto() {
-        when(modelMapper.map(userDto, User.class)).thenReturn(user);
+        when(userMapper.toEntity(userDto)).thenReturn(user);
         when(userRepository.save(user)).thenReturn(user);
-        when(modelMapper.map(user, UserDto.class)).thenReturn(userDto);
+        when(userMapper.toDto(user)).thenReturn(userDto);
 
         Optional<UserDto> result = userService.createUser(userDto);
 
@@ -90,7 +101,7 @@ class UserServiceTest {
     @Test
     void createUser_shouldReturnEmptyOptionalOnGeneralException() {
         when(userRepository.save(any(User.class))).thenThrow(new RuntimeException("Unexpected error"));
-        when(modelMapper.map(userDto, User.class)).thenReturn(user);
+        when(userMapper.toEntity(userDto)).thenReturn(user);
 
         Optional<UserDto> result = userService.createUser(userDto);
 
@@ -100,7 +111,7 @@ class UserServiceTest {
     @Test
     void getUserById_shouldReturnUserDtoWhenUserExists() {
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(modelMapper.map(user, UserDto.class)).thenReturn(userDto);
+        when(userMapper.toDto(user)).thenReturn(userDto);
 
         Optional<UserDto> result = userService.getUserById(1L);
 
@@ -120,8 +131,8 @@ class UserServiceTest {
     @Test
     void updateUser_shouldReturnUpdatedUserDto() {
         when(userRepository.save(any(User.class))).thenReturn(user);
-        when(modelMapper.map(userDto, User.class)).thenReturn(user);
-        when(modelMapper.map(user, UserDto.class)).thenReturn(userDto);
+        when(userMapper.toEntity(userDto)).thenReturn(user);
+        when(userMapper.toDto(user)).thenReturn(userDto);
 
         Optional<UserDto> result = userService.updateUser(1L, userDto);
 
@@ -129,9 +140,53 @@ class UserServiceTest {
         verify(userRepository).save(user);
     }
 
+    @Test
+    void updateUser_shouldInvalidateTokensWhenRoleChanges() {
+        User stored = User.builder().id(1L).username("testuser").role(new Role(2, "USER")).build();
+        when(userRepository.findById(1L)).thenReturn(Optional.of(stored));
+        when(userRepository.save(any(User.class))).thenReturn(user);
+        when(userMapper.toEntity(userDto)).thenReturn(user);
+        when(userMapper.toDto(user)).thenReturn(userDto);
+
+        userService.updateUser(1L, userDto);
+
+        verify(userVersionRegistry).bump(1L);
+    }
+
+    @Test
+    void updateUser_shouldKeepTokensWhenRoleIsUnchanged() {
+        User stored = User.builder().id(1L).username("testuser").role(new Role(1, "ADMIN")).build();
+        when(userRepository.findById(1L)).thenReturn(Optional.of(stored));
+        when(userRepository.save(any(User.class))).thenReturn(user);
+        when(userMapper.toEntity(userDto)).thenReturn(user);
+        when(userMapper.toDto(user)).thenReturn(userDto);
+
+        userService.updateUser(1L, userDto);
+
+        verify(userVersionRegistry, never()).bump(anyLong());
+    }
+
+    @Test
+    void updateUser_shouldEvictCachedUserUnderOldAndNewUsername() {
+        User stored = User.builder().id(1L).username("oldname").role(new Role(1, "ADMIN")).build();
+        cacheManager.getCache(UserRepository.USERS_BY_ID_CACHE).put(1L, stored);
+        cacheManager.getCache(UserRepository.USERS_BY_USERNAME_CACHE).put("oldname", stored);
+        cacheManager.getCache(UserRepository.USERS_BY_USERNAME_CACHE).put("testuser", stored);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(stored));
+        when(userRepository.save(any(User.class))).thenReturn(user);
+        when(userMapper.toEntity(userDto)).thenReturn(user);
+        when(userMapper.toDto(user)).thenReturn(userDto);
+
+        userService.updateUser(1L, userDto);
+
+        assertNull(cacheManager.getCache(UserRepository.USERS_BY_ID_CACHE).get(1L));
+        assertNull(cacheManager.getCache(UserRepository.USERS_BY_USERNAME_CACHE).get("oldname"));
+        assertNull(cacheManager.getCache(UserRepository.USERS_BY_USERNAME_CACHE).get("testuser"));
+    }
+
     @Test
     void updateUser_shouldReturnEmptyOptionalWhenUpdateFails() {
-        when(modelMapper.map(userDto, User.class)).thenReturn(user);
+        when(userMapper.toEntity(userDto)).thenReturn(user);
         when(userRepository.save(any(User.class))).thenReturn(null);  // Simulating a failure in save
 
         Optional<UserDto> result = userService.updateUser(1L, userDto);
@@ -146,6 +201,19 @@ class UserServiceTest {
         userService.deleteUser(1L);
 
         verify(userRepository).delete(user);
+        verify(userVersionRegistry).remove(1L);
+    }
+
+    @Test
+    void deleteUser_shouldEvictCachedUser() {
+        cacheManager.getCache(UserRepository.USERS_BY_ID_CACHE).put(1L, user);
+        cacheManager.getCache(UserRepository.USERS_BY_USERNAME_CACHE).put("testuser", user);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+
+        userService.deleteUser(1L);
+
+        assertNull(cacheManager.getCache(UserRepository.USERS_BY_ID_CACHE).get(1L));
+        assertNull(cacheManager.getCache(UserRepository.USERS_BY_USERNAME_CACHE).get("testuser"));
     }
 
     @Test
@@ -158,7 +226,7 @@ class UserServiceTest {
     @Test
     void getUserByUsername_shouldReturnUserDtoWhenUserExists() {
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
-        when(modelMapper.map(user, UserDto.class)).thenReturn(userDto);
+        when(userMapper.toDto(user)).thenReturn(userDto);
 
         Optional<UserDto> result = userService.getUserByUsername("testuser");
 
@@ -178,7 +246,7 @@ class UserServiceTest {
     @Test
     void getUserByEmail_shouldReturnUserDtoWhenUserExists() {
         when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
-        when(modelMapper.map(user, UserDto.class)).thenReturn(userDto);
+        when(userMapper.toDto(user)).thenReturn(userDto);
 
         Optional<UserDto> result = userService.getUserByEmail("test@example.com");
 
@@ -200,7 +268,7 @@ class UserServiceTest {
         List<User> users = new ArrayList<>();
         users.add(user);
         when(userRepository.findAll()).thenReturn(users);
-        when(modelMapper.map(user, UserDto.class)).thenReturn(userDto);
+        when(userMapper.toDto(user)).thenReturn(userDto);
 
         Iterable<UserDto> result = userService.getAllUsers();
 
@@ -219,6 +287,7 @@ class UserServiceTest {
         assertEquals("testuser", result.getUsername());
         assertEquals("test123", result.getPassword());
         assertFalse(result.getAuthorities().isEmpty());
+        assertEquals(1L, ((ActingUser) result).getId());
     }
 
     @Test
@@ -0,0 +1,64 @@
+package com.example.booklending.service;
+
+import com.example.booklending.AbstractIntegrationTest;
+import com.example.booklending.model.Role;
+import com.example.booklending.model.User;
+import com.example.booklending.repository.RoleRepository;
+import com.example.booklending.repository.UserRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Tag("integration")
+@Transactional
+public class UserVersionRegistryTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private UserVersionRegistry userVersionRegistry;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Test
+    void testBumpInvalidatesEarlierVersion() {
+        User user = saveUser("versioned");
+        int issued = userVersionRegistry.currentVersion(user.getId());
+
+        userVersionRegistry.bump(user.getId());
+
+        assertFalse(userVersionRegistry.isCurrent(user.getId(), issued));
+        assertTrue(userVersionRegistry.isCurrent(user.getId(), issued + 1));
+
+        userVersionRegistry.reload();
+        assertEquals(issued + 1, userVersionRegistry.currentVersion(user.getId()));
+    }
+
+    @Test
+    void testRemovedAndUnknownUsersHaveNoCurrentVersion() {
+        User user = saveUser("removed");
+        int issued = userVersionRegistry.currentVersion(user.getId());
+
+        userVersionRegistry.remove(user.getId());
+
+        assertFalse(userVersionRegistry.isCurrent(user.getId(), issued));
+        assertFalse(userVersionRegistry.isCurrent(Long.MAX_VALUE, 0));
+    }
+
+    private User saveUser(String username) {
+        Role role = roleRepository.save(new Role("VERSION_TEST_ROLE_" + username));
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("password");
+        user.setEmail(username + "@example.com");
+        user.setRole(role);
+        return userRepository.saveAndFlush(user);
+    }
+}